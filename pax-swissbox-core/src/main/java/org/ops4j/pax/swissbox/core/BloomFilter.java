@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+/**
+ * Fixed size Bloom filter for strings, sized for a false positive rate of about 1%. Not thread safe while being
+ * populated; safe for concurrent reads once published.
+ *
+ * @since 1.9.1
+ */
+final class BloomFilter
+{
+
+    /**
+     * Bits per expected element. Together with {@link #HASHES} gives a false positive rate of about 1%.
+     */
+    private static final int BITS_PER_ELEMENT = 10;
+    /**
+     * Number of hash functions.
+     */
+    private static final int HASHES = 7;
+
+    private final long[] m_bits;
+    private final int m_size;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedElements number of elements that will be added
+     */
+    BloomFilter( final int expectedElements )
+    {
+        final long size = Math.max( 64L, (long) Math.max( expectedElements, 1 ) * BITS_PER_ELEMENT );
+        m_size = (int) Math.min( size, Integer.MAX_VALUE - 63 );
+        m_bits = new long[( m_size + 63 ) >>> 6];
+    }
+
+    void add( final String value )
+    {
+        final int h1 = value.hashCode();
+        final int h2 = fnv( value );
+        for( int i = 0; i < HASHES; i++ )
+        {
+            final int bit = index( h1 + i * h2 );
+            m_bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param value value to check
+     *
+     * @return false if the value was certainly not added, true if it may have been added
+     */
+    boolean mightContain( final String value )
+    {
+        final int h1 = value.hashCode();
+        final int h2 = fnv( value );
+        for( int i = 0; i < HASHES; i++ )
+        {
+            final int bit = index( h1 + i * h2 );
+            if( ( m_bits[bit >>> 6] & ( 1L << bit ) ) == 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index( final int hash )
+    {
+        return ( hash & Integer.MAX_VALUE ) % m_size;
+    }
+
+    /**
+     * FNV-1a, used as second hash function independent of {@link String#hashCode()}.
+     */
+    private static int fnv( final String value )
+    {
+        int hash = 0x811c9dc5;
+        for( int i = 0; i < value.length(); i++ )
+        {
+            hash ^= value.charAt( i );
+            hash *= 0x01000193;
+        }
+        return hash | 1;
+    }
+
+}
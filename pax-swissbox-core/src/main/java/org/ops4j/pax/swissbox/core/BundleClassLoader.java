@@ -18,10 +18,13 @@
 package org.ops4j.pax.swissbox.core;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.ops4j.lang.NullArgumentException;
@@ -57,6 +60,26 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
      * Bundle used for class loading.
      */
     private final Bundle m_bundle;
+    /**
+     * Policy deciding when the parent class loader is consulted. Cannot be null.
+     */
+    private final DelegationPolicy m_delegationPolicy;
+    /**
+     * Index of the bundle class space used to reject certain misses. Null if not enabled.
+     */
+    private volatile ClassSpaceIndex m_classSpaceIndex;
+    /**
+     * Cache used to serve resource streams. Null if not enabled.
+     */
+    private volatile BundleResourceCache m_resourceCache;
+    /**
+     * Profile recording the classes found in the bundle. Null if not enabled.
+     */
+    private volatile ClassLoadingProfile m_classLoadingProfile;
+    /**
+     * Class loading metrics. Null if not enabled.
+     */
+    private volatile ClassLoadingMetrics m_classLoadingMetrics;
 
     /**
      * Privileged factory method.
@@ -93,6 +116,30 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
         } );
     }
 
+    /**
+     * Privileged factory method.
+     *
+     * @param bundle           bundle to be used for class loading. Cannot be null.
+     * @param parent           parent class loader
+     * @param delegationPolicy policy deciding when the parent is consulted. Cannot be null.
+     *
+     * @return created bundle class loader
+     *
+     * @see BundleClassLoader#BundleClassLoader(Bundle,ClassLoader,DelegationPolicy)
+     */
+    public static BundleClassLoader newPriviledged( final Bundle bundle,
+                                                    final ClassLoader parent,
+                                                    final DelegationPolicy delegationPolicy )
+    {
+        return AccessController.doPrivileged( new PrivilegedAction<BundleClassLoader>()
+        {
+            public BundleClassLoader run()
+            {
+                return new BundleClassLoader( bundle, parent, delegationPolicy );
+            }
+        } );
+    }
+
     /**
      * Creates a bundle class loader with no parent.
      *
@@ -110,10 +157,25 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
      * @param parent parent class loader
      */
     public BundleClassLoader( final Bundle bundle, final ClassLoader parent )
+    {
+        this( bundle, parent, DelegationPolicy.PARENT_FIRST );
+    }
+
+    /**
+     * Creates a bundle class loader.
+     *
+     * @param bundle           bundle to be used for class loading. Cannot be null.
+     * @param parent           parent class loader
+     * @param delegationPolicy policy deciding when the parent is consulted. Cannot be null.
+     */
+    public BundleClassLoader( final Bundle bundle, final ClassLoader parent, final DelegationPolicy delegationPolicy )
     {
         super( parent );
         NullArgumentException.validateNotNull( bundle, "Bundle" );
+        NullArgumentException.validateNotNull( delegationPolicy, "Delegation policy" );
         m_bundle = bundle;
+        m_delegationPolicy = delegationPolicy;
+        BundleClassLoaderLeakTracker.created( this );
     }
 
     /**
@@ -127,26 +189,189 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     }
 
     /**
-     * If there is a parent class loader use the super implementation that will first use the parent and as a fallback
-     * it will call findResource(). In case there is no parent directy use findResource() as if we call the super
-     * implementation it will use the VMClassLoader, fact that should be avoided.
+     * Getter.
+     *
+     * @return the policy deciding when the parent class loader is consulted
+     */
+    public DelegationPolicy getDelegationPolicy()
+    {
+        return m_delegationPolicy;
+    }
+
+    /**
+     * Enables or disables the class space index. When enabled, a compact probabilistic index of all class and
+     * resource names visible to the bundle (local entries and wired packages) is built in the background and used to
+     * reject lookups that will certainly fail without calling into the framework. The index is dropped and re-built
+     * when the bundle is updated or refreshed.
+     * <p>
+     * Mostly useful for class loaders that are probed for names they often do not contain, e.g. as part of a chain
+     * of class loaders.
+     *
+     * @param indexed true to enable the index
+     */
+    public void setClassSpaceIndexed( final boolean indexed )
+    {
+        m_classSpaceIndex = indexed ? new ClassSpaceIndex( m_bundle ) : null;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return true if the class space index is enabled
+     *
+     * @see #setClassSpaceIndexed(boolean)
+     */
+    public boolean isClassSpaceIndexed()
+    {
+        return m_classSpaceIndex != null;
+    }
+
+    /**
+     * Sets the cache used to serve {@link #getResourceAsStream(String)}. With a cache the content of frequently read
+     * resources is kept off heap and served without going through the framework. The same cache can be shared by
+     * many class loaders.
+     *
+     * @param resourceCache resource cache or null to disable caching
+     */
+    public void setResourceCache( final BundleResourceCache resourceCache )
+    {
+        m_resourceCache = resourceCache;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return the resource cache or null if not set
+     *
+     * @see #setResourceCache(BundleResourceCache)
+     */
+    public BundleResourceCache getResourceCache()
+    {
+        return m_resourceCache;
+    }
+
+    /**
+     * Sets the profile that records the classes found in the bundle. The profile only records while recording was
+     * started on it.
+     *
+     * @param classLoadingProfile class loading profile or null to disable recording
+     */
+    public void setClassLoadingProfile( final ClassLoadingProfile classLoadingProfile )
+    {
+        m_classLoadingProfile = classLoadingProfile;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return the class loading profile or null if not set
+     *
+     * @see #setClassLoadingProfile(ClassLoadingProfile)
+     */
+    public ClassLoadingProfile getClassLoadingProfile()
+    {
+        return m_classLoadingProfile;
+    }
+
+    /**
+     * Sets the metrics that count class loads and resource lookups of this class loader. Without metrics the only
+     * overhead is a null check per call.
+     *
+     * @param classLoadingMetrics class loading metrics or null to disable metrics
+     */
+    public void setClassLoadingMetrics( final ClassLoadingMetrics classLoadingMetrics )
+    {
+        m_classLoadingMetrics = classLoadingMetrics;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return the class loading metrics or null if not set
+     *
+     * @see #setClassLoadingMetrics(ClassLoadingMetrics)
+     */
+    public ClassLoadingMetrics getClassLoadingMetrics()
+    {
+        return m_classLoadingMetrics;
+    }
+
+    /**
+     * If a resource cache is set the resource is served from the cache, otherwise same as the super implementation.
+     *
+     * @see ClassLoader#getResourceAsStream(String)
+     * @see #setResourceCache(BundleResourceCache)
+     */
+    @Override
+    public InputStream getResourceAsStream( final String name )
+    {
+        final BundleResourceCache resourceCache = m_resourceCache;
+        if( resourceCache == null )
+        {
+            return super.getResourceAsStream( name );
+        }
+        try
+        {
+            return resourceCache.getResourceAsStream( m_bundle, name, this );
+        }
+        catch( IOException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * If there is a parent class loader the delegation policy decides if the super implementation (that will first
+     * use the parent and as a fallback it will call findResource()) is used, if findResource() is called first and the
+     * parent only as a fallback or if the parent is not used at all. In case there is no parent directy use
+     * findResource() as if we call the super implementation it will use the VMClassLoader, fact that should be
+     * avoided.
      *
      * @see ClassLoader#getResource(String)
      */
     @Override
     public URL getResource( final String name )
     {
-        if( getParent() != null )
+        final ClassLoadingMetrics metrics = m_classLoadingMetrics;
+        if( metrics == null )
         {
-            return super.getResource( name );
+            return getResource( name, null );
+        }
+        final long start = System.nanoTime();
+        final URL resource = getResource( name, metrics );
+        metrics.recordResourceLookup( name, System.nanoTime() - start, resource != null );
+        return resource;
+    }
+
+    private URL getResource( final String name, final ClassLoadingMetrics metrics )
+    {
+        final ClassLoader parent = getParent();
+        if( parent != null )
+        {
+            switch( m_delegationPolicy.forResource( name ) )
+            {
+                case PARENT_FIRST:
+                    recordParentDelegation( metrics );
+                    return super.getResource( name );
+                case BUNDLE_FIRST:
+                    final URL resource = findResource( name );
+                    if( resource != null )
+                    {
+                        return resource;
+                    }
+                    recordParentDelegation( metrics );
+                    return parent.getResource( name );
+            }
         }
         return findResource( name );
     }
 
     /**
-     * If there is a parent class loader use the super implementation that will first use the parent and as a fallback
-     * it will call findResources(). In case there is no parent directy use findResources() as if we call the super
-     * implementation it will use the VMClassLoader, fact that should be avoided.
+     * If there is a parent class loader the delegation policy decides if the super implementation (that will first
+     * use the parent and then call findResources()) is used, if the resources found by findResources() are returned
+     * before the ones of the parent or if the parent is not used at all. In case there is no parent directy use
+     * findResources() as if we call the super implementation it will use the VMClassLoader, fact that should be
+     * avoided.
      *
      * @see ClassLoader#getResources(String)
      */
@@ -154,14 +379,36 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     public Enumeration<URL> getResources( final String name )
         throws IOException
     {
-        if( getParent() != null )
+        final ClassLoadingMetrics metrics = m_classLoadingMetrics;
+        if( metrics == null )
         {
-            return super.getResources( name );
+            return getResources( name, null );
         }
-        else
+        final long start = System.nanoTime();
+        final Enumeration<URL> resources = getResources( name, metrics );
+        metrics.recordResourceLookup( name, System.nanoTime() - start, resources.hasMoreElements() );
+        return resources;
+    }
+
+    private Enumeration<URL> getResources( final String name, final ClassLoadingMetrics metrics )
+        throws IOException
+    {
+        final ClassLoader parent = getParent();
+        if( parent != null )
         {
-            return findResources( name );
+            switch( m_delegationPolicy.forResource( name ) )
+            {
+                case PARENT_FIRST:
+                    recordParentDelegation( metrics );
+                    return super.getResources( name );
+                case BUNDLE_FIRST:
+                    recordParentDelegation( metrics );
+                    final List<URL> resources = Collections.list( findResources( name ) );
+                    resources.addAll( Collections.list( parent.getResources( name ) ) );
+                    return Collections.enumeration( resources );
+            }
         }
+        return findResources( name );
     }
 
     /**
@@ -173,13 +420,25 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     protected Class<?> findClass( final String name )
         throws ClassNotFoundException
     {
-        return m_bundle.loadClass( name );
+        final ClassSpaceIndex index = m_classSpaceIndex;
+        if( index != null && index.isCertainClassMiss( name ) )
+        {
+            throw new ClassNotFoundException( name );
+        }
+        final Class<?> clazz = m_bundle.loadClass( name );
+        final ClassLoadingProfile profile = m_classLoadingProfile;
+        if( profile != null )
+        {
+            profile.record( name );
+        }
+        return clazz;
     }
 
     /**
-     * If there is a parent class loader use the super implementation that will first use the parent and as a fallback
-     * it will call findClass(). In case there is no parent directy use findClass() as if we call the super
-     * implementation it will use the VMClassLoader, fact that should be avoided.
+     * If there is a parent class loader the delegation policy decides if the super implementation (that will first
+     * use the parent and as a fallback it will call findClass()) is used, if findClass() is called first and the
+     * parent only as a fallback or if the parent is not used at all. In case there is no parent directy use
+     * findClass() as if we call the super implementation it will use the VMClassLoader, fact that should be avoided.
      *
      * @see ClassLoader#getResource(String)
      */
@@ -187,11 +446,54 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     protected Class<?> loadClass( final String name, final boolean resolve )
         throws ClassNotFoundException
     {
-        if( getParent() != null )
+        final ClassLoadingMetrics metrics = m_classLoadingMetrics;
+        if( metrics == null )
+        {
+            return loadClass( name, resolve, null );
+        }
+        final long start = System.nanoTime();
+        boolean found = false;
+        try
+        {
+            final Class<?> clazz = loadClass( name, resolve, metrics );
+            found = true;
+            return clazz;
+        }
+        finally
+        {
+            metrics.recordClassLoad( name, System.nanoTime() - start, found );
+        }
+    }
+
+    private Class<?> loadClass( final String name, final boolean resolve, final ClassLoadingMetrics metrics )
+        throws ClassNotFoundException
+    {
+        final ClassLoader parent = getParent();
+        Class<?> classToLoad = null;
+        if( parent != null )
+        {
+            switch( m_delegationPolicy.forClass( name ) )
+            {
+                case PARENT_FIRST:
+                    recordParentDelegation( metrics );
+                    return super.loadClass( name, resolve );
+                case BUNDLE_FIRST:
+                    try
+                    {
+                        classToLoad = findClass( name );
+                    }
+                    catch( ClassNotFoundException e )
+                    {
+                        recordParentDelegation( metrics );
+                        classToLoad = parent.loadClass( name );
+                    }
+                    break;
+            }
+        }
+        if( classToLoad == null )
         {
-            return super.loadClass( name, resolve );
+            classToLoad = findClass( name );
         }
-        final Class<?> classToLoad = findClass( name );
         if( resolve )
         {
             resolveClass( classToLoad );
@@ -199,6 +501,14 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
         return classToLoad;
     }
 
+    private static void recordParentDelegation( final ClassLoadingMetrics metrics )
+    {
+        if( metrics != null )
+        {
+            metrics.recordParentDelegation();
+        }
+    }
+
     /**
      * Use bundle to find resource.
      *
@@ -207,6 +517,11 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     @Override
     protected URL findResource( final String name )
     {
+        final ClassSpaceIndex index = m_classSpaceIndex;
+        if( index != null && index.isCertainMiss( name ) )
+        {
+            return null;
+        }
         return m_bundle.getResource( name );
     }
 
@@ -220,6 +535,11 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     protected Enumeration<URL> findResources( final String name )
         throws IOException
     {
+        final ClassSpaceIndex index = m_classSpaceIndex;
+        if( index != null && index.isCertainMiss( name ) )
+        {
+            return EMPTY_URL_ENUMERATION;
+        }
         Enumeration<URL> resources = m_bundle.getResources( name );
         // Bundle.getResources may return null, in such case return empty enumeration
         if( resources == null )
@@ -236,7 +556,8 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
     public String toString()
     {
         return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append( "bundle=" ).append(
-            m_bundle ).append( ",parent=" ).append( getParent() ).append( "}" ).toString();
+            m_bundle ).append( ",parent=" ).append( getParent() ).append( ",delegation=" ).append(
+            m_delegationPolicy ).append( "}" ).toString();
     }
 
     @Override
@@ -263,6 +584,11 @@ public class BundleClassLoader extends ClassLoader implements BundleReference
             return false;
         }
 
+        if( !m_delegationPolicy.equals( that.m_delegationPolicy ) )
+        {
+            return false;
+        }
+
         return true;
     }
 
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Detects {@link BundleClassLoader}s that are still reachable after their bundle was refreshed, updated or
+ * uninstalled, e.g. because they are referenced from a cache or a thread local. Such class loaders keep the old
+ * bundle revision, and all classes loaded from it, alive.
+ * <p>
+ * Tracking is opt-in: once a tracker is installed via {@link #install(BundleClassLoaderLeakTracker)} every created
+ * {@link BundleClassLoader} is tracked through a weak reference. The tracker must also be registered as bundle
+ * listener, so that it knows when a class loader became stale. Class loaders that are still reachable a grace period
+ * after becoming stale are reported by {@link #findLeaks()}, together with the stack trace of their creation if
+ * enabled. As class loaders are only cleared by the garbage collector, leaks should be looked for after a full
+ * collection.
+ *
+ * @since 1.9.1
+ */
+public class BundleClassLoaderLeakTracker
+    implements BundleListener
+{
+
+    /**
+     * Tracker class loaders are registered with. Null if tracking is not enabled.
+     */
+    private static volatile BundleClassLoaderLeakTracker s_installed;
+
+    /**
+     * Time a stale class loader must still be reachable to be reported, in nanoseconds.
+     */
+    private final long m_gracePeriodNanos;
+    /**
+     * True if the stack trace of class loader creation is recorded.
+     */
+    private final boolean m_recordAllocationSites;
+    /**
+     * Tracked class loaders.
+     */
+    private final Set<Tracked> m_tracked;
+    /**
+     * Queue of cleared references, used to stop tracking collected class loaders.
+     */
+    private final ReferenceQueue<BundleClassLoader> m_queue;
+
+    /**
+     * Creates a leak tracker.
+     *
+     * @param gracePeriod           time a stale class loader must still be reachable to be reported
+     * @param unit                  unit of grace period. Cannot be null.
+     * @param recordAllocationSites true to record the stack trace of class loader creation. Makes creation of class
+     *                              loaders more expensive.
+     */
+    public BundleClassLoaderLeakTracker( final long gracePeriod,
+                                         final TimeUnit unit,
+                                         final boolean recordAllocationSites )
+    {
+        m_gracePeriodNanos = unit.toNanos( gracePeriod );
+        m_recordAllocationSites = recordAllocationSites;
+        m_tracked = ConcurrentHashMap.newKeySet();
+        m_queue = new ReferenceQueue<BundleClassLoader>();
+    }
+
+    /**
+     * Installs the tracker all class loaders created from now on are tracked by, replacing the installed one.
+     *
+     * @param tracker tracker or null to stop tracking new class loaders
+     */
+    public static void install( final BundleClassLoaderLeakTracker tracker )
+    {
+        s_installed = tracker;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return installed tracker or null if none is installed
+     */
+    public static BundleClassLoaderLeakTracker getInstalled()
+    {
+        return s_installed;
+    }
+
+    /**
+     * Called by each created class loader, from its constructor. The class loader is not fully constructed yet, so
+     * only its class and bundle may be used, not methods sub classes may override (e.g. toString()).
+     */
+    static void created( final BundleClassLoader classLoader )
+    {
+        final BundleClassLoaderLeakTracker tracker = s_installed;
+        if( tracker != null )
+        {
+            tracker.track( classLoader );
+        }
+    }
+
+    /**
+     * Starts tracking a class loader.
+     *
+     * @param classLoader class loader to track
+     */
+    public void track( final BundleClassLoader classLoader )
+    {
+        expunge();
+        m_tracked.add(
+            new Tracked(
+                classLoader, m_queue,
+                m_recordAllocationSites ? allocationSite( classLoader ) : null
+            )
+        );
+    }
+
+    private static Throwable allocationSite( final BundleClassLoader classLoader )
+    {
+        return new Throwable(
+            new StringBuffer().append( "Allocation site of " ).append( classLoader.getClass().getName() ).append(
+                " for bundle " ).append( classLoader.getBundle().getBundleId() ).toString()
+        );
+    }
+
+    /**
+     * Returns the class loaders that are still reachable a grace period after their bundle was refreshed, updated or
+     * uninstalled.
+     *
+     * @return leaked class loaders. Never null.
+     */
+    public List<Leak> findLeaks()
+    {
+        expunge();
+        final long now = System.nanoTime();
+        final List<Leak> leaks = new ArrayList<Leak>();
+        for( Tracked tracked : m_tracked )
+        {
+            final long staleSince = tracked.staleSince;
+            if( staleSince != 0 && now - staleSince >= m_gracePeriodNanos && tracked.get() != null )
+            {
+                leaks.add( new Leak( tracked, TimeUnit.NANOSECONDS.toMillis( now - staleSince ) ) );
+            }
+        }
+        return leaks.isEmpty() ? Collections.<Leak>emptyList() : leaks;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return number of tracked class loaders that were not yet garbage collected
+     */
+    public int getTrackedCount()
+    {
+        expunge();
+        return m_tracked.size();
+    }
+
+    /**
+     * Marks the class loaders of bundles that are refreshed, updated or uninstalled as stale.
+     *
+     * @see BundleListener#bundleChanged(BundleEvent)
+     */
+    public void bundleChanged( final BundleEvent event )
+    {
+        switch( event.getType() )
+        {
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+                markStale( event.getBundle() );
+                break;
+        }
+    }
+
+    private void markStale( final Bundle bundle )
+    {
+        final long now = System.nanoTime();
+        final long bundleId = bundle.getBundleId();
+        for( Tracked tracked : m_tracked )
+        {
+            if( tracked.bundleId == bundleId && tracked.staleSince == 0 )
+            {
+                // 0 is reserved for "not stale"
+                tracked.staleSince = now == 0 ? 1 : now;
+            }
+        }
+    }
+
+    private void expunge()
+    {
+        Reference<? extends BundleClassLoader> reference;
+        while( ( reference = m_queue.poll() ) != null )
+        {
+            m_tracked.remove( reference );
+        }
+    }
+
+    /**
+     * A leaked class loader.
+     */
+    public static final class Leak
+    {
+
+        private final Tracked m_tracked;
+        private final long m_staleMillis;
+
+        Leak( final Tracked tracked, final long staleMillis )
+        {
+            m_tracked = tracked;
+            m_staleMillis = staleMillis;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return leaked class loader, or null if it was collected in the meantime
+         */
+        public BundleClassLoader getClassLoader()
+        {
+            return m_tracked.get();
+        }
+
+        /**
+         * Getter.
+         *
+         * @return id of the bundle of the leaked class loader
+         */
+        public long getBundleId()
+        {
+            return m_tracked.bundleId;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return symbolic name of the bundle of the leaked class loader, as it was on creation
+         */
+        public String getSymbolicName()
+        {
+            return m_tracked.symbolicName;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return for how long the class loader was stale when the leak was found, in milliseconds
+         */
+        public long getStaleMillis()
+        {
+            return m_staleMillis;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return stack trace of the class loader creation, or null if not recorded
+         */
+        public Throwable getAllocationSite()
+        {
+            return m_tracked.allocationSite;
+        }
+
+        @Override
+        public String toString()
+        {
+            return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+                "bundleId=" ).append( getBundleId() ).append( ",symbolicName=" ).append( getSymbolicName() ).append(
+                ",staleMillis=" ).append( m_staleMillis ).append( "}" ).toString();
+        }
+
+    }
+
+    /**
+     * Weak reference to a tracked class loader. Uses identity equality, as needed for removal from the tracked set.
+     */
+    private static final class Tracked
+        extends WeakReference<BundleClassLoader>
+    {
+
+        final long bundleId;
+        final String symbolicName;
+        final Throwable allocationSite;
+        /**
+         * Time the class loader became stale ({@link System#nanoTime()}), 0 if not stale.
+         */
+        volatile long staleSince;
+
+        Tracked( final BundleClassLoader classLoader,
+                 final ReferenceQueue<BundleClassLoader> queue,
+                 final Throwable allocationSite )
+        {
+            super( classLoader, queue );
+            this.bundleId = classLoader.getBundle().getBundleId();
+            this.symbolicName = classLoader.getBundle().getSymbolicName();
+            this.allocationSite = allocationSite;
+        }
+
+    }
+
+}
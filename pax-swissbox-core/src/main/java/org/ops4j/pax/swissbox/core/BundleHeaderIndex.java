@@ -0,0 +1,248 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+
+/**
+ * Index of the raw (not localized) manifest headers of all installed bundles, by header name and by value token.
+ * Answers questions as "which bundles declare a Web-ContextPath header" or "which bundles provide the osgi.extender
+ * capability" without looping over all bundles and calling {@link Bundle#getHeaders()}.
+ * <p>
+ * Header names are case insensitive. The tokens of a header value are the paths of its clauses, e.g. for
+ * {@code Provide-Capability: osgi.extender;osgi.extender=foo, osgi.service;objectClass=...} the tokens are
+ * {@code osgi.extender} and {@code osgi.service}.
+ * <p>
+ * The index is kept up to date by a synchronous bundle listener registered on {@link #open()} and only re-reads the
+ * headers of installed or updated bundles.
+ *
+ * @since 1.9.1
+ */
+public class BundleHeaderIndex
+{
+
+    /**
+     * Mapping between (lower case) header name and bundles declaring the header.
+     */
+    private final BundleIndexSupport.MultiMap<String, Bundle, Set<Bundle>> m_byHeader;
+    /**
+     * Mapping between (lower case) header name and value token and bundles.
+     */
+    private final BundleIndexSupport.MultiMap<TokenKey, Bundle, Set<Bundle>> m_byToken;
+    /**
+     * Listener and raw headers each bundle is currently indexed with, keyed by lower case header name. Cannot be
+     * null.
+     */
+    private final BundleIndexSupport<Map<String, String>> m_support;
+
+    /**
+     * Creates a header index. The index must be opened before use.
+     *
+     * @param context bundle context. Cannot be null.
+     */
+    public BundleHeaderIndex( final BundleContext context )
+    {
+        NullArgumentException.validateNotNull( context, "Context" );
+        m_byHeader = BundleIndexSupport.sets();
+        m_byToken = BundleIndexSupport.sets();
+        m_support = new BundleIndexSupport<Map<String, String>>(
+            context, ~Bundle.UNINSTALLED, BundleEvent.INSTALLED | BundleEvent.UPDATED,
+            BundleEvent.UPDATED | BundleEvent.UNINSTALLED
+        )
+        {
+            @Override
+            Map<String, String> index( final Bundle bundle )
+            {
+                return rawHeaders( bundle );
+            }
+
+            @Override
+            void added( final Map<Bundle, Map<String, String>> added )
+            {
+                final Map<String, List<Bundle>> byHeader = new HashMap<String, List<Bundle>>();
+                final Map<TokenKey, List<Bundle>> byToken = new HashMap<TokenKey, List<Bundle>>();
+                for( Map.Entry<Bundle, Map<String, String>> entry : added.entrySet() )
+                {
+                    for( Map.Entry<String, String> header : entry.getValue().entrySet() )
+                    {
+                        BundleIndexSupport.collect( byHeader, header.getKey(), entry.getKey() );
+                        for( String token : ManifestClauses.allPaths( header.getValue() ) )
+                        {
+                            BundleIndexSupport.collect(
+                                byToken, new TokenKey( header.getKey(), token ), entry.getKey()
+                            );
+                        }
+                    }
+                }
+                m_byHeader.addAll( byHeader );
+                m_byToken.addAll( byToken );
+            }
+
+            @Override
+            void removed( final Bundle bundle, final Map<String, String> headers )
+            {
+                for( Map.Entry<String, String> header : headers.entrySet() )
+                {
+                    m_byHeader.remove( header.getKey(), bundle );
+                    for( String token : ManifestClauses.allPaths( header.getValue() ) )
+                    {
+                        m_byToken.remove( new TokenKey( header.getKey(), token ), bundle );
+                    }
+                }
+            }
+
+            @Override
+            void clear()
+            {
+                m_byHeader.clear();
+                m_byToken.clear();
+            }
+        };
+    }
+
+    /**
+     * Registers the bundle listener and indexes the installed bundles. Has no effect if already open.
+     */
+    public void open()
+    {
+        m_support.open();
+    }
+
+    /**
+     * Un-registers the bundle listener and clears the index.
+     */
+    public void close()
+    {
+        m_support.close();
+    }
+
+    /**
+     * Returns the bundles that declare a header.
+     *
+     * @param headerName header name (case insensitive)
+     *
+     * @return unmodifiable set of bundles. Never null.
+     */
+    public Set<Bundle> getBundles( final String headerName )
+    {
+        return m_byHeader.get( normalize( headerName ) );
+    }
+
+    /**
+     * Returns the bundles that declare a header whose value contains a token (path of a clause).
+     *
+     * @param headerName header name (case insensitive)
+     * @param token      value token, e.g. a namespace or package name
+     *
+     * @return unmodifiable set of bundles. Never null.
+     */
+    public Set<Bundle> getBundles( final String headerName, final String token )
+    {
+        return m_byToken.get( new TokenKey( normalize( headerName ), token ) );
+    }
+
+    /**
+     * Returns the raw value of a header of a bundle, as indexed.
+     *
+     * @param bundle     bundle
+     * @param headerName header name (case insensitive)
+     *
+     * @return header value or null if the bundle is not indexed or does not declare the header
+     */
+    public String getHeader( final Bundle bundle, final String headerName )
+    {
+        final Map<String, String> headers = bundle == null ? null : m_support.get( bundle );
+        return headers == null ? null : headers.get( normalize( headerName ) );
+    }
+
+    /**
+     * Reads the raw headers, passing an empty locale so that the framework does not localize them.
+     */
+    private static Map<String, String> rawHeaders( final Bundle bundle )
+    {
+        final Dictionary<String, String> dictionary = bundle.getHeaders( "" );
+        if( dictionary == null || dictionary.isEmpty() )
+        {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> headers = new HashMap<String, String>();
+        final Enumeration<String> keys = dictionary.keys();
+        while( keys.hasMoreElements() )
+        {
+            final String key = keys.nextElement();
+            headers.put( normalize( key ), dictionary.get( key ) );
+        }
+        return headers;
+    }
+
+    private static String normalize( final String headerName )
+    {
+        return headerName == null ? "" : headerName.toLowerCase( Locale.ENGLISH );
+    }
+
+    /**
+     * Header name and value token pair.
+     */
+    private static final class TokenKey
+    {
+
+        final String headerName;
+        final String token;
+
+        TokenKey( final String headerName, final String token )
+        {
+            this.headerName = headerName;
+            this.token = token == null ? "" : token;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if( this == o )
+            {
+                return true;
+            }
+            if( !( o instanceof TokenKey ) )
+            {
+                return false;
+            }
+            final TokenKey that = (TokenKey) o;
+            return headerName.equals( that.headerName ) && token.equals( that.token );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return headerName.hashCode() * 31 + token.hashCode();
+        }
+
+    }
+
+}
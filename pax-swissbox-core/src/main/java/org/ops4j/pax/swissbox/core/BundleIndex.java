@@ -0,0 +1,239 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Version;
+
+/**
+ * Live index of the installed bundles by symbolic name and version. Offers the same lookups as
+ * {@link BundleUtils#getBundle(BundleContext, String, String)} and
+ * {@link BundleUtils#getBundles(BundleContext, String)} without scanning all installed bundles on each call.
+ * <p>
+ * The index is kept up to date by a synchronous bundle listener registered on {@link #open()}.
+ *
+ * @since 1.9.1
+ */
+public class BundleIndex
+{
+
+    /**
+     * Orders bundles by bundle id, same as {@link BundleContext#getBundles()}.
+     */
+    private static final Comparator<Bundle> BY_ID = new Comparator<Bundle>()
+    {
+        public int compare( final Bundle b1, final Bundle b2 )
+        {
+            return Long.compare( b1.getBundleId(), b2.getBundleId() );
+        }
+    };
+
+    /**
+     * Mapping between symbolic name and bundles, ordered by bundle id.
+     */
+    private final BundleIndexSupport.MultiMap<String, Bundle, List<Bundle>> m_bySymbolicName;
+    /**
+     * Mapping between symbolic name and version and bundles, ordered by bundle id.
+     */
+    private final BundleIndexSupport.MultiMap<Key, Bundle, List<Bundle>> m_byVersion;
+    /**
+     * Listener and key each bundle is currently indexed with. Cannot be null.
+     */
+    private final BundleIndexSupport<Key> m_support;
+
+    /**
+     * Creates a bundle index. The index must be opened before use.
+     *
+     * @param context bundle context. Cannot be null.
+     */
+    public BundleIndex( final BundleContext context )
+    {
+        NullArgumentException.validateNotNull( context, "Context" );
+        m_bySymbolicName = BundleIndexSupport.sortedLists( BY_ID );
+        m_byVersion = BundleIndexSupport.sortedLists( BY_ID );
+        m_support = new BundleIndexSupport<Key>(
+            context, ~Bundle.UNINSTALLED, BundleEvent.INSTALLED | BundleEvent.UPDATED,
+            BundleEvent.UPDATED | BundleEvent.UNINSTALLED
+        )
+        {
+            @Override
+            Key index( final Bundle bundle )
+            {
+                final String symbolicName = bundle.getSymbolicName();
+                return symbolicName == null ? null : new Key( symbolicName, bundle.getVersion() );
+            }
+
+            @Override
+            void added( final Map<Bundle, Key> added )
+            {
+                final Map<String, List<Bundle>> bySymbolicName = new HashMap<String, List<Bundle>>();
+                final Map<Key, List<Bundle>> byVersion = new HashMap<Key, List<Bundle>>();
+                for( Map.Entry<Bundle, Key> entry : added.entrySet() )
+                {
+                    BundleIndexSupport.collect( bySymbolicName, entry.getValue().symbolicName, entry.getKey() );
+                    BundleIndexSupport.collect( byVersion, entry.getValue(), entry.getKey() );
+                }
+                m_bySymbolicName.addAll( bySymbolicName );
+                m_byVersion.addAll( byVersion );
+            }
+
+            @Override
+            void removed( final Bundle bundle, final Key key )
+            {
+                m_bySymbolicName.remove( key.symbolicName, bundle );
+                m_byVersion.remove( key, bundle );
+            }
+
+            @Override
+            void clear()
+            {
+                m_bySymbolicName.clear();
+                m_byVersion.clear();
+            }
+        };
+    }
+
+    /**
+     * Registers the bundle listener and indexes the installed bundles. Has no effect if already open.
+     */
+    public void open()
+    {
+        m_support.open();
+    }
+
+    /**
+     * Un-registers the bundle listener and clears the index.
+     */
+    public void close()
+    {
+        m_support.close();
+    }
+
+    /**
+     * Returns any bundle with the given symbolic name, or null if no such bundle exists. If there are multiple
+     * bundles with the same symbolic name, the one with the lowest bundle id is returned.
+     *
+     * @param symbolicName bundle symbolic name
+     *
+     * @return matching bundle, or null
+     */
+    public Bundle getBundle( final String symbolicName )
+    {
+        return first( m_bySymbolicName.get( symbolicName ) );
+    }
+
+    /**
+     * Returns the bundle with the given symbolic name and version, or null if no such bundle exists.
+     *
+     * @param symbolicName bundle symbolic name
+     * @param version      bundle version. If null any version matches.
+     *
+     * @return matching bundle, or null
+     *
+     * @throws IllegalArgumentException if version is not a valid version
+     */
+    public Bundle getBundle( final String symbolicName, final String version )
+    {
+        return getBundle( symbolicName, version == null ? null : Version.parseVersion( version ) );
+    }
+
+    /**
+     * Returns the bundle with the given symbolic name and version, or null if no such bundle exists.
+     *
+     * @param symbolicName bundle symbolic name
+     * @param version      bundle version. If null any version matches.
+     *
+     * @return matching bundle, or null
+     */
+    public Bundle getBundle( final String symbolicName, final Version version )
+    {
+        if( version == null )
+        {
+            return getBundle( symbolicName );
+        }
+        if( symbolicName == null )
+        {
+            return null;
+        }
+        return first( m_byVersion.get( new Key( symbolicName, version ) ) );
+    }
+
+    /**
+     * Returns all bundles with the given symbolic name, ordered by bundle id.
+     *
+     * @param symbolicName bundle symbolic name
+     *
+     * @return matching bundles. The list may be empty, but never null.
+     */
+    public List<Bundle> getBundles( final String symbolicName )
+    {
+        return m_bySymbolicName.get( symbolicName );
+    }
+
+    private static Bundle first( final List<Bundle> bundles )
+    {
+        return bundles.isEmpty() ? null : bundles.get( 0 );
+    }
+
+    /**
+     * Symbolic name and version pair.
+     */
+    private static final class Key
+    {
+
+        final String symbolicName;
+        final Version version;
+
+        Key( final String symbolicName, final Version version )
+        {
+            this.symbolicName = symbolicName;
+            this.version = version == null ? Version.emptyVersion : version;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if( this == o )
+            {
+                return true;
+            }
+            if( !( o instanceof Key ) )
+            {
+                return false;
+            }
+            final Key that = (Key) o;
+            return symbolicName.equals( that.symbolicName ) && version.equals( that.version );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return symbolicName.hashCode() * 31 + version.hashCode();
+        }
+
+    }
+
+}
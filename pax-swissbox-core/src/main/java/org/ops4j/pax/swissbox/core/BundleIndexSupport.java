@@ -0,0 +1,371 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Common part of the indexes over the installed bundles that are kept up to date by a synchronous bundle listener,
+ * as {@link BundleIndex}, {@link BundleHeaderIndex} and {@link ServiceProviderRegistry}: opening and closing, the
+ * listener and what each bundle is currently indexed with, so that its entries can be removed again.
+ * <p>
+ * On open all matching bundles are indexed first and then published in one go, so that each lookup collection is
+ * built once instead of being copied for every bundle. Lookup collections are kept in {@link MultiMap}s.
+ *
+ * @param <E> what a bundle is indexed with
+ *
+ * @since 1.9.1
+ */
+abstract class BundleIndexSupport<E>
+{
+
+    /**
+     * Bundle context used to list bundles and register the listener. Cannot be null.
+     */
+    private final BundleContext m_context;
+    /**
+     * States (bit mask) of the bundles indexed on open.
+     */
+    private final int m_states;
+    /**
+     * Event types (bit mask) on which a bundle is indexed.
+     */
+    private final int m_addEvents;
+    /**
+     * Event types (bit mask) on which a bundle is removed from the index. Applied before adding, so an event type
+     * in both masks re-indexes the bundle.
+     */
+    private final int m_removeEvents;
+    /**
+     * What each bundle is currently indexed with.
+     */
+    private final ConcurrentMap<Bundle, E> m_indexed;
+    /**
+     * Listener keeping the index up to date. Null if the index is not open.
+     */
+    private SynchronousBundleListener m_listener;
+
+    BundleIndexSupport( final BundleContext context, final int states, final int addEvents, final int removeEvents )
+    {
+        m_context = context;
+        m_states = states;
+        m_addEvents = addEvents;
+        m_removeEvents = removeEvents;
+        m_indexed = new ConcurrentHashMap<Bundle, E>();
+    }
+
+    /**
+     * Registers the bundle listener and indexes the bundles in one of the configured states. Has no effect if already
+     * open.
+     */
+    synchronized void open()
+    {
+        if( m_listener != null )
+        {
+            return;
+        }
+        m_listener = new SynchronousBundleListener()
+        {
+            public void bundleChanged( final BundleEvent event )
+            {
+                changed( event.getType(), event.getBundle() );
+            }
+        };
+        m_context.addBundleListener( m_listener );
+        final Bundle[] bundles = m_context.getBundles();
+        if( bundles == null )
+        {
+            return;
+        }
+        final Map<Bundle, E> added = new LinkedHashMap<Bundle, E>();
+        for( Bundle bundle : bundles )
+        {
+            if( ( bundle.getState() & m_states ) != 0 && !m_indexed.containsKey( bundle ) )
+            {
+                final E entries = index( bundle );
+                if( entries != null )
+                {
+                    added.put( bundle, entries );
+                }
+            }
+        }
+        publish( added );
+    }
+
+    /**
+     * Un-registers the bundle listener and clears the index.
+     */
+    synchronized void close()
+    {
+        if( m_listener == null )
+        {
+            return;
+        }
+        m_context.removeBundleListener( m_listener );
+        m_listener = null;
+        m_indexed.clear();
+        clear();
+    }
+
+    /**
+     * @param bundle bundle
+     *
+     * @return what the bundle is indexed with or null if not indexed
+     */
+    E get( final Bundle bundle )
+    {
+        return m_indexed.get( bundle );
+    }
+
+    /**
+     * Reads what a bundle is to be indexed with.
+     *
+     * @param bundle bundle to index
+     *
+     * @return entries of the bundle or null if the bundle is not indexed
+     */
+    abstract E index( Bundle bundle );
+
+    /**
+     * Adds the entries of bundles to the lookup collections.
+     *
+     * @param added entries per bundle, in bundle order. Never empty.
+     */
+    abstract void added( Map<Bundle, E> added );
+
+    /**
+     * Removes the entries of a bundle from the lookup collections.
+     *
+     * @param bundle  removed bundle
+     * @param entries what the bundle was indexed with
+     */
+    abstract void removed( Bundle bundle, E entries );
+
+    /**
+     * Clears the lookup collections.
+     */
+    abstract void clear();
+
+    private synchronized void changed( final int type, final Bundle bundle )
+    {
+        if( m_listener == null )
+        {
+            // event delivered while closing
+            return;
+        }
+        if( ( type & m_removeEvents ) != 0 )
+        {
+            remove( bundle );
+        }
+        if( ( type & m_addEvents ) != 0 && !m_indexed.containsKey( bundle ) )
+        {
+            final E entries = index( bundle );
+            if( entries != null )
+            {
+                publish( Collections.singletonMap( bundle, entries ) );
+            }
+        }
+    }
+
+    private void publish( final Map<Bundle, E> added )
+    {
+        if( added.isEmpty() )
+        {
+            return;
+        }
+        m_indexed.putAll( added );
+        added( added );
+        for( Bundle bundle : added.keySet() )
+        {
+            if( bundle.getState() == Bundle.UNINSTALLED )
+            {
+                // uninstalled while being indexed
+                remove( bundle );
+            }
+        }
+    }
+
+    private void remove( final Bundle bundle )
+    {
+        final E entries = m_indexed.remove( bundle );
+        if( entries != null )
+        {
+            removed( bundle, entries );
+        }
+    }
+
+    /**
+     * Adds a value to the values of a key in a map used to collect values before {@link MultiMap#addAll(Map)}.
+     */
+    static <K, V> void collect( final Map<K, List<V>> collected, final K key, final V value )
+    {
+        List<V> values = collected.get( key );
+        if( values == null )
+        {
+            values = new ArrayList<V>();
+            collected.put( key, values );
+        }
+        values.add( value );
+    }
+
+    /**
+     * Creates a multi map keeping the values of a key in a list, ordered by a comparator. The sort is stable, so
+     * values added together keep their order if equal.
+     *
+     * @param order order of the values
+     *
+     * @return created multi map
+     */
+    static <K, V> MultiMap<K, V, List<V>> sortedLists( final Comparator<? super V> order )
+    {
+        return new MultiMap<K, V, List<V>>()
+        {
+            @Override
+            List<V> copyOf( final List<V> values )
+            {
+                Collections.sort( values, order );
+                return Collections.unmodifiableList( values );
+            }
+
+            @Override
+            List<V> empty()
+            {
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    /**
+     * Creates a multi map keeping the values of a key in a set.
+     *
+     * @return created multi map
+     */
+    static <K, V> MultiMap<K, V, Set<V>> sets()
+    {
+        return new MultiMap<K, V, Set<V>>()
+        {
+            @Override
+            Set<V> copyOf( final List<V> values )
+            {
+                return Collections.unmodifiableSet( new HashSet<V>( values ) );
+            }
+
+            @Override
+            Set<V> empty()
+            {
+                return Collections.emptySet();
+            }
+        };
+    }
+
+    /**
+     * Mapping between a key and an unmodifiable collection of values. The collections are never modified, only
+     * replaced, so lookups need no locking. Updates must be serialized by the index.
+     */
+    abstract static class MultiMap<K, V, C extends Collection<V>>
+    {
+
+        private final ConcurrentMap<K, C> m_map = new ConcurrentHashMap<K, C>();
+
+        /**
+         * @param key key, may be null
+         *
+         * @return values of the key. Never null.
+         */
+        C get( final K key )
+        {
+            final C values = key == null ? null : m_map.get( key );
+            return values == null ? empty() : values;
+        }
+
+        /**
+         * Adds values, building one new collection per key.
+         *
+         * @param added values to add per key. The lists are handed over.
+         */
+        void addAll( final Map<K, List<V>> added )
+        {
+            for( Map.Entry<K, List<V>> entry : added.entrySet() )
+            {
+                final C existing = m_map.get( entry.getKey() );
+                final List<V> values;
+                if( existing == null )
+                {
+                    values = entry.getValue();
+                }
+                else
+                {
+                    values = new ArrayList<V>( existing.size() + entry.getValue().size() );
+                    values.addAll( existing );
+                    values.addAll( entry.getValue() );
+                }
+                m_map.put( entry.getKey(), copyOf( values ) );
+            }
+        }
+
+        void remove( final K key, final V value )
+        {
+            final C existing = m_map.get( key );
+            if( existing == null )
+            {
+                return;
+            }
+            final List<V> values = new ArrayList<V>( existing );
+            values.remove( value );
+            if( values.isEmpty() )
+            {
+                m_map.remove( key );
+            }
+            else
+            {
+                m_map.put( key, copyOf( values ) );
+            }
+        }
+
+        void clear()
+        {
+            m_map.clear();
+        }
+
+        /**
+         * @param values values, may be modified
+         *
+         * @return unmodifiable collection of the values
+         */
+        abstract C copyOf( List<V> values );
+
+        abstract C empty();
+
+    }
+
+}
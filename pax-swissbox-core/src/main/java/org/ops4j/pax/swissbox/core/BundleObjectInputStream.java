@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Proxy;
+
+import org.ops4j.lang.NullArgumentException;
+
+/**
+ * Object input stream resolving the classes of the deserialized objects through a {@link BundleClassLoader}. If a
+ * {@link ClassResolutionCache} is used, classes are looked up in the bundle only once, across all streams sharing the
+ * cache.
+ *
+ * @since 1.9.1
+ */
+public class BundleObjectInputStream
+    extends ObjectInputStream
+{
+
+    /**
+     * Class loader used to resolve classes. Cannot be null.
+     */
+    private final BundleClassLoader m_classLoader;
+    /**
+     * Cache of resolved classes. Null if classes are always resolved via the class loader.
+     */
+    private final ClassResolutionCache m_cache;
+
+    /**
+     * Creates an object input stream without cache.
+     *
+     * @param in          stream to read from. Cannot be null.
+     * @param classLoader class loader used to resolve classes. Cannot be null.
+     *
+     * @throws IOException re-thrown from reading the stream header
+     */
+    public BundleObjectInputStream( final InputStream in, final BundleClassLoader classLoader )
+        throws IOException
+    {
+        this( in, classLoader, null );
+    }
+
+    /**
+     * Creates an object input stream.
+     *
+     * @param in          stream to read from. Cannot be null.
+     * @param classLoader class loader used to resolve classes. Cannot be null.
+     * @param cache       cache of resolved classes, usually shared by many streams. Can be null.
+     *
+     * @throws IOException re-thrown from reading the stream header
+     */
+    public BundleObjectInputStream( final InputStream in,
+                                    final BundleClassLoader classLoader,
+                                    final ClassResolutionCache cache )
+        throws IOException
+    {
+        super( in );
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        m_classLoader = classLoader;
+        m_cache = cache;
+    }
+
+    /**
+     * Resolves the class via the bundle class loader. Falls back to the super implementation, mainly for primitive
+     * types.
+     *
+     * @see ObjectInputStream#resolveClass(ObjectStreamClass)
+     */
+    @Override
+    protected Class<?> resolveClass( final ObjectStreamClass desc )
+        throws IOException, ClassNotFoundException
+    {
+        try
+        {
+            return resolve( desc.getName() );
+        }
+        catch( ClassNotFoundException e )
+        {
+            return super.resolveClass( desc );
+        }
+    }
+
+    /**
+     * Resolves the interfaces via the bundle class loader and defines the proxy class in the same class loader.
+     *
+     * @see ObjectInputStream#resolveProxyClass(String[])
+     */
+    @Override
+    @SuppressWarnings( "deprecation" )
+    protected Class<?> resolveProxyClass( final String[] interfaces )
+        throws IOException, ClassNotFoundException
+    {
+        final Class<?>[] classes = new Class<?>[interfaces.length];
+        for( int i = 0; i < interfaces.length; i++ )
+        {
+            classes[i] = resolve( interfaces[i] );
+        }
+        try
+        {
+            return Proxy.getProxyClass( m_classLoader, classes );
+        }
+        catch( IllegalArgumentException e )
+        {
+            throw new ClassNotFoundException( "Cannot define proxy class", e );
+        }
+    }
+
+    private Class<?> resolve( final String className )
+        throws ClassNotFoundException
+    {
+        if( m_cache != null )
+        {
+            return m_cache.resolve( m_classLoader, className );
+        }
+        return ClassResolutionCache.load( m_classLoader, className );
+    }
+
+}
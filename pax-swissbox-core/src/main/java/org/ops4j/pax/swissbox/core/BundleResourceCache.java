@@ -0,0 +1,423 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Cache for the content of frequently read bundle resources (schemas, templates, static web content). The bytes are
+ * kept off heap in direct byte buffers, with an overall size limit and least recently used eviction, so that reads
+ * do not go through the framework URL handler and do not inflate the bundle entry again.
+ * <p>
+ * Entries are bound to the bundle revision they were read from: they are dropped once the bundle was updated. Register
+ * the cache as a bundle listener to also release the entries of bundles that are refreshed or uninstalled.
+ * <p>
+ * A cache can be shared by many {@link BundleClassLoader}s, see
+ * {@link BundleClassLoader#setResourceCache(BundleResourceCache)}. As the class loader decides where a resource is
+ * found, entries are kept per bundle and per parent class loader and delegation policy of the class loader they were
+ * looked up with (per class loader for other class loaders), so class loaders of the same bundle that delegate
+ * differently do not serve each other's content.
+ *
+ * @since 1.9.1
+ */
+public class BundleResourceCache
+    implements BundleListener
+{
+
+    /**
+     * Default maximum size of a single cached resource.
+     */
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum number of resources remembered as too big to be cached.
+     */
+    private static final int MAX_TOO_BIG_ENTRIES = 1024;
+
+    /**
+     * Maximum number of bytes of all cached resources.
+     */
+    private final long m_maxSize;
+    /**
+     * Maximum number of bytes of a single cached resource. Bigger resources are not cached.
+     */
+    private final int m_maxEntrySize;
+    /**
+     * Cached entries in access order. Guarded by itself.
+     */
+    private final LinkedHashMap<Key, Entry> m_entries;
+    /**
+     * Resources known to be too big to be cached, with the last modification of the bundle they were read from, in
+     * access order and limited to {@link #MAX_TOO_BIG_ENTRIES}. Guarded by m_entries.
+     */
+    private final LinkedHashMap<Key, Long> m_tooBig;
+    /**
+     * Number of bytes of all cached resources. Guarded by m_entries.
+     */
+    private long m_size;
+
+    /**
+     * Creates a resource cache not caching resources bigger than {@link #DEFAULT_MAX_ENTRY_SIZE}.
+     *
+     * @param maxSize maximum number of bytes of all cached resources
+     */
+    public BundleResourceCache( final long maxSize )
+    {
+        this( maxSize, DEFAULT_MAX_ENTRY_SIZE );
+    }
+
+    /**
+     * Creates a resource cache.
+     *
+     * @param maxSize      maximum number of bytes of all cached resources
+     * @param maxEntrySize maximum number of bytes of a single cached resource
+     */
+    public BundleResourceCache( final long maxSize, final int maxEntrySize )
+    {
+        if( maxSize < 0 || maxEntrySize < 0 )
+        {
+            throw new IllegalArgumentException( "Cache sizes must not be negative" );
+        }
+        m_maxSize = maxSize;
+        m_maxEntrySize = (int) Math.min( maxEntrySize, maxSize );
+        m_entries = new LinkedHashMap<Key, Entry>( 64, 0.75f, true );
+        m_tooBig = new LinkedHashMap<Key, Long>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<Key, Long> eldest )
+            {
+                return size() > MAX_TOO_BIG_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns a stream over the content of a resource, served from the cache if possible. On a cache miss the
+     * resource is looked up via the given class loader, read and, if small enough, cached.
+     *
+     * @param bundle      bundle the resource is looked up for
+     * @param name        resource name
+     * @param classLoader class loader used to find the resource on a cache miss
+     *
+     * @return stream over the resource content or null if the resource cannot be found
+     *
+     * @throws IOException re-thrown from reading the resource
+     */
+    public InputStream getResourceAsStream( final Bundle bundle, final String name, final ClassLoader classLoader )
+        throws IOException
+    {
+        final Key key = new Key( bundle.getBundleId(), name, lookupScope( classLoader ) );
+        final long lastModified = bundle.getLastModified();
+        final boolean tooBig;
+        synchronized( m_entries )
+        {
+            final Entry entry = m_entries.get( key );
+            if( entry != null && entry.lastModified == lastModified )
+            {
+                return new ByteBufferInputStream( entry.content );
+            }
+            remove( key );
+            final Long tooBigLastModified = m_tooBig.get( key );
+            tooBig = tooBigLastModified != null && tooBigLastModified == lastModified;
+        }
+        final URL url = classLoader.getResource( name );
+        if( url == null )
+        {
+            return null;
+        }
+        return tooBig ? url.openStream() : read( key, lastModified, url );
+    }
+
+    /**
+     * Reads a resource, caching its content if it is small enough.
+     */
+    private InputStream read( final Key key, final long lastModified, final URL url )
+        throws IOException
+    {
+        final InputStream in = url.openStream();
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        try
+        {
+            final byte[] buffer = new byte[8192];
+            int count;
+            while( read.size() <= m_maxEntrySize && ( count = in.read( buffer ) ) >= 0 )
+            {
+                read.write( buffer, 0, count );
+            }
+        }
+        catch( IOException e )
+        {
+            in.close();
+            throw e;
+        }
+        if( read.size() > m_maxEntrySize )
+        {
+            // too big, remember so that it is not read again, and hand out what was read plus the rest
+            synchronized( m_entries )
+            {
+                m_tooBig.put( key, lastModified );
+            }
+            return new SequenceInputStream( new ByteArrayInputStream( read.toByteArray() ), in );
+        }
+        in.close();
+        final ByteBuffer content = ByteBuffer.allocateDirect( read.size() );
+        content.put( read.toByteArray() ).flip();
+        put( key, new Entry( lastModified, content.asReadOnlyBuffer() ) );
+        return new ByteBufferInputStream( content );
+    }
+
+    /**
+     * Removes all cached resources of a bundle.
+     *
+     * @param bundle bundle
+     */
+    public void invalidate( final Bundle bundle )
+    {
+        final long bundleId = bundle.getBundleId();
+        synchronized( m_entries )
+        {
+            final Iterator<Map.Entry<Key, Entry>> iterator = m_entries.entrySet().iterator();
+            while( iterator.hasNext() )
+            {
+                final Map.Entry<Key, Entry> entry = iterator.next();
+                if( entry.getKey().bundleId == bundleId )
+                {
+                    m_size -= entry.getValue().size();
+                    iterator.remove();
+                }
+            }
+            final Iterator<Key> tooBig = m_tooBig.keySet().iterator();
+            while( tooBig.hasNext() )
+            {
+                if( tooBig.next().bundleId == bundleId )
+                {
+                    tooBig.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached resources.
+     */
+    public void clear()
+    {
+        synchronized( m_entries )
+        {
+            m_entries.clear();
+            m_tooBig.clear();
+            m_size = 0;
+        }
+    }
+
+    /**
+     * Getter.
+     *
+     * @return number of bytes of all cached resources
+     */
+    public long getSize()
+    {
+        synchronized( m_entries )
+        {
+            return m_size;
+        }
+    }
+
+    /**
+     * Releases the cached resources of bundles that are updated, refreshed or uninstalled.
+     *
+     * @see BundleListener#bundleChanged(BundleEvent)
+     */
+    public void bundleChanged( final BundleEvent event )
+    {
+        switch( event.getType() )
+        {
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+                invalidate( event.getBundle() );
+                break;
+        }
+    }
+
+    private void put( final Key key, final Entry entry )
+    {
+        synchronized( m_entries )
+        {
+            remove( key );
+            m_tooBig.remove( key );
+            m_entries.put( key, entry );
+            m_size += entry.size();
+            final Iterator<Entry> eldest = m_entries.values().iterator();
+            while( m_size > m_maxSize && eldest.hasNext() )
+            {
+                m_size -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void remove( final Key key )
+    {
+        final Entry removed = m_entries.remove( key );
+        if( removed != null )
+        {
+            m_size -= removed.size();
+        }
+    }
+
+    /**
+     * @param classLoader class loader resources are looked up with
+     *
+     * @return what, besides the bundle, decides where the class loader finds resources
+     */
+    private static Object lookupScope( final ClassLoader classLoader )
+    {
+        if( classLoader instanceof BundleClassLoader )
+        {
+            final BundleClassLoader bundleClassLoader = (BundleClassLoader) classLoader;
+            return new Scope( bundleClassLoader.getParent(), bundleClassLoader.getDelegationPolicy() );
+        }
+        return classLoader;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append( "maxSize=" ).append(
+            m_maxSize ).append( ",maxEntrySize=" ).append( m_maxEntrySize ).append( "}" ).toString();
+    }
+
+    /**
+     * Bundle, resource name and lookup scope.
+     */
+    private static final class Key
+    {
+
+        final long bundleId;
+        final String name;
+        final Object scope;
+
+        Key( final long bundleId, final String name, final Object scope )
+        {
+            this.bundleId = bundleId;
+            this.name = name;
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if( this == o )
+            {
+                return true;
+            }
+            if( !( o instanceof Key ) )
+            {
+                return false;
+            }
+            final Key that = (Key) o;
+            return bundleId == that.bundleId && name.equals( that.name )
+                   && ( scope == null ? that.scope == null : scope.equals( that.scope ) );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ( Long.hashCode( bundleId ) * 31 + name.hashCode() ) * 31 + ( scope == null ? 0 : scope.hashCode() );
+        }
+
+    }
+
+    /**
+     * Parent class loader and delegation policy of a bundle class loader.
+     */
+    private static final class Scope
+    {
+
+        final ClassLoader parent;
+        final DelegationPolicy delegationPolicy;
+
+        Scope( final ClassLoader parent, final DelegationPolicy delegationPolicy )
+        {
+            this.parent = parent;
+            this.delegationPolicy = delegationPolicy;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if( this == o )
+            {
+                return true;
+            }
+            if( !( o instanceof Scope ) )
+            {
+                return false;
+            }
+            final Scope that = (Scope) o;
+            return parent == that.parent && delegationPolicy.equals( that.delegationPolicy );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode( parent ) * 31 + delegationPolicy.hashCode();
+        }
+
+    }
+
+    /**
+     * Cached content and the revision of the bundle it was read from.
+     */
+    private static final class Entry
+    {
+
+        final long lastModified;
+        /**
+         * Read only content.
+         */
+        final ByteBuffer content;
+
+        Entry( final long lastModified, final ByteBuffer content )
+        {
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+
+        long size()
+        {
+            return content.capacity();
+        }
+
+    }
+
+}
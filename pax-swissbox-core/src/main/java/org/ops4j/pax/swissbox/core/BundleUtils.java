@@ -17,13 +17,17 @@
  */
 package org.ops4j.pax.swissbox.core;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Version;
 
 /**
  * Utilities related to bundles.
@@ -35,9 +39,38 @@ import org.osgi.framework.BundleContext;
 public class BundleUtils
 {
 
+    /**
+     * Whether a concrete bundle class implements getBundleContext (OSGi spec &gt;= 4.1), resolved on first use.
+     */
+    private static final ClassValue<Boolean> BUNDLE_CONTEXT_METHODS = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue( final Class<?> bundleClass )
+        {
+            return implementsGetBundleContext( bundleClass );
+        }
+    };
+
+    /**
+     * Getter of a field that looks like a bundle context per concrete bundle class, of type (Bundle)BundleContext,
+     * resolved only once the getBundleContext method cannot be used. Null if there is no such field.
+     */
+    private static final ClassValue<MethodHandle> BUNDLE_CONTEXT_FIELDS = new ClassValue<MethodHandle>()
+    {
+        @Override
+        protected MethodHandle computeValue( final Class<?> bundleClass )
+        {
+            return bundleContextGetter( bundleClass );
+        }
+    };
+
     /**
      * Discovers the bundle context for a bundle. If the bundle is an 4.1.0 or greater bundle it should have a method
      * that just returns the bundle context. Otherwise uses reflection to look for an internal bundle context.
+     * <p>
+     * The way the bundle context is accessed is discovered once per bundle implementation class and cached, so
+     * subsequent calls do not use reflection to find it again: bundles implementing getBundleContext are called
+     * directly, for others the getter of the field is kept as a method handle.
      *
      * @param bundle the bundle from which the bundle context is needed
      *
@@ -45,43 +78,94 @@ public class BundleUtils
      */
     public static BundleContext getBundleContext( final Bundle bundle )
     {
-        try
+        final Class<?> bundleClass = bundle.getClass();
+        if( BUNDLE_CONTEXT_METHODS.get( bundleClass ) )
         {
-            // first try to find the getBundleContext method (OSGi spec >= 4.10)
-            final Method method = Bundle.class.getDeclaredMethod( "getBundleContext" );
-            if( !method.isAccessible() )
+            try
             {
-                method.setAccessible( true );
+                return bundle.getBundleContext();
+            }
+            catch( RuntimeException ignore )
+            {
+                // then try to find a field in the bundle that looks like a bundle context
             }
-            return (BundleContext) method.invoke( bundle );
         }
-        catch( Exception e )
+        final MethodHandle getter = BUNDLE_CONTEXT_FIELDS.get( bundleClass );
+        if( getter != null )
         {
-            // then try to find a field in the bundle that looks like a bundle context
             try
             {
-                final Field[] fields = bundle.getClass().getDeclaredFields();
-                for( Field field : fields )
-                {
-                    if( BundleContext.class.isAssignableFrom( field.getType() ) )
-                    {
-                        if( !field.isAccessible() )
-                        {
-                            field.setAccessible( true );
-                        }
-                        return (BundleContext) field.get( bundle );
-                    }
-                }
+                return (BundleContext) getter.invokeExact( bundle );
             }
-            catch( Exception ignore )
+            catch( RuntimeException ignore )
             {
                 // ignore
             }
+            catch( Error e )
+            {
+                throw e;
+            }
+            catch( Throwable ignore )
+            {
+                // a field getter does not throw checked exceptions
+            }
         }
         // well, discovery failed
         return null;
     }
 
+    /**
+     * @param bundleClass concrete bundle class
+     *
+     * @return true if the class implements getBundleContext, false for bundles of pre 4.1 frameworks
+     */
+    private static boolean implementsGetBundleContext( final Class<?> bundleClass )
+    {
+        try
+        {
+            return !Modifier.isAbstract( bundleClass.getMethod( "getBundleContext" ).getModifiers() );
+        }
+        catch( NoSuchMethodException ignore )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param bundleClass concrete bundle class
+     *
+     * @return getter, of type (Bundle)BundleContext, of a field of the class or its super classes that looks like a
+     *         bundle context, null if there is no such field or it cannot be made accessible
+     */
+    private static MethodHandle bundleContextGetter( final Class<?> bundleClass )
+    {
+        for( Class<?> type = bundleClass; type != null && type != Object.class; type = type.getSuperclass() )
+        {
+            for( Field field : type.getDeclaredFields() )
+            {
+                if( BundleContext.class.isAssignableFrom( field.getType() ) )
+                {
+                    try
+                    {
+                        field.setAccessible( true );
+                        return MethodHandles.lookup().unreflectGetter( field ).asType(
+                            MethodType.methodType( BundleContext.class, Bundle.class )
+                        );
+                    }
+                    catch( RuntimeException ignore )
+                    {
+                        // not accessible (e.g. in a named module), keep looking
+                    }
+                    catch( IllegalAccessException ignore )
+                    {
+                        // not accessible, keep looking
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns any bundle with the given symbolic name, or null if no such bundle exists. If there
      * are multiple bundles with the same symbolic name and different version, this method returns
@@ -97,7 +181,8 @@ public class BundleUtils
     }
 
     /**
-     * Returns a list of all bundles with the given symbolic name.
+     * Returns a list of all bundles with the given symbolic name. Scans all installed bundles; use a
+     * {@link BundleIndex} for repeated lookups.
      *
      * @param bc bundle context
      * @param symbolicName bundle symbolic name
@@ -108,7 +193,7 @@ public class BundleUtils
         List<Bundle> bundles = new ArrayList<Bundle>();
         for( Bundle bundle : bc.getBundles() )
         {
-            if( bundle.getSymbolicName().equals( symbolicName ) )
+            if( symbolicName != null && symbolicName.equals( bundle.getSymbolicName() ) )
             {
                 bundles.add( bundle );
             }
@@ -118,20 +203,22 @@ public class BundleUtils
 
     /**
      * Returns the bundle with the given symbolic name and the given version, or null if no such
-     * bundle exists
+     * bundle exists. Scans all installed bundles; use a {@link BundleIndex} for repeated lookups.
      *
      * @param bc bundle context
      * @param symbolicName bundle symbolic name
      * @param version bundle version
      * @return matching bundle, or null
+     * @throws IllegalArgumentException if version is not a valid version
      */
     public static Bundle getBundle( BundleContext bc, String symbolicName, String version )
     {
+        final Version expected = version == null ? null : Version.parseVersion( version );
         for( Bundle bundle : bc.getBundles() )
         {
-            if( bundle.getSymbolicName().equals( symbolicName ) )
+            if( symbolicName != null && symbolicName.equals( bundle.getSymbolicName() ) )
             {
-                if( version == null || version.equals( bundle.getVersion() ) )
+                if( expected == null || expected.equals( bundle.getVersion() ) )
                 {
                     return bundle;
                 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading from a byte buffer, without copying the buffer.
+ *
+ * @since 1.9.1
+ */
+class ByteBufferInputStream extends InputStream
+{
+
+    /**
+     * Buffer to read from. Its position is the read position. Cannot be null.
+     */
+    private final ByteBuffer m_buffer;
+
+    /**
+     * @param buffer buffer to read from. The stream reads from its own view of the buffer, so the buffer can be
+     *               shared by many streams.
+     */
+    ByteBufferInputStream( final ByteBuffer buffer )
+    {
+        m_buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read()
+    {
+        return m_buffer.hasRemaining() ? m_buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read( final byte[] bytes, final int offset, final int length )
+    {
+        if( length == 0 )
+        {
+            return 0;
+        }
+        if( !m_buffer.hasRemaining() )
+        {
+            return -1;
+        }
+        final int count = Math.min( length, m_buffer.remaining() );
+        m_buffer.get( bytes, offset, count );
+        return count;
+    }
+
+    @Override
+    public long skip( final long count )
+    {
+        final int skipped = (int) Math.max( 0, Math.min( count, m_buffer.remaining() ) );
+        m_buffer.position( m_buffer.position() + skipped );
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        return m_buffer.remaining();
+    }
+
+}
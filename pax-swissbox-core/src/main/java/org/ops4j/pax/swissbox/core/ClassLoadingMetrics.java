@@ -0,0 +1,295 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Class loading counters of a {@link BundleClassLoader}: loads, misses, parent delegations, time spent and the slowest
+ * names. Counters are striped ({@link LongAdder}) so that concurrent class loading does not contend on them.
+ * <p>
+ * Metrics are opt-in, see {@link BundleClassLoader#setClassLoadingMetrics(ClassLoadingMetrics)}, and can be exposed
+ * via JMX using {@link #register(MBeanServer, Bundle)}.
+ *
+ * @since 1.9.1
+ */
+public class ClassLoadingMetrics
+    implements ClassLoadingMetricsMXBean
+{
+
+    /**
+     * Default number of slowest names kept.
+     */
+    public static final int DEFAULT_SLOWEST_SIZE = 10;
+
+    private final LongAdder m_classLoads;
+    private final LongAdder m_classMisses;
+    private final LongAdder m_classLoadNanos;
+    private final LongAdder m_resourceLookups;
+    private final LongAdder m_resourceMisses;
+    private final LongAdder m_resourceLookupNanos;
+    private final LongAdder m_parentDelegations;
+    /**
+     * Maximum number of slowest names kept.
+     */
+    private final int m_slowestSize;
+    /**
+     * Slowest names, slowest first. Guarded by itself.
+     */
+    private final List<Slow> m_slowest;
+    /**
+     * Time a lookup must take to be one of the slowest, so that faster lookups do not need to take the lock.
+     */
+    private volatile long m_slowestThreshold;
+
+    /**
+     * Creates metrics keeping {@link #DEFAULT_SLOWEST_SIZE} slowest names.
+     */
+    public ClassLoadingMetrics()
+    {
+        this( DEFAULT_SLOWEST_SIZE );
+    }
+
+    /**
+     * Creates metrics.
+     *
+     * @param slowestSize number of slowest names kept
+     */
+    public ClassLoadingMetrics( final int slowestSize )
+    {
+        if( slowestSize < 0 )
+        {
+            throw new IllegalArgumentException( "Slowest size must not be negative" );
+        }
+        m_classLoads = new LongAdder();
+        m_classMisses = new LongAdder();
+        m_classLoadNanos = new LongAdder();
+        m_resourceLookups = new LongAdder();
+        m_resourceMisses = new LongAdder();
+        m_resourceLookupNanos = new LongAdder();
+        m_parentDelegations = new LongAdder();
+        m_slowestSize = slowestSize;
+        m_slowest = new ArrayList<Slow>( slowestSize + 1 );
+        m_slowestThreshold = slowestSize == 0 ? Long.MAX_VALUE : 0;
+    }
+
+    /**
+     * Records a class load.
+     *
+     * @param className name of the class
+     * @param nanos     time spent
+     * @param found     true if the class was found
+     */
+    public void recordClassLoad( final String className, final long nanos, final boolean found )
+    {
+        m_classLoads.increment();
+        m_classLoadNanos.add( nanos );
+        if( !found )
+        {
+            m_classMisses.increment();
+        }
+        recordSlowest( className, nanos );
+    }
+
+    /**
+     * Records a resource lookup.
+     *
+     * @param resourceName name of the resource
+     * @param nanos        time spent
+     * @param found        true if the resource was found
+     */
+    public void recordResourceLookup( final String resourceName, final long nanos, final boolean found )
+    {
+        m_resourceLookups.increment();
+        m_resourceLookupNanos.add( nanos );
+        if( !found )
+        {
+            m_resourceMisses.increment();
+        }
+        recordSlowest( resourceName, nanos );
+    }
+
+    /**
+     * Records the delegation of a class load or resource lookup to the parent class loader.
+     */
+    public void recordParentDelegation()
+    {
+        m_parentDelegations.increment();
+    }
+
+    public long getClassLoads()
+    {
+        return m_classLoads.sum();
+    }
+
+    public long getClassMisses()
+    {
+        return m_classMisses.sum();
+    }
+
+    public long getClassLoadNanos()
+    {
+        return m_classLoadNanos.sum();
+    }
+
+    public long getResourceLookups()
+    {
+        return m_resourceLookups.sum();
+    }
+
+    public long getResourceMisses()
+    {
+        return m_resourceMisses.sum();
+    }
+
+    public long getResourceLookupNanos()
+    {
+        return m_resourceLookupNanos.sum();
+    }
+
+    public long getParentDelegations()
+    {
+        return m_parentDelegations.sum();
+    }
+
+    public Map<String, Long> getSlowest()
+    {
+        final Map<String, Long> slowest = new LinkedHashMap<String, Long>();
+        synchronized( m_slowest )
+        {
+            for( Slow slow : m_slowest )
+            {
+                slowest.put( slow.name, slow.nanos );
+            }
+        }
+        return slowest;
+    }
+
+    public void reset()
+    {
+        m_classLoads.reset();
+        m_classMisses.reset();
+        m_classLoadNanos.reset();
+        m_resourceLookups.reset();
+        m_resourceMisses.reset();
+        m_resourceLookupNanos.reset();
+        m_parentDelegations.reset();
+        synchronized( m_slowest )
+        {
+            m_slowest.clear();
+            m_slowestThreshold = m_slowestSize == 0 ? Long.MAX_VALUE : 0;
+        }
+    }
+
+    /**
+     * Registers the metrics as MXBean named
+     * {@code org.ops4j.pax.swissbox:type=ClassLoadingMetrics,bundle=<symbolic name>,id=<bundle id>}.
+     *
+     * @param server MBean server to register with
+     * @param bundle bundle of the class loader the metrics are recorded for
+     *
+     * @return name the metrics were registered with, to be used for un-registration
+     *
+     * @throws JMException re-thrown from registration
+     */
+    public ObjectName register( final MBeanServer server, final Bundle bundle )
+        throws JMException
+    {
+        final ObjectName name = new ObjectName(
+            "org.ops4j.pax.swissbox:type=ClassLoadingMetrics,bundle="
+            + ObjectName.quote( String.valueOf( bundle.getSymbolicName() ) )
+            + ",id=" + bundle.getBundleId()
+        );
+        return server.registerMBean( this, name ).getObjectName();
+    }
+
+    private void recordSlowest( final String name, final long nanos )
+    {
+        if( nanos <= m_slowestThreshold )
+        {
+            return;
+        }
+        synchronized( m_slowest )
+        {
+            for( int i = 0; i < m_slowest.size(); i++ )
+            {
+                if( m_slowest.get( i ).name.equals( name ) )
+                {
+                    if( m_slowest.get( i ).nanos >= nanos )
+                    {
+                        return;
+                    }
+                    m_slowest.remove( i );
+                    break;
+                }
+            }
+            int index = 0;
+            while( index < m_slowest.size() && m_slowest.get( index ).nanos >= nanos )
+            {
+                index++;
+            }
+            m_slowest.add( index, new Slow( name, nanos ) );
+            if( m_slowest.size() > m_slowestSize )
+            {
+                m_slowest.remove( m_slowest.size() - 1 );
+            }
+            if( m_slowest.size() == m_slowestSize )
+            {
+                m_slowestThreshold = m_slowest.get( m_slowest.size() - 1 ).nanos;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+            "classLoads=" ).append( getClassLoads() ).append( ",classMisses=" ).append( getClassMisses() ).append(
+            ",resourceLookups=" ).append( getResourceLookups() ).append( ",resourceMisses=" ).append(
+            getResourceMisses() ).append( ",parentDelegations=" ).append( getParentDelegations() ).append(
+            "}" ).toString();
+    }
+
+    /**
+     * Name and time spent pair.
+     */
+    private static final class Slow
+    {
+
+        final String name;
+        final long nanos;
+
+        Slow( final String name, final long nanos )
+        {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link ClassLoadingMetrics} of a {@link BundleClassLoader}.
+ *
+ * @since 1.9.1
+ */
+public interface ClassLoadingMetricsMXBean
+{
+
+    /**
+     * @return number of classes requested via loadClass(), found or not
+     */
+    long getClassLoads();
+
+    /**
+     * @return number of classes requested via loadClass() that were not found
+     */
+    long getClassMisses();
+
+    /**
+     * @return cumulative time spent in loadClass(), in nanoseconds
+     */
+    long getClassLoadNanos();
+
+    /**
+     * @return number of resources requested via getResource() or getResources(), found or not
+     */
+    long getResourceLookups();
+
+    /**
+     * @return number of resources requested via getResource() or getResources() that were not found
+     */
+    long getResourceMisses();
+
+    /**
+     * @return cumulative time spent in getResource() and getResources(), in nanoseconds
+     */
+    long getResourceLookupNanos();
+
+    /**
+     * @return number of class loads and resource lookups that were delegated to the parent class loader
+     */
+    long getParentDelegations();
+
+    /**
+     * @return slowest class and resource names and the time spent for them, in nanoseconds, slowest first
+     */
+    Map<String, Long> getSlowest();
+
+    /**
+     * Resets all counters.
+     */
+    void reset();
+
+}
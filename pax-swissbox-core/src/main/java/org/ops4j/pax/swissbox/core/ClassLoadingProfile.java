@@ -0,0 +1,413 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+
+/**
+ * Class loading profile of a bundle: the classes loaded during the first seconds after the bundle started. The
+ * profile is recorded by a {@link BundleClassLoader} and stored in the data area of the bundle, so that on the next
+ * start the same classes can be loaded in the background, before the first requests need them.
+ * <p>
+ * Typical usage, e.g. from the bundle activator:
+ * <pre>
+ * final ClassLoadingProfile profile = new ClassLoadingProfile( bundle, 30, TimeUnit.SECONDS );
+ * profile.preload( classLoader );
+ * classLoader.setClassLoadingProfile( profile );
+ * profile.startRecording();
+ * </pre>
+ *
+ * @since 1.9.1
+ */
+public class ClassLoadingProfile
+{
+
+    /**
+     * Name of the file (in the bundle data area) the profile is stored in.
+     */
+    public static final String PROFILE_FILE = "pax-swissbox-class-loading.profile";
+
+    /**
+     * Number of classes preloaded by one task, so that a profile is preloaded by several executor threads.
+     */
+    private static final int PRELOAD_BATCH_SIZE = 32;
+
+    /**
+     * Bundle the profile is recorded for. Cannot be null.
+     */
+    private final Bundle m_bundle;
+    /**
+     * How long classes are recorded after recording was started, in milliseconds.
+     */
+    private final long m_recordingMillis;
+    /**
+     * Names of recorded classes, used to record each class only once.
+     */
+    private final Set<String> m_recorded;
+    /**
+     * Recorded class names, in loading order.
+     */
+    private final ConcurrentLinkedQueue<String> m_classNames;
+    /**
+     * True while recording.
+     */
+    private volatile boolean m_recording;
+    /**
+     * Incremented on each start of recording, so that a pending stop of an earlier recording is ignored.
+     */
+    private int m_recordings;
+    /**
+     * Set while the current thread preloads classes, so that preloaded classes are not recorded again.
+     */
+    private final ThreadLocal<Boolean> m_preloading;
+    /**
+     * Class names of the profile preloaded last, in loading order. Empty if nothing was preloaded.
+     */
+    private volatile List<String> m_preloadClassNames;
+    /**
+     * Names of the classes preloaded successfully. As the class loader is then their initiating loader, later
+     * requests do not reach the bundle anymore and are not recorded, so these classes are added to the profile.
+     */
+    private final Set<String> m_preloaded;
+
+    /**
+     * Creates a class loading profile.
+     *
+     * @param bundle        bundle the profile is recorded for. Cannot be null.
+     * @param recordingTime how long classes are recorded after {@link #startRecording()}
+     * @param unit          unit of recording time. Cannot be null.
+     */
+    public ClassLoadingProfile( final Bundle bundle, final long recordingTime, final TimeUnit unit )
+    {
+        NullArgumentException.validateNotNull( bundle, "Bundle" );
+        NullArgumentException.validateNotNull( unit, "Time unit" );
+        m_bundle = bundle;
+        m_recordingMillis = unit.toMillis( recordingTime );
+        m_recorded = ConcurrentHashMap.newKeySet();
+        m_classNames = new ConcurrentLinkedQueue<String>();
+        m_preloading = new ThreadLocal<Boolean>();
+        m_preloadClassNames = Collections.emptyList();
+        m_preloaded = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Getter.
+     *
+     * @return bundle the profile is recorded for
+     */
+    public Bundle getBundle()
+    {
+        return m_bundle;
+    }
+
+    /**
+     * Starts recording the loaded classes. Once the recording time elapsed the profile is stored in the bundle data
+     * area, replacing the previous profile. Has no effect if already recording.
+     */
+    public synchronized void startRecording()
+    {
+        if( m_recording )
+        {
+            return;
+        }
+        m_recorded.clear();
+        m_classNames.clear();
+        m_recording = true;
+        final int recording = ++m_recordings;
+        CompletableFuture.runAsync( new Runnable()
+        {
+            public void run()
+            {
+                synchronized( ClassLoadingProfile.this )
+                {
+                    if( recording == m_recordings )
+                    {
+                        stopRecording();
+                    }
+                }
+            }
+        }, CompletableFuture.delayedExecutor( m_recordingMillis, TimeUnit.MILLISECONDS ) );
+    }
+
+    /**
+     * Stops recording before the recording time elapsed and stores the profile. Has no effect if not recording. The
+     * stored profile contains the classes preloaded so far, followed by the recorded classes.
+     *
+     * @return true if the profile was stored
+     */
+    public synchronized boolean stopRecording()
+    {
+        if( !m_recording )
+        {
+            return false;
+        }
+        m_recording = false;
+        final Set<String> classNames = new LinkedHashSet<String>();
+        for( String className : m_preloadClassNames )
+        {
+            if( m_preloaded.contains( className ) )
+            {
+                classNames.add( className );
+            }
+        }
+        classNames.addAll( m_classNames );
+        return store( new ArrayList<String>( classNames ) );
+    }
+
+    /**
+     * Getter.
+     *
+     * @return true while classes are recorded
+     */
+    public boolean isRecording()
+    {
+        return m_recording;
+    }
+
+    /**
+     * Records a loaded class. Called by {@link BundleClassLoader} on each class found in the bundle. Classes loaded
+     * by {@link #preload(ClassLoader, Executor)} are not recorded here but added to the profile when it is stored.
+     *
+     * @param className name of loaded class
+     */
+    public void record( final String className )
+    {
+        if( m_recording && m_preloading.get() == null && m_recorded.add( className ) )
+        {
+            m_classNames.add( className );
+        }
+    }
+
+    /**
+     * Returns the classes of the stored profile.
+     *
+     * @return class names in loading order. Empty if there is no stored profile.
+     */
+    public List<String> getStoredClassNames()
+    {
+        final File file = m_bundle.getDataFile( PROFILE_FILE );
+        if( file == null || !file.isFile() )
+        {
+            return Collections.emptyList();
+        }
+        final List<String> classNames = new ArrayList<String>();
+        try
+        {
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 )
+            );
+            try
+            {
+                String line;
+                while( ( line = reader.readLine() ) != null )
+                {
+                    line = line.trim();
+                    if( line.length() > 0 )
+                    {
+                        classNames.add( line );
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch( IOException ignore )
+        {
+            // profile cannot be read, so there is nothing to preload
+            return Collections.emptyList();
+        }
+        return classNames;
+    }
+
+    /**
+     * Loads the classes of the stored profile in the background, using the common fork join pool.
+     *
+     * @param classLoader class loader to load the classes with. Cannot be null.
+     *
+     * @return future completed with the number of loaded classes
+     *
+     * @see #preload(ClassLoader, Executor)
+     */
+    public CompletableFuture<Integer> preload( final ClassLoader classLoader )
+    {
+        return preload( classLoader, ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Loads (without initializing) the classes of the stored profile in the background, split into several tasks.
+     * Classes that cannot be loaded anymore are skipped. The classes loaded this way are kept for the next stored
+     * profile, as requests for them do not reach the bundle anymore.
+     *
+     * @param classLoader class loader to load the classes with. Cannot be null.
+     * @param executor    executor to load the classes with. Cannot be null.
+     *
+     * @return future completed with the number of loaded classes
+     */
+    public CompletableFuture<Integer> preload( final ClassLoader classLoader, final Executor executor )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        NullArgumentException.validateNotNull( executor, "Executor" );
+        return CompletableFuture.supplyAsync( new Supplier<List<String>>()
+        {
+            public List<String> get()
+            {
+                final List<String> classNames = getStoredClassNames();
+                m_preloaded.clear();
+                m_preloadClassNames = classNames;
+                return classNames;
+            }
+        }, executor ).thenCompose( new Function<List<String>, CompletionStage<Integer>>()
+        {
+            public CompletionStage<Integer> apply( final List<String> classNames )
+            {
+                final List<CompletableFuture<Integer>> batches = new ArrayList<CompletableFuture<Integer>>();
+                for( int from = 0; from < classNames.size(); from += PRELOAD_BATCH_SIZE )
+                {
+                    final List<String> batch =
+                        classNames.subList( from, Math.min( from + PRELOAD_BATCH_SIZE, classNames.size() ) );
+                    batches.add( CompletableFuture.supplyAsync( new Supplier<Integer>()
+                    {
+                        public Integer get()
+                        {
+                            return preload( classLoader, batch );
+                        }
+                    }, executor ) );
+                }
+                return CompletableFuture.allOf( batches.toArray( new CompletableFuture<?>[batches.size()] ) )
+                    .thenApply( new Function<Void, Integer>()
+                    {
+                        public Integer apply( final Void ignore )
+                        {
+                            int loaded = 0;
+                            for( CompletableFuture<Integer> batch : batches )
+                            {
+                                loaded += batch.join();
+                            }
+                            return loaded;
+                        }
+                    } );
+            }
+        } );
+    }
+
+    /**
+     * @return number of loaded classes
+     */
+    private int preload( final ClassLoader classLoader, final List<String> classNames )
+    {
+        m_preloading.set( Boolean.TRUE );
+        try
+        {
+            int loaded = 0;
+            for( String className : classNames )
+            {
+                if( m_bundle.getState() == Bundle.UNINSTALLED )
+                {
+                    break;
+                }
+                try
+                {
+                    Class.forName( className, false, classLoader );
+                    m_preloaded.add( className );
+                    loaded++;
+                }
+                catch( ClassNotFoundException ignore )
+                {
+                    // class was removed since the profile was recorded
+                }
+                catch( LinkageError ignore )
+                {
+                    // will fail again when the class is really needed
+                }
+            }
+            return loaded;
+        }
+        finally
+        {
+            m_preloading.remove();
+        }
+    }
+
+    private boolean store( final List<String> classNames )
+    {
+        final File file = m_bundle.getDataFile( PROFILE_FILE );
+        if( file == null )
+        {
+            // no file system support
+            return false;
+        }
+        try
+        {
+            final BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 )
+            );
+            try
+            {
+                for( String className : classNames )
+                {
+                    writer.write( className );
+                    writer.newLine();
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+            return true;
+        }
+        catch( IOException ignore )
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append( "bundle=" ).append(
+            m_bundle.getSymbolicName() ).append( ",recording=" ).append( m_recording ).append( "}" ).toString();
+    }
+
+}
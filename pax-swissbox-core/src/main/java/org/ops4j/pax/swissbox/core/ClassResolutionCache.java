@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Cache of class name to class resolutions done via {@link BundleClassLoader}s, shared by many
+ * {@link BundleObjectInputStream}s so that each class of a serialized payload is looked up in the bundle only once.
+ * Only successful resolutions are cached.
+ * <p>
+ * Register the cache as a bundle listener: the resolutions of a bundle are dropped once the bundle is refreshed,
+ * updated or uninstalled, so that new streams see the classes of the new bundle revision.
+ *
+ * @since 1.9.1
+ */
+public class ClassResolutionCache
+    implements BundleListener
+{
+
+    /**
+     * Mapping between class loader and the classes resolved through it.
+     */
+    private final ConcurrentMap<BundleClassLoader, ConcurrentMap<String, Class<?>>> m_classes;
+
+    /**
+     * Creates an empty cache.
+     */
+    public ClassResolutionCache()
+    {
+        m_classes = new ConcurrentHashMap<BundleClassLoader, ConcurrentMap<String, Class<?>>>();
+    }
+
+    /**
+     * Resolves a class through a class loader, using the cache if possible. The class is not initialized.
+     * <p>
+     * Classes are resolved via {@link ClassLoader#loadClass(String)} and not via {@link Class#forName(String,
+     * boolean, ClassLoader)}, as the virtual machine remembers the latter per class loader, even after the bundle was
+     * refreshed.
+     *
+     * @param classLoader class loader to resolve the class with. Cannot be null.
+     * @param className   class name, as returned by {@link Class#getName()}
+     *
+     * @return resolved class
+     *
+     * @throws ClassNotFoundException if the class cannot be found
+     */
+    public Class<?> resolve( final BundleClassLoader classLoader, final String className )
+        throws ClassNotFoundException
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        ConcurrentMap<String, Class<?>> classes = m_classes.get( classLoader );
+        if( classes != null )
+        {
+            final Class<?> clazz = classes.get( className );
+            if( clazz != null )
+            {
+                return clazz;
+            }
+        }
+        final Class<?> clazz = load( classLoader, className );
+        if( classes == null )
+        {
+            classes = new ConcurrentHashMap<String, Class<?>>();
+            final ConcurrentMap<String, Class<?>> existing = m_classes.putIfAbsent( classLoader, classes );
+            if( existing != null )
+            {
+                classes = existing;
+            }
+        }
+        classes.put( className, clazz );
+        if( classLoader.getBundle().getState() == Bundle.UNINSTALLED )
+        {
+            // uninstalled while resolving, do not keep the class alive
+            invalidate( classLoader.getBundle() );
+        }
+        return clazz;
+    }
+
+    /**
+     * Loads a class via a class loader, including array classes named as by {@link Class#getName()}, e.g.
+     * "[Lorg.foo.Bar;" or "[[I".
+     *
+     * @param classLoader class loader
+     * @param className   class name
+     *
+     * @return loaded class
+     *
+     * @throws ClassNotFoundException if the class cannot be found
+     */
+    static Class<?> load( final ClassLoader classLoader, final String className )
+        throws ClassNotFoundException
+    {
+        if( !className.startsWith( "[" ) )
+        {
+            return classLoader.loadClass( className );
+        }
+        int dimensions = 0;
+        while( dimensions < className.length() && className.charAt( dimensions ) == '[' )
+        {
+            dimensions++;
+        }
+        final String element = className.substring( dimensions );
+        Class<?> clazz;
+        if( element.length() > 2 && element.charAt( 0 ) == 'L' && element.endsWith( ";" ) )
+        {
+            clazz = classLoader.loadClass( element.substring( 1, element.length() - 1 ) );
+        }
+        else
+        {
+            // primitive element type
+            return Class.forName( className, false, null );
+        }
+        for( int i = 0; i < dimensions; i++ )
+        {
+            clazz = Array.newInstance( clazz, 0 ).getClass();
+        }
+        return clazz;
+    }
+
+    /**
+     * Removes the cached resolutions of all class loaders of a bundle.
+     *
+     * @param bundle bundle
+     */
+    public void invalidate( final Bundle bundle )
+    {
+        final Iterator<BundleClassLoader> iterator = m_classes.keySet().iterator();
+        while( iterator.hasNext() )
+        {
+            if( iterator.next().getBundle().equals( bundle ) )
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached resolutions.
+     */
+    public void clear()
+    {
+        m_classes.clear();
+    }
+
+    /**
+     * Drops the resolutions of bundles that are refreshed, updated or uninstalled.
+     *
+     * @see BundleListener#bundleChanged(BundleEvent)
+     */
+    public void bundleChanged( final BundleEvent event )
+    {
+        switch( event.getType() )
+        {
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+                invalidate( event.getBundle() );
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.namespace.BundleNamespace;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.resource.Namespace;
+
+/**
+ * Probabilistic index of the class and resource names local to a bundle (own entries, bundle class path and
+ * fragments). Used to reject lookups that will certainly fail without calling into the framework. Only names in
+ * packages that are neither imported nor taken from a required bundle are rejected, as frameworks do not reliably
+ * list the resources of wired packages, e.g. those exported by the system bundle.
+ * <p>
+ * The index is built lazily in the background on first use and dropped as soon as the wiring it was built from is no
+ * longer current (bundle updated or refreshed). Until the index is available no lookup is rejected. Names in packages
+ * that may be delegated to the boot class path (java.*, JDK packages, boot delegation) are never rejected, neither
+ * are lookups from bundles using dynamic imports.
+ *
+ * @since 1.9.1
+ */
+final class ClassSpaceIndex
+{
+
+    /**
+     * Packages of the boot module layer. Frameworks may delegate those to the parent class loader even when not
+     * imported, so they are never considered misses.
+     */
+    private static final Set<String> JDK_PACKAGES = jdkPackages();
+
+    /**
+     * Bundle whose class space is indexed. Cannot be null.
+     */
+    private final Bundle m_bundle;
+    /**
+     * Built index or null if not (yet) available.
+     */
+    private volatile Snapshot m_snapshot;
+    /**
+     * True while a build is scheduled or running.
+     */
+    private final AtomicBoolean m_building;
+    /**
+     * True if the last build found the bundle unresolved or uninstalled, so that no build is scheduled again until the
+     * bundle got resolved.
+     */
+    private volatile boolean m_unresolved;
+
+    ClassSpaceIndex( final Bundle bundle )
+    {
+        m_bundle = bundle;
+        m_building = new AtomicBoolean();
+    }
+
+    /**
+     * @param className fully qualified class name
+     *
+     * @return true if the class is certainly not visible to the bundle
+     */
+    boolean isCertainClassMiss( final String className )
+    {
+        return isCertainMiss( className.replace( '.', '/' ).concat( ".class" ) );
+    }
+
+    /**
+     * @param resourceName resource name, with or without a leading slash
+     *
+     * @return true if the resource is certainly not visible to the bundle
+     */
+    boolean isCertainMiss( final String resourceName )
+    {
+        final Snapshot snapshot = m_snapshot;
+        if( snapshot == null )
+        {
+            if( !m_unresolved || ( m_bundle.getState() & ( Bundle.INSTALLED | Bundle.UNINSTALLED ) ) == 0 )
+            {
+                scheduleBuild();
+            }
+            return false;
+        }
+        if( !snapshot.wiring.isCurrent() )
+        {
+            m_snapshot = null;
+            scheduleBuild();
+            return false;
+        }
+        return snapshot.isCertainMiss( resourceName.startsWith( "/" ) ? resourceName.substring( 1 ) : resourceName );
+    }
+
+    private void scheduleBuild()
+    {
+        if( m_building.compareAndSet( false, true ) )
+        {
+            ForkJoinPool.commonPool().execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        final Snapshot snapshot = Snapshot.build( m_bundle );
+                        m_unresolved = snapshot == null;
+                        m_snapshot = snapshot;
+                    }
+                    catch( RuntimeException ignore )
+                    {
+                        // bundle uninstalled or framework shutting down, try again once resolved
+                        m_unresolved = true;
+                    }
+                    finally
+                    {
+                        m_building.set( false );
+                    }
+                }
+            } );
+        }
+    }
+
+    private static Set<String> jdkPackages()
+    {
+        final Set<String> packages = new HashSet<String>();
+        for( Module module : ModuleLayer.boot().modules() )
+        {
+            for( String packageName : module.getPackages() )
+            {
+                packages.add( packageName.replace( '.', '/' ) );
+            }
+        }
+        return Collections.unmodifiableSet( packages );
+    }
+
+    /**
+     * Index built from one wiring of the bundle.
+     */
+    private static final class Snapshot
+    {
+
+        /**
+         * Wiring the index was built from. The index is valid as long as the wiring is current.
+         */
+        final BundleWiring wiring;
+        /**
+         * Names of local resources. Null if the class space cannot be known in advance (dynamic imports).
+         */
+        final BloomFilter entries;
+        /**
+         * Paths of the packages imported or taken from required bundles. Never rejected.
+         */
+        final Set<String> wiredPackages;
+        /**
+         * Boot delegated packages, as path prefixes ("com/sun/") or exact package paths ("sun/misc").
+         */
+        final List<String> bootDelegationPrefixes;
+        final Set<String> bootDelegationPackages;
+
+        private Snapshot( final BundleWiring wiring,
+                          final BloomFilter entries,
+                          final Set<String> wiredPackages,
+                          final List<String> bootDelegationPrefixes,
+                          final Set<String> bootDelegationPackages )
+        {
+            this.wiring = wiring;
+            this.entries = entries;
+            this.wiredPackages = wiredPackages;
+            this.bootDelegationPrefixes = bootDelegationPrefixes;
+            this.bootDelegationPackages = bootDelegationPackages;
+        }
+
+        /**
+         * @return built snapshot or null if the bundle is not resolved
+         */
+        static Snapshot build( final Bundle bundle )
+        {
+            final BundleWiring wiring = bundle.adapt( BundleWiring.class );
+            if( wiring == null )
+            {
+                return null;
+            }
+            final Collection<String> resources = hasDynamicImports( wiring )
+                ? null
+                : wiring.listResources(
+                    "/", "*", BundleWiring.LISTRESOURCES_RECURSE | BundleWiring.LISTRESOURCES_LOCAL
+                );
+            if( resources == null )
+            {
+                return new Snapshot(
+                    wiring, null, Collections.<String>emptySet(), Collections.<String>emptyList(),
+                    Collections.<String>emptySet()
+                );
+            }
+            final BloomFilter entries = new BloomFilter( resources.size() );
+            for( String resource : resources )
+            {
+                entries.add( resource );
+            }
+            final List<String> prefixes = new ArrayList<String>();
+            final Set<String> packages = new HashSet<String>();
+            for( String delegated : ManifestClauses.clauses( bootDelegation( bundle ) ) )
+            {
+                final String path = delegated.replace( '.', '/' );
+                if( path.endsWith( "*" ) )
+                {
+                    prefixes.add( path.substring( 0, path.length() - 1 ) );
+                }
+                else
+                {
+                    packages.add( path );
+                }
+            }
+            return new Snapshot( wiring, entries, wiredPackages( wiring ), prefixes, packages );
+        }
+
+        boolean isCertainMiss( final String resourceName )
+        {
+            if( entries == null )
+            {
+                return false;
+            }
+            final int index = resourceName.lastIndexOf( '/' );
+            final String packagePath = index < 0 ? "" : resourceName.substring( 0, index );
+            if( packagePath.startsWith( "java/" ) || JDK_PACKAGES.contains( packagePath )
+                || bootDelegationPackages.contains( packagePath ) || wiredPackages.contains( packagePath ) )
+            {
+                return false;
+            }
+            for( String prefix : bootDelegationPrefixes )
+            {
+                if( resourceName.startsWith( prefix ) )
+                {
+                    return false;
+                }
+            }
+            return !entries.mightContain( resourceName );
+        }
+
+        /**
+         * @return paths of the packages wired via Import-Package or taken from required bundles
+         */
+        private static Set<String> wiredPackages( final BundleWiring wiring )
+        {
+            final Set<String> packages = new HashSet<String>();
+            final List<BundleWire> wires = wiring.getRequiredWires( PackageNamespace.PACKAGE_NAMESPACE );
+            if( wires != null )
+            {
+                for( BundleWire wire : wires )
+                {
+                    addPackage( packages, wire.getCapability() );
+                }
+            }
+            addRequiredBundlePackages( packages, wiring, new HashSet<BundleWiring>() );
+            return packages;
+        }
+
+        /**
+         * Adds the packages exported by the bundles required by a wiring, including the re-exported ones.
+         */
+        private static void addRequiredBundlePackages( final Set<String> packages,
+                                                       final BundleWiring wiring,
+                                                       final Set<BundleWiring> visited )
+        {
+            if( !visited.add( wiring ) )
+            {
+                return;
+            }
+            final List<BundleWire> wires = wiring.getRequiredWires( BundleNamespace.BUNDLE_NAMESPACE );
+            if( wires == null )
+            {
+                return;
+            }
+            for( BundleWire wire : wires )
+            {
+                final BundleWiring provider = wire.getProviderWiring();
+                if( provider == null )
+                {
+                    continue;
+                }
+                for( BundleCapability capability : provider.getCapabilities( PackageNamespace.PACKAGE_NAMESPACE ) )
+                {
+                    addPackage( packages, capability );
+                }
+                // packages re-exported via visibility:=reexport are visible too, all are taken to stay on the safe side
+                addRequiredBundlePackages( packages, provider, visited );
+            }
+        }
+
+        private static void addPackage( final Set<String> packages, final BundleCapability capability )
+        {
+            final Object packageName = capability.getAttributes().get( PackageNamespace.PACKAGE_NAMESPACE );
+            if( packageName instanceof String )
+            {
+                packages.add( ( (String) packageName ).replace( '.', '/' ) );
+            }
+        }
+
+        private static boolean hasDynamicImports( final BundleWiring wiring )
+        {
+            final List<BundleRequirement> requirements =
+                wiring.getRevision().getDeclaredRequirements( PackageNamespace.PACKAGE_NAMESPACE );
+            for( BundleRequirement requirement : requirements )
+            {
+                if( PackageNamespace.RESOLUTION_DYNAMIC.equals(
+                    requirement.getDirectives().get( Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE ) ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String bootDelegation( final Bundle bundle )
+        {
+            BundleContext context = bundle.getBundleContext();
+            if( context == null )
+            {
+                final Bundle self = FrameworkUtil.getBundle( ClassSpaceIndex.class );
+                context = self == null ? null : self.getBundleContext();
+            }
+            return context == null ? null : context.getProperty( Constants.FRAMEWORK_BOOTDELEGATION );
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor service decorator running each task with a specific context class loader.
+ *
+ * @see ContextClassLoaderUtils#executorServiceWithClassLoader(ClassLoader, ExecutorService)
+ * @since 1.9.1
+ */
+class ContextClassLoaderExecutorService
+    implements ExecutorService
+{
+
+    /**
+     * Class loader set as context class loader for each task. Cannot be null.
+     */
+    private final ClassLoader m_classLoader;
+    /**
+     * Decorated executor service. Cannot be null.
+     */
+    private final ExecutorService m_delegate;
+
+    ContextClassLoaderExecutorService( final ClassLoader classLoader, final ExecutorService delegate )
+    {
+        m_classLoader = classLoader;
+        m_delegate = delegate;
+    }
+
+    public void execute( final Runnable command )
+    {
+        m_delegate.execute( ContextClassLoaderUtils.withClassLoader( m_classLoader, command ) );
+    }
+
+    public Future<?> submit( final Runnable task )
+    {
+        return m_delegate.submit( ContextClassLoaderUtils.withClassLoader( m_classLoader, task ) );
+    }
+
+    public <T> Future<T> submit( final Runnable task, final T result )
+    {
+        return m_delegate.submit( ContextClassLoaderUtils.withClassLoader( m_classLoader, task ), result );
+    }
+
+    public <T> Future<T> submit( final Callable<T> task )
+    {
+        return m_delegate.submit( ContextClassLoaderUtils.withClassLoader( m_classLoader, task ) );
+    }
+
+    public <T> List<Future<T>> invokeAll( final Collection<? extends Callable<T>> tasks )
+        throws InterruptedException
+    {
+        return m_delegate.invokeAll( wrap( tasks ) );
+    }
+
+    public <T> List<Future<T>> invokeAll( final Collection<? extends Callable<T>> tasks,
+                                          final long timeout,
+                                          final TimeUnit unit )
+        throws InterruptedException
+    {
+        return m_delegate.invokeAll( wrap( tasks ), timeout, unit );
+    }
+
+    public <T> T invokeAny( final Collection<? extends Callable<T>> tasks )
+        throws InterruptedException, ExecutionException
+    {
+        return m_delegate.invokeAny( wrap( tasks ) );
+    }
+
+    public <T> T invokeAny( final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit )
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        return m_delegate.invokeAny( wrap( tasks ), timeout, unit );
+    }
+
+    public void shutdown()
+    {
+        m_delegate.shutdown();
+    }
+
+    public List<Runnable> shutdownNow()
+    {
+        return m_delegate.shutdownNow();
+    }
+
+    public boolean isShutdown()
+    {
+        return m_delegate.isShutdown();
+    }
+
+    public boolean isTerminated()
+    {
+        return m_delegate.isTerminated();
+    }
+
+    public boolean awaitTermination( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        return m_delegate.awaitTermination( timeout, unit );
+    }
+
+    private <T> List<Callable<T>> wrap( final Collection<? extends Callable<T>> tasks )
+    {
+        final List<Callable<T>> wrapped = new ArrayList<Callable<T>>( tasks.size() );
+        for( Callable<T> task : tasks )
+        {
+            wrapped.add( ContextClassLoaderUtils.withClassLoader( m_classLoader, task ) );
+        }
+        return wrapped;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+            "classLoader=" ).append( m_classLoader ).append( ",delegate=" ).append( m_delegate ).append(
+            "}" ).toString();
+    }
+
+}
@@ -17,7 +17,15 @@
  */
 package org.ops4j.pax.swissbox.core;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+import org.ops4j.lang.NullArgumentException;
 
 /**
  * Utilities for class loading.
@@ -68,4 +76,202 @@ public class ContextClassLoaderUtils
         }
     }
 
+    /**
+     * Executes a piece of code (runnable.run) using a specific class loader set as context class loader.
+     * Same as {@link #doWithClassLoader(ClassLoader, Callable)} but without a checked exception.
+     *
+     * @param classLoader class loader to be used as context class loader during run.
+     * @param runnable    piece of code to be executed using the class loader
+     */
+    public static void runWithClassLoader( final ClassLoader classLoader, final Runnable runnable )
+    {
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader backupClassLoader = currentThread.getContextClassLoader();
+        if( classLoader == null || classLoader == backupClassLoader )
+        {
+            runnable.run();
+            return;
+        }
+        currentThread.setContextClassLoader( classLoader );
+        try
+        {
+            runnable.run();
+        }
+        finally
+        {
+            currentThread.setContextClassLoader( backupClassLoader );
+        }
+    }
+
+    /**
+     * Executes a piece of code (supplier.get) using a specific class loader set as context class loader.
+     * Same as {@link #doWithClassLoader(ClassLoader, Callable)} but without a checked exception.
+     *
+     * @param classLoader class loader to be used as context class loader during get.
+     * @param supplier    piece of code to be executed using the class loader
+     *
+     * @return return from supplier
+     */
+    public static <V> V getWithClassLoader( final ClassLoader classLoader, final Supplier<V> supplier )
+    {
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader backupClassLoader = currentThread.getContextClassLoader();
+        if( classLoader == null || classLoader == backupClassLoader )
+        {
+            return supplier.get();
+        }
+        currentThread.setContextClassLoader( classLoader );
+        try
+        {
+            return supplier.get();
+        }
+        finally
+        {
+            currentThread.setContextClassLoader( backupClassLoader );
+        }
+    }
+
+    /**
+     * Decorates a runnable so that it runs with a specific class loader set as context class loader, on whatever
+     * thread it is run.
+     *
+     * @param classLoader class loader to be used as context class loader. Cannot be null.
+     * @param runnable    runnable to be decorated. Cannot be null.
+     *
+     * @return decorated runnable
+     */
+    public static Runnable withClassLoader( final ClassLoader classLoader, final Runnable runnable )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        NullArgumentException.validateNotNull( runnable, "Runnable" );
+        return new Runnable()
+        {
+            public void run()
+            {
+                runWithClassLoader( classLoader, runnable );
+            }
+        };
+    }
+
+    /**
+     * Decorates a callable so that it runs with a specific class loader set as context class loader, on whatever
+     * thread it is called.
+     *
+     * @param classLoader class loader to be used as context class loader. Cannot be null.
+     * @param callable    callable to be decorated. Cannot be null.
+     *
+     * @return decorated callable
+     */
+    public static <V> Callable<V> withClassLoader( final ClassLoader classLoader, final Callable<V> callable )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        NullArgumentException.validateNotNull( callable, "Callable" );
+        return new Callable<V>()
+        {
+            public V call()
+                throws Exception
+            {
+                return doWithClassLoader( classLoader, callable );
+            }
+        };
+    }
+
+    /**
+     * Decorates an executor so that each executed task runs with a specific class loader set as context class
+     * loader. The context class loader of the executing thread is restored after each task.
+     *
+     * @param classLoader class loader to be used as context class loader. Cannot be null.
+     * @param executor    executor to be decorated. Cannot be null.
+     *
+     * @return decorated executor
+     */
+    public static Executor executorWithClassLoader( final ClassLoader classLoader, final Executor executor )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        NullArgumentException.validateNotNull( executor, "Executor" );
+        return new Executor()
+        {
+            public void execute( final Runnable command )
+            {
+                executor.execute( withClassLoader( classLoader, command ) );
+            }
+        };
+    }
+
+    /**
+     * Decorates an executor service so that each submitted task runs with a specific class loader set as context
+     * class loader. The context class loader of the executing thread is restored after each task. Life cycle methods
+     * are delegated to the decorated executor service.
+     *
+     * @param classLoader     class loader to be used as context class loader. Cannot be null.
+     * @param executorService executor service to be decorated. Cannot be null.
+     *
+     * @return decorated executor service
+     */
+    public static ExecutorService executorServiceWithClassLoader( final ClassLoader classLoader,
+                                                                  final ExecutorService executorService )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        NullArgumentException.validateNotNull( executorService, "Executor service" );
+        return new ContextClassLoaderExecutorService( classLoader, executorService );
+    }
+
+    /**
+     * Decorates a thread factory so that each created thread has a specific class loader set as context class
+     * loader. Tasks running on such threads do not pay for setting and restoring the context class loader.
+     *
+     * @param classLoader   class loader to be used as context class loader. Cannot be null.
+     * @param threadFactory thread factory to be decorated. Cannot be null.
+     *
+     * @return decorated thread factory
+     */
+    public static ThreadFactory threadFactoryWithClassLoader( final ClassLoader classLoader,
+                                                              final ThreadFactory threadFactory )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        NullArgumentException.validateNotNull( threadFactory, "Thread factory" );
+        return new ThreadFactory()
+        {
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread thread = threadFactory.newThread( runnable );
+                if( thread != null )
+                {
+                    thread.setContextClassLoader( classLoader );
+                }
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Creates an executor service that runs each task on a new virtual thread that has a specific class loader set
+     * as context class loader. As each thread runs only one task, the context class loader is set once, when the
+     * thread is created.
+     * <p>
+     * Virtual threads require Java 21 or later. On older Java versions a cached thread pool is used instead, with
+     * the context class loader set per task.
+     *
+     * @param classLoader class loader to be used as context class loader. Cannot be null.
+     *
+     * @return created executor service
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor( final ClassLoader classLoader )
+    {
+        NullArgumentException.validateNotNull( classLoader, "Class loader" );
+        try
+        {
+            final Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            final Method factory = Class.forName( "java.lang.Thread$Builder" ).getMethod( "factory" );
+            final ThreadFactory virtualThreadFactory = (ThreadFactory) factory.invoke( builder );
+            return (ExecutorService) Executors.class.getMethod( "newThreadPerTaskExecutor", ThreadFactory.class )
+                .invoke( null, threadFactoryWithClassLoader( classLoader, virtualThreadFactory ) );
+        }
+        catch( Exception e )
+        {
+            // no virtual threads available (Java < 21)
+            return executorServiceWithClassLoader( classLoader, Executors.newCachedThreadPool() );
+        }
+    }
+
 }
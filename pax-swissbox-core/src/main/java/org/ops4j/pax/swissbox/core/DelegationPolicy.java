@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.Arrays;
+
+import org.ops4j.lang.NullArgumentException;
+
+/**
+ * Decides, per class or resource name, if and in which order a {@link BundleClassLoader} with a parent class loader
+ * consults its parent. Class loaders without a parent always use only the bundle.
+ *
+ * @since 1.9.1
+ */
+public abstract class DelegationPolicy
+{
+
+    /**
+     * Order in which the parent class loader and the bundle are consulted.
+     */
+    public enum Order
+    {
+        /**
+         * Parent class loader first, bundle as fallback.
+         */
+        PARENT_FIRST,
+        /**
+         * Bundle first, parent class loader as fallback.
+         */
+        BUNDLE_FIRST,
+        /**
+         * Bundle only, the parent class loader is not consulted at all.
+         */
+        BUNDLE_ONLY
+    }
+
+    /**
+     * Always asks the parent first. This is the default policy.
+     */
+    public static final DelegationPolicy PARENT_FIRST = new FixedPolicy( Order.PARENT_FIRST );
+
+    /**
+     * Always asks the bundle first and uses the parent only if the bundle does not find the class or resource.
+     */
+    public static final DelegationPolicy BUNDLE_FIRST = new FixedPolicy( Order.BUNDLE_FIRST );
+
+    /**
+     * Creates a policy that sends only names starting with one of the given package prefixes to the parent class
+     * loader (parent first, bundle as fallback). All other names are looked up only in the bundle.
+     *
+     * @param prefixes package prefixes in class name form, e.g. "java." or "javax.xml.". Cannot be null.
+     *
+     * @return created policy
+     */
+    public static DelegationPolicy parentFirstFor( final String... prefixes )
+    {
+        NullArgumentException.validateNotNull( prefixes, "Prefixes" );
+        return new PrefixPolicy( prefixes );
+    }
+
+    /**
+     * @param className fully qualified class name
+     *
+     * @return order to be used for loading the class. Never null.
+     */
+    public abstract Order forClass( String className );
+
+    /**
+     * @param resourceName resource name, as passed to {@link ClassLoader#getResource(String)}
+     *
+     * @return order to be used for finding the resource. Never null.
+     */
+    public abstract Order forResource( String resourceName );
+
+    private static final class FixedPolicy
+        extends DelegationPolicy
+    {
+
+        private final Order m_order;
+
+        FixedPolicy( final Order order )
+        {
+            m_order = order;
+        }
+
+        @Override
+        public Order forClass( final String className )
+        {
+            return m_order;
+        }
+
+        @Override
+        public Order forResource( final String resourceName )
+        {
+            return m_order;
+        }
+
+        @Override
+        public String toString()
+        {
+            return m_order.toString();
+        }
+
+    }
+
+    private static final class PrefixPolicy
+        extends DelegationPolicy
+    {
+
+        /**
+         * Prefixes in class name form ("javax.xml.").
+         */
+        private final String[] m_classPrefixes;
+        /**
+         * Same prefixes in resource name form ("javax/xml/").
+         */
+        private final String[] m_resourcePrefixes;
+
+        PrefixPolicy( final String[] prefixes )
+        {
+            m_classPrefixes = prefixes.clone();
+            m_resourcePrefixes = new String[prefixes.length];
+            for( int i = 0; i < prefixes.length; i++ )
+            {
+                NullArgumentException.validateNotNull( prefixes[i], "Prefix" );
+                m_resourcePrefixes[i] = prefixes[i].replace( '.', '/' );
+            }
+        }
+
+        @Override
+        public Order forClass( final String className )
+        {
+            return matches( className, m_classPrefixes ) ? Order.PARENT_FIRST : Order.BUNDLE_ONLY;
+        }
+
+        @Override
+        public Order forResource( final String resourceName )
+        {
+            final String name = resourceName.startsWith( "/" ) ? resourceName.substring( 1 ) : resourceName;
+            return matches( name, m_resourcePrefixes ) ? Order.PARENT_FIRST : Order.BUNDLE_ONLY;
+        }
+
+        private static boolean matches( final String name, final String[] prefixes )
+        {
+            for( String prefix : prefixes )
+            {
+                if( name.startsWith( prefix ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            return o instanceof PrefixPolicy && Arrays.equals( m_classPrefixes, ( (PrefixPolicy) o ).m_classPrefixes );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode( m_classPrefixes );
+        }
+
+        @Override
+        public String toString()
+        {
+            return "PARENT_FIRST_FOR" + Arrays.toString( m_classPrefixes );
+        }
+
+    }
+
+}
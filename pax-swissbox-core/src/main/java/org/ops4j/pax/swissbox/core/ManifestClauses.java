@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal parser for OSGi manifest header values of the form
+ * {@code path1;path2;attr=value;dir:=value, path3;...}.
+ *
+ * @since 1.9.1
+ */
+final class ManifestClauses
+{
+
+    private ManifestClauses()
+    {
+        // utility class
+    }
+
+    /**
+     * Splits a header value into its comma separated clauses. Commas inside quoted strings are not considered
+     * separators.
+     *
+     * @param value header value. Can be null.
+     *
+     * @return list of trimmed, non empty clauses. Never null.
+     */
+    static List<String> clauses( final String value )
+    {
+        if( value == null || value.trim().length() == 0 )
+        {
+            return Collections.emptyList();
+        }
+        final List<String> clauses = new ArrayList<String>();
+        boolean quoted = false;
+        int start = 0;
+        for( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            if( c == '"' )
+            {
+                quoted = !quoted;
+            }
+            else if( c == ',' && !quoted )
+            {
+                addTrimmed( clauses, value.substring( start, i ) );
+                start = i + 1;
+            }
+        }
+        addTrimmed( clauses, value.substring( start ) );
+        return clauses;
+    }
+
+    /**
+     * Returns the paths of a clause, that is the leading semicolon separated elements that are neither attributes
+     * nor directives.
+     *
+     * @param clause a single clause, as returned by {@link #clauses(String)}
+     *
+     * @return list of paths. Never null.
+     */
+    static List<String> paths( final String clause )
+    {
+        final List<String> paths = new ArrayList<String>( 1 );
+        int start = 0;
+        while( start <= clause.length() )
+        {
+            int end = clause.indexOf( ';', start );
+            if( end < 0 )
+            {
+                end = clause.length();
+            }
+            final String element = clause.substring( start, end ).trim();
+            if( element.indexOf( '=' ) >= 0 )
+            {
+                break;
+            }
+            if( element.length() > 0 )
+            {
+                paths.add( element );
+            }
+            start = end + 1;
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the paths of all clauses of a header value.
+     *
+     * @param value header value. Can be null.
+     *
+     * @return list of paths. Never null.
+     */
+    static List<String> allPaths( final String value )
+    {
+        final List<String> paths = new ArrayList<String>();
+        for( String clause : clauses( value ) )
+        {
+            paths.addAll( paths( clause ) );
+        }
+        return paths;
+    }
+
+    private static void addTrimmed( final List<String> list, final String value )
+    {
+        final String trimmed = value.trim();
+        if( trimmed.length() > 0 )
+        {
+            list.add( trimmed );
+        }
+    }
+
+}
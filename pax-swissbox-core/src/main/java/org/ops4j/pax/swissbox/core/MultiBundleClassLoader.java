@@ -0,0 +1,556 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Class loader that spans a set of bundles. Instead of probing each bundle in turn (as a chain of
+ * {@link BundleClassLoader}s would do) it keeps an index from package name to the bundle that owns the package and
+ * sends each class or resource lookup directly to that bundle.
+ * <p>
+ * The index is built from the wiring of each bundle (exported and imported packages) or, for bundles that are not
+ * resolved, from the {@code Export-Package} header. Packages that are not in the index (e.g. private packages) are
+ * looked up by probing the bundles in order; a successful probe is remembered for the next lookups.
+ * <p>
+ * In order to keep the index up to date register the class loader as a bundle listener. Only the changed bundle is
+ * re-indexed.
+ *
+ * @since 1.9.1
+ */
+public class MultiBundleClassLoader extends ClassLoader
+    implements BundleListener
+{
+
+    /**
+     * Bundles used for class loading, in lookup order. Cannot be null.
+     */
+    private final List<Bundle> m_bundles;
+    /**
+     * Packages known per bundle. Cannot be null.
+     */
+    private final ConcurrentMap<Bundle, BundlePackages> m_bundlePackages;
+    /**
+     * Mapping between package name and the bundle that should be used to load from that package. Cannot be null.
+     */
+    private final ConcurrentMap<String, Bundle> m_packages;
+    /**
+     * True if bundles not owning a package should be probed only if their class space index does not rule out the
+     * looked up name.
+     */
+    private volatile boolean m_classSpaceIndexed;
+
+    static
+    {
+        // lookups go to the owning bundle and need no class loader wide lock
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    /**
+     * Creates a class loader with no parent.
+     *
+     * @param bundles bundles to be used for class loading, in lookup order. Cannot be null.
+     */
+    public MultiBundleClassLoader( final Bundle... bundles )
+    {
+        this( Arrays.asList( bundles ), null );
+    }
+
+    /**
+     * Creates a class loader.
+     *
+     * @param bundles bundles to be used for class loading, in lookup order. Cannot be null.
+     * @param parent  parent class loader
+     */
+    public MultiBundleClassLoader( final List<Bundle> bundles, final ClassLoader parent )
+    {
+        super( parent );
+        NullArgumentException.validateNotNull( bundles, "Bundles" );
+        m_bundles = new CopyOnWriteArrayList<Bundle>();
+        m_bundlePackages = new ConcurrentHashMap<Bundle, BundlePackages>();
+        m_packages = new ConcurrentHashMap<String, Bundle>();
+        for( Bundle bundle : bundles )
+        {
+            addBundle( bundle );
+        }
+    }
+
+    /**
+     * Getter.
+     *
+     * @return an unmodifiable list of the bundles this class loader loads from, in lookup order
+     */
+    public List<Bundle> getBundles()
+    {
+        return Collections.unmodifiableList( m_bundles );
+    }
+
+    /**
+     * Enables or disables the use of a class space index per bundle when probing bundles for names from packages
+     * that are not in the package index. See {@link BundleClassLoader#setClassSpaceIndexed(boolean)}.
+     *
+     * @param indexed true to enable the index
+     */
+    public synchronized void setClassSpaceIndexed( final boolean indexed )
+    {
+        m_classSpaceIndexed = indexed;
+        for( BundlePackages packages : m_bundlePackages.values() )
+        {
+            packages.index = indexed ? new ClassSpaceIndex( packages.bundle ) : null;
+        }
+    }
+
+    /**
+     * Adds a bundle at the end of the lookup order and indexes its packages. Has no effect if the bundle is already
+     * part of this class loader. If indexing fails (e.g. the bundle got uninstalled) the bundle is not added.
+     *
+     * @param bundle bundle to be added. Cannot be null.
+     */
+    public synchronized void addBundle( final Bundle bundle )
+    {
+        NullArgumentException.validateNotNull( bundle, "Bundle" );
+        if( m_bundles.contains( bundle ) )
+        {
+            return;
+        }
+        // index first, as it may fail, then publish the packages before the bundle so lookups always find them
+        final BundlePackages packages = BundlePackages.of( bundle, m_classSpaceIndexed );
+        m_bundlePackages.put( bundle, packages );
+        m_bundles.add( bundle );
+        reassign( packages.all() );
+    }
+
+    /**
+     * Removes a bundle from this class loader and re-assigns the packages it owned.
+     *
+     * @param bundle bundle to be removed
+     */
+    public synchronized void removeBundle( final Bundle bundle )
+    {
+        if( bundle == null || !m_bundles.remove( bundle ) )
+        {
+            return;
+        }
+        final BundlePackages packages = m_bundlePackages.remove( bundle );
+        if( packages != null )
+        {
+            reassign( packages.all() );
+        }
+    }
+
+    /**
+     * Re-indexes the packages of a bundle, e.g. after the bundle was resolved, updated or refreshed.
+     *
+     * @param bundle bundle to be re-indexed
+     */
+    public synchronized void refreshBundle( final Bundle bundle )
+    {
+        if( bundle == null || !m_bundles.contains( bundle ) )
+        {
+            return;
+        }
+        final BundlePackages packages = BundlePackages.of( bundle, m_classSpaceIndexed );
+        final BundlePackages previous = m_bundlePackages.put( bundle, packages );
+        final Set<String> affected = new HashSet<String>( packages.all() );
+        if( previous != null )
+        {
+            affected.addAll( previous.all() );
+        }
+        reassign( affected );
+    }
+
+    /**
+     * Keeps the package index in sync with the life cycle of the bundles of this class loader.
+     *
+     * @see BundleListener#bundleChanged(BundleEvent)
+     */
+    public void bundleChanged( final BundleEvent event )
+    {
+        switch( event.getType() )
+        {
+            case BundleEvent.RESOLVED:
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UPDATED:
+                refreshBundle( event.getBundle() );
+                break;
+            case BundleEvent.UNINSTALLED:
+                removeBundle( event.getBundle() );
+                break;
+        }
+    }
+
+    /**
+     * Same approach as {@link BundleClassLoader#getResource(String)}.
+     *
+     * @see ClassLoader#getResource(String)
+     */
+    @Override
+    public URL getResource( final String name )
+    {
+        if( getParent() != null )
+        {
+            return super.getResource( name );
+        }
+        return findResource( name );
+    }
+
+    /**
+     * Same approach as {@link BundleClassLoader#getResources(String)}.
+     *
+     * @see ClassLoader#getResources(String)
+     */
+    @Override
+    public Enumeration<URL> getResources( final String name )
+        throws IOException
+    {
+        if( getParent() != null )
+        {
+            return super.getResources( name );
+        }
+        return findResources( name );
+    }
+
+    /**
+     * Same approach as {@link BundleClassLoader#loadClass(String, boolean)}.
+     *
+     * @see ClassLoader#loadClass(String, boolean)
+     */
+    @Override
+    protected Class<?> loadClass( final String name, final boolean resolve )
+        throws ClassNotFoundException
+    {
+        if( getParent() != null )
+        {
+            return super.loadClass( name, resolve );
+        }
+        final Class<?> classToLoad = findClass( name );
+        if( resolve )
+        {
+            resolveClass( classToLoad );
+        }
+        return classToLoad;
+    }
+
+    /**
+     * Loads the class from the bundle owning the package of the class. If the package is not indexed, the bundles
+     * are probed in order.
+     *
+     * @see ClassLoader#findClass(String)
+     */
+    @Override
+    protected Class<?> findClass( final String name )
+        throws ClassNotFoundException
+    {
+        final String packageName = packageOfClass( name );
+        final Bundle owner = m_packages.get( packageName );
+        if( owner != null )
+        {
+            try
+            {
+                return owner.loadClass( name );
+            }
+            catch( ClassNotFoundException ignore )
+            {
+                // package may be split between bundles, fall back to probing
+            }
+        }
+        final String resourceName = classToResource( name );
+        for( Bundle bundle : m_bundles )
+        {
+            if( bundle == owner || isCertainMiss( bundle, resourceName ) )
+            {
+                continue;
+            }
+            try
+            {
+                final Class<?> loaded = bundle.loadClass( name );
+                learn( packageName, bundle );
+                return loaded;
+            }
+            catch( ClassNotFoundException ignore )
+            {
+                // try next bundle
+            }
+            catch( IllegalStateException ignore )
+            {
+                // bundle was uninstalled in the meantime
+            }
+        }
+        throw new ClassNotFoundException( name );
+    }
+
+    /**
+     * Finds the resource in the bundle owning the package of the resource. If the package is not indexed, the
+     * bundles are probed in order.
+     *
+     * @see ClassLoader#findResource(String)
+     */
+    @Override
+    protected URL findResource( final String name )
+    {
+        final String packageName = packageOfResource( name );
+        final Bundle owner = m_packages.get( packageName );
+        if( owner != null )
+        {
+            final URL resource = owner.getResource( name );
+            if( resource != null )
+            {
+                return resource;
+            }
+        }
+        for( Bundle bundle : m_bundles )
+        {
+            if( bundle == owner || isCertainMiss( bundle, name ) )
+            {
+                continue;
+            }
+            try
+            {
+                final URL resource = bundle.getResource( name );
+                if( resource != null )
+                {
+                    return resource;
+                }
+            }
+            catch( IllegalStateException ignore )
+            {
+                // bundle was uninstalled in the meantime
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the resources of the bundle owning the package of the resource. If the package is not indexed, the
+     * resources of all bundles are returned.
+     *
+     * @see ClassLoader#findResources(String)
+     */
+    @Override
+    protected Enumeration<URL> findResources( final String name )
+        throws IOException
+    {
+        final Bundle owner = m_packages.get( packageOfResource( name ) );
+        if( owner != null )
+        {
+            final Enumeration<URL> resources = owner.getResources( name );
+            if( resources != null )
+            {
+                return resources;
+            }
+        }
+        final List<URL> resources = new ArrayList<URL>();
+        for( Bundle bundle : m_bundles )
+        {
+            if( isCertainMiss( bundle, name ) )
+            {
+                continue;
+            }
+            try
+            {
+                final Enumeration<URL> found = bundle.getResources( name );
+                if( found != null )
+                {
+                    resources.addAll( Collections.list( found ) );
+                }
+            }
+            catch( IllegalStateException ignore )
+            {
+                // bundle was uninstalled in the meantime
+            }
+        }
+        return Collections.enumeration( resources );
+    }
+
+    private boolean isCertainMiss( final Bundle bundle, final String resourceName )
+    {
+        final BundlePackages packages = m_bundlePackages.get( bundle );
+        final ClassSpaceIndex index = packages == null ? null : packages.index;
+        return index != null && index.isCertainMiss( resourceName );
+    }
+
+    private static String classToResource( final String className )
+    {
+        return className.replace( '.', '/' ).concat( ".class" );
+    }
+
+    /**
+     * Remembers the bundle a package not present in the index was loaded from.
+     */
+    private synchronized void learn( final String packageName, final Bundle bundle )
+    {
+        final BundlePackages packages = m_bundlePackages.get( bundle );
+        if( packages != null && packages.learned.add( packageName ) )
+        {
+            reassign( Collections.singleton( packageName ) );
+        }
+    }
+
+    /**
+     * Re-computes the owner of each of the given packages. Must be called while holding the lock.
+     */
+    private void reassign( final Set<String> packageNames )
+    {
+        for( String packageName : packageNames )
+        {
+            final Bundle owner = findOwner( packageName );
+            if( owner == null )
+            {
+                m_packages.remove( packageName );
+            }
+            else
+            {
+                m_packages.put( packageName, owner );
+            }
+        }
+    }
+
+    /**
+     * Exporters win over importers, importers win over learned mappings. Within the same category the lookup order
+     * is used.
+     */
+    private Bundle findOwner( final String packageName )
+    {
+        for( Bundle bundle : m_bundles )
+        {
+            if( m_bundlePackages.get( bundle ).exported.contains( packageName ) )
+            {
+                return bundle;
+            }
+        }
+        for( Bundle bundle : m_bundles )
+        {
+            if( m_bundlePackages.get( bundle ).imported.contains( packageName ) )
+            {
+                return bundle;
+            }
+        }
+        for( Bundle bundle : m_bundles )
+        {
+            if( m_bundlePackages.get( bundle ).learned.contains( packageName ) )
+            {
+                return bundle;
+            }
+        }
+        return null;
+    }
+
+    private static String packageOfClass( final String className )
+    {
+        final int index = className.lastIndexOf( '.' );
+        return index < 0 ? "" : className.substring( 0, index );
+    }
+
+    private static String packageOfResource( final String resourceName )
+    {
+        final String name = resourceName.startsWith( "/" ) ? resourceName.substring( 1 ) : resourceName;
+        final int index = name.lastIndexOf( '/' );
+        return index < 0 ? "" : name.substring( 0, index ).replace( '/', '.' );
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append( "bundles=" ).append(
+            m_bundles ).append( ",parent=" ).append( getParent() ).append( "}" ).toString();
+    }
+
+    /**
+     * Packages a bundle exports, imports or was found to contain.
+     */
+    private static class BundlePackages
+    {
+
+        final Bundle bundle;
+        final Set<String> exported = new HashSet<String>();
+        final Set<String> imported = new HashSet<String>();
+        final Set<String> learned = new HashSet<String>();
+        volatile ClassSpaceIndex index;
+
+        private BundlePackages( final Bundle bundle )
+        {
+            this.bundle = bundle;
+        }
+
+        static BundlePackages of( final Bundle bundle, final boolean indexed )
+        {
+            final BundlePackages packages = new BundlePackages( bundle );
+            packages.index = indexed ? new ClassSpaceIndex( bundle ) : null;
+            final BundleWiring wiring = bundle.adapt( BundleWiring.class );
+            final List<BundleCapability> capabilities =
+                wiring == null ? null : wiring.getCapabilities( PackageNamespace.PACKAGE_NAMESPACE );
+            final List<BundleWire> wires =
+                wiring == null ? null : wiring.getRequiredWires( PackageNamespace.PACKAGE_NAMESPACE );
+            if( capabilities != null && wires != null )
+            {
+                for( BundleCapability capability : capabilities )
+                {
+                    packages.exported.add(
+                        (String) capability.getAttributes().get( PackageNamespace.PACKAGE_NAMESPACE )
+                    );
+                }
+                for( BundleWire wire : wires )
+                {
+                    packages.imported.add(
+                        (String) wire.getCapability().getAttributes().get( PackageNamespace.PACKAGE_NAMESPACE )
+                    );
+                }
+            }
+            else
+            {
+                // not resolved (or wiring no longer in use), fall back to the manifest
+                final Dictionary<String, String> headers = bundle.getHeaders( "" );
+                final String exports = headers == null ? null : headers.get( Constants.EXPORT_PACKAGE );
+                packages.exported.addAll( ManifestClauses.allPaths( exports ) );
+            }
+            return packages;
+        }
+
+        Set<String> all()
+        {
+            final Set<String> all = new HashSet<String>( exported );
+            all.addAll( imported );
+            all.addAll( learned );
+            return all;
+        }
+
+    }
+
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * Registry of the service providers declared in {@code META-INF/services} by the resolved bundles, the same files
+ * {@link java.util.ServiceLoader} reads. Each bundle is scanned once, when it gets resolved, and lookups return the
+ * providers without reading resources again. Provider classes are only loaded, and instances only created, on
+ * demand.
+ * <p>
+ * The registry is kept up to date by a synchronous bundle listener registered on {@link #open()}.
+ *
+ * @since 1.9.1
+ */
+public class ServiceProviderRegistry
+{
+
+    /**
+     * Folder the service provider configuration files are in.
+     */
+    private static final String SERVICES = "META-INF/services";
+
+    /**
+     * Orders providers by bundle id. The order within a bundle is kept as the sort is stable.
+     */
+    private static final Comparator<Provider> BY_BUNDLE_ID = new Comparator<Provider>()
+    {
+        public int compare( final Provider p1, final Provider p2 )
+        {
+            return Long.compare( p1.getBundle().getBundleId(), p2.getBundle().getBundleId() );
+        }
+    };
+
+    /**
+     * Mapping between service name and providers, ordered by bundle id.
+     */
+    private final BundleIndexSupport.MultiMap<String, Provider, List<Provider>> m_providers;
+    /**
+     * Listener and providers each bundle is currently registered with. Cannot be null.
+     */
+    private final BundleIndexSupport<List<Provider>> m_support;
+
+    /**
+     * Creates a service provider registry. The registry must be opened before use.
+     *
+     * @param context bundle context. Cannot be null.
+     */
+    public ServiceProviderRegistry( final BundleContext context )
+    {
+        NullArgumentException.validateNotNull( context, "Context" );
+        m_providers = BundleIndexSupport.sortedLists( BY_BUNDLE_ID );
+        m_support = new BundleIndexSupport<List<Provider>>(
+            context, Bundle.RESOLVED | Bundle.STARTING | Bundle.STOPPING | Bundle.ACTIVE, BundleEvent.RESOLVED,
+            BundleEvent.UNRESOLVED | BundleEvent.UPDATED | BundleEvent.UNINSTALLED
+        )
+        {
+            @Override
+            List<Provider> index( final Bundle bundle )
+            {
+                // fragment entries are found via the host, and fragments cannot load classes
+                return isFragment( bundle ) ? null : scan( bundle );
+            }
+
+            @Override
+            void added( final Map<Bundle, List<Provider>> added )
+            {
+                final Map<String, List<Provider>> byServiceName = new HashMap<String, List<Provider>>();
+                for( List<Provider> providers : added.values() )
+                {
+                    for( Provider provider : providers )
+                    {
+                        BundleIndexSupport.collect( byServiceName, provider.getServiceName(), provider );
+                    }
+                }
+                m_providers.addAll( byServiceName );
+            }
+
+            @Override
+            void removed( final Bundle bundle, final List<Provider> providers )
+            {
+                for( Provider provider : providers )
+                {
+                    m_providers.remove( provider.getServiceName(), provider );
+                }
+            }
+
+            @Override
+            void clear()
+            {
+                m_providers.clear();
+            }
+        };
+    }
+
+    /**
+     * Registers the bundle listener and scans the resolved bundles. Has no effect if already open.
+     */
+    public void open()
+    {
+        m_support.open();
+    }
+
+    /**
+     * Un-registers the bundle listener and clears the registry.
+     */
+    public void close()
+    {
+        m_support.close();
+    }
+
+    /**
+     * Returns the providers of a service.
+     *
+     * @param serviceName fully qualified name of the service interface or class
+     *
+     * @return unmodifiable list of providers, ordered by bundle id. Never null.
+     */
+    public List<Provider> getProviders( final String serviceName )
+    {
+        return m_providers.get( serviceName );
+    }
+
+    /**
+     * Returns the providers of a service.
+     *
+     * @param service service interface or class. Cannot be null.
+     *
+     * @return unmodifiable list of providers, ordered by bundle id. Never null.
+     */
+    public List<Provider> getProviders( final Class<?> service )
+    {
+        NullArgumentException.validateNotNull( service, "Service" );
+        return getProviders( service.getName() );
+    }
+
+    private static boolean isFragment( final Bundle bundle )
+    {
+        final BundleRevision revision = bundle.adapt( BundleRevision.class );
+        if( revision != null )
+        {
+            return ( revision.getTypes() & BundleRevision.TYPE_FRAGMENT ) != 0;
+        }
+        final Dictionary<String, String> headers = bundle.getHeaders( "" );
+        return headers != null && headers.get( Constants.FRAGMENT_HOST ) != null;
+    }
+
+    /**
+     * Reads the service provider configuration files of a bundle (including its fragments).
+     */
+    private static List<Provider> scan( final Bundle bundle )
+    {
+        final Enumeration<URL> entries = bundle.findEntries( SERVICES, "*", false );
+        if( entries == null )
+        {
+            return Collections.emptyList();
+        }
+        final List<Provider> providers = new ArrayList<Provider>();
+        while( entries.hasMoreElements() )
+        {
+            final URL entry = entries.nextElement();
+            final String path = entry.getPath();
+            if( path.endsWith( "/" ) )
+            {
+                continue;
+            }
+            final String serviceName = path.substring( path.lastIndexOf( '/' ) + 1 );
+            for( String className : readClassNames( entry ) )
+            {
+                providers.add( new Provider( bundle, serviceName, className ) );
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * Parses a provider configuration file as {@link java.util.ServiceLoader} does: one class name per line, '#'
+     * starts a comment. Unreadable files are skipped.
+     */
+    private static List<String> readClassNames( final URL entry )
+    {
+        final List<String> classNames = new ArrayList<String>();
+        try
+        {
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader( entry.openStream(), StandardCharsets.UTF_8 )
+            );
+            try
+            {
+                String line;
+                while( ( line = reader.readLine() ) != null )
+                {
+                    final int comment = line.indexOf( '#' );
+                    if( comment >= 0 )
+                    {
+                        line = line.substring( 0, comment );
+                    }
+                    line = line.trim();
+                    if( line.length() > 0 && !classNames.contains( line ) )
+                    {
+                        classNames.add( line );
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch( IOException ignore )
+        {
+            // same as a missing file
+        }
+        return classNames;
+    }
+
+    /**
+     * A service provider declared by a bundle. The provider class is loaded on first use.
+     */
+    public static final class Provider
+    {
+
+        /**
+         * Bundle declaring the provider. Cannot be null.
+         */
+        private final Bundle m_bundle;
+        /**
+         * Name of the provided service. Cannot be null.
+         */
+        private final String m_serviceName;
+        /**
+         * Name of the provider class. Cannot be null.
+         */
+        private final String m_className;
+        /**
+         * Provider class. Null until loaded.
+         */
+        private volatile Class<?> m_class;
+
+        Provider( final Bundle bundle, final String serviceName, final String className )
+        {
+            m_bundle = bundle;
+            m_serviceName = serviceName;
+            m_className = className;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return bundle declaring the provider
+         */
+        public Bundle getBundle()
+        {
+            return m_bundle;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return name of the provided service
+         */
+        public String getServiceName()
+        {
+            return m_serviceName;
+        }
+
+        /**
+         * Getter.
+         *
+         * @return name of the provider class
+         */
+        public String getClassName()
+        {
+            return m_className;
+        }
+
+        /**
+         * Loads the provider class via the declaring bundle. The class is loaded only once.
+         *
+         * @return provider class
+         *
+         * @throws ClassNotFoundException if the bundle cannot load the provider class
+         */
+        public Class<?> loadClass()
+            throws ClassNotFoundException
+        {
+            Class<?> clazz = m_class;
+            if( clazz == null )
+            {
+                clazz = m_bundle.loadClass( m_className );
+                m_class = clazz;
+            }
+            return clazz;
+        }
+
+        /**
+         * Creates a new provider instance via the public no-argument constructor of the provider class.
+         *
+         * @param service service interface or class. Cannot be null.
+         *
+         * @return created instance
+         *
+         * @throws ServiceConfigurationError if the provider class cannot be loaded, is not a sub type of the service
+         *                                   (as seen by the bundle) or cannot be instantiated
+         */
+        public <T> T newInstance( final Class<T> service )
+        {
+            NullArgumentException.validateNotNull( service, "Service" );
+            final Class<?> clazz;
+            try
+            {
+                clazz = loadClass();
+            }
+            catch( ClassNotFoundException e )
+            {
+                throw new ServiceConfigurationError( m_serviceName + ": Provider " + m_className + " not found", e );
+            }
+            if( !service.isAssignableFrom( clazz ) )
+            {
+                throw new ServiceConfigurationError( m_serviceName + ": Provider " + m_className + " not a subtype" );
+            }
+            try
+            {
+                return service.cast( clazz.getConstructor().newInstance() );
+            }
+            catch( Exception e )
+            {
+                throw new ServiceConfigurationError(
+                    m_serviceName + ": Provider " + m_className + " could not be instantiated", e
+                );
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+                "service=" ).append( m_serviceName ).append( ",class=" ).append( m_className ).append(
+                ",bundle=" ).append( m_bundle.getSymbolicName() ).append( "}" ).toString();
+        }
+
+    }
+
+}
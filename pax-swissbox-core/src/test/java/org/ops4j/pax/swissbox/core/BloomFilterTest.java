@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * BloomFilter Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BloomFilterTest
+{
+
+    /**
+     * Tests that added values are always reported and that the false positive rate stays low.
+     */
+    @Test
+    public void noFalseNegatives()
+    {
+        final int count = 10000;
+        final BloomFilter filter = new BloomFilter( count );
+        for( int i = 0; i < count; i++ )
+        {
+            filter.add( "org/ops4j/pax/Class" + i + ".class" );
+        }
+        for( int i = 0; i < count; i++ )
+        {
+            assertTrue( "Added value", filter.mightContain( "org/ops4j/pax/Class" + i + ".class" ) );
+        }
+        int falsePositives = 0;
+        for( int i = 0; i < count; i++ )
+        {
+            if( filter.mightContain( "org/ops4j/other/Missing" + i + ".class" ) )
+            {
+                falsePositives++;
+            }
+        }
+        assertTrue( "False positives: " + falsePositives, falsePositives < count / 20 );
+    }
+
+}
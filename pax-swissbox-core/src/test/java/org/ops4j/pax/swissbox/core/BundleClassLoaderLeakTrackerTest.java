@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+
+/**
+ * BundleClassLoaderLeakTracker Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleClassLoaderLeakTrackerTest
+{
+
+    /**
+     * Tests that a class loader still reachable after uninstall of its bundle is reported with its allocation site.
+     */
+    @Test
+    public void reportsReachableStaleClassLoaders()
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Bundle other = createMock( Bundle.class );
+        expect( other.getBundleId() ).andStubReturn( 2L );
+        expect( other.getSymbolicName() ).andStubReturn( "org.bar" );
+        replay( bundle, other );
+
+        final BundleClassLoaderLeakTracker tracker = new BundleClassLoaderLeakTracker( 0, TimeUnit.SECONDS, true );
+        BundleClassLoaderLeakTracker.install( tracker );
+        try
+        {
+            final BundleClassLoader leaked = new BundleClassLoader( bundle );
+            final BundleClassLoader current = new BundleClassLoader( other );
+            assertThat( "Leaks before uninstall", tracker.findLeaks().size(), is( equalTo( 0 ) ) );
+
+            tracker.bundleChanged( new BundleEvent( BundleEvent.UNINSTALLED, bundle ) );
+            final List<BundleClassLoaderLeakTracker.Leak> leaks = tracker.findLeaks();
+            assertThat( "Leaks", leaks.size(), is( equalTo( 1 ) ) );
+            assertThat( "Leaked class loader", leaks.get( 0 ).getClassLoader(), is( sameInstance( leaked ) ) );
+            assertThat( "Symbolic name", leaks.get( 0 ).getSymbolicName(), is( equalTo( "org.foo" ) ) );
+            assertThat( "Allocation site", leaks.get( 0 ).getAllocationSite().getMessage(),
+                        is( equalTo( "Allocation site of " + BundleClassLoader.class.getName() + " for bundle 1" ) ) );
+            assertThat( "Tracked", tracker.getTrackedCount(), is( equalTo( 2 ) ) );
+            assertThat( "Current class loader", current.getBundle(), is( sameInstance( other ) ) );
+        }
+        finally
+        {
+            BundleClassLoaderLeakTracker.install( null );
+        }
+    }
+
+    /**
+     * Tests that recording the allocation site does not use methods of a class loader that is still being constructed.
+     */
+    @Test
+    public void allocationSiteOfSubclass()
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        replay( bundle );
+
+        final BundleClassLoaderLeakTracker tracker = new BundleClassLoaderLeakTracker( 0, TimeUnit.SECONDS, true );
+        BundleClassLoaderLeakTracker.install( tracker );
+        try
+        {
+            final BundleClassLoader classLoader = new NamedClassLoader( bundle, "named" );
+            assertThat( "Name", classLoader.toString(), is( equalTo( "named" ) ) );
+            assertThat( "Tracked", tracker.getTrackedCount(), is( equalTo( 1 ) ) );
+        }
+        finally
+        {
+            BundleClassLoaderLeakTracker.install( null );
+        }
+    }
+
+    /**
+     * Tests that class loaders are not tracked without an installed tracker.
+     */
+    @Test
+    public void notTrackedIfNotInstalled()
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        replay( bundle );
+
+        final BundleClassLoaderLeakTracker tracker = new BundleClassLoaderLeakTracker( 0, TimeUnit.SECONDS, false );
+        new BundleClassLoader( bundle );
+        assertThat( "Tracked", tracker.getTrackedCount(), is( equalTo( 0 ) ) );
+    }
+
+    /**
+     * Class loader whose toString() depends on state set by its own constructor.
+     */
+    private static class NamedClassLoader
+        extends BundleClassLoader
+    {
+
+        private final String m_name;
+
+        NamedClassLoader( final Bundle bundle, final String name )
+        {
+            super( bundle );
+            m_name = name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return m_name.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * BundleClassLoader Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleClassLoaderTest
+{
+
+    /**
+     * Tests that the default policy asks the parent first.
+     */
+    @Test
+    public void parentFirst()
+        throws Exception
+    {
+        final RecordingClassLoader parent = new RecordingClassLoader();
+        final Bundle bundle = createMock( Bundle.class );
+        replay( bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle, parent );
+        assertThat( "Loaded class", classLoader.loadClass( "java.lang.String" ), is( equalTo( (Object) String.class ) ) );
+        assertThat( "Parent lookups", parent.lookups.size(), is( equalTo( 1 ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Tests that the bundle first policy uses the parent only as fallback.
+     */
+    @Test
+    public void bundleFirst()
+        throws Exception
+    {
+        final RecordingClassLoader parent = new RecordingClassLoader();
+        final Bundle bundle = createMock( Bundle.class );
+        expect( (Class) bundle.loadClass( "org.foo.Bar" ) ).andReturn( Integer.class );
+        expect( bundle.loadClass( "java.lang.String" ) ).andThrow( new ClassNotFoundException( "java.lang.String" ) );
+        replay( bundle );
+
+        final BundleClassLoader classLoader =
+            new BundleClassLoader( bundle, parent, DelegationPolicy.BUNDLE_FIRST );
+        assertThat( "Loaded class", classLoader.loadClass( "org.foo.Bar" ), is( equalTo( (Object) Integer.class ) ) );
+        assertThat( "Parent lookups", parent.lookups.size(), is( equalTo( 0 ) ) );
+        assertThat( "Loaded class", classLoader.loadClass( "java.lang.String" ), is( equalTo( (Object) String.class ) ) );
+        assertThat( "Parent lookups", parent.lookups.size(), is( equalTo( 1 ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Tests that the prefix policy never asks the parent for bundle local names.
+     */
+    @Test
+    public void parentFirstForPrefixes()
+        throws Exception
+    {
+        final RecordingClassLoader parent = new RecordingClassLoader();
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.loadClass( "org.foo.Bar" ) ).andThrow( new ClassNotFoundException( "org.foo.Bar" ) );
+        expect( bundle.getResource( "org/foo/bar.xml" ) ).andReturn( null );
+        replay( bundle );
+
+        final BundleClassLoader classLoader =
+            new BundleClassLoader( bundle, parent, DelegationPolicy.parentFirstFor( "java.", "javax." ) );
+        assertThat( "Loaded class", classLoader.loadClass( "java.lang.String" ), is( equalTo( (Object) String.class ) ) );
+        try
+        {
+            classLoader.loadClass( "org.foo.Bar" );
+            fail( "Expected ClassNotFoundException" );
+        }
+        catch( ClassNotFoundException expected )
+        {
+            // expected
+        }
+        assertThat( "Resource", classLoader.getResource( "org/foo/bar.xml" ), is( nullValue() ) );
+        assertThat( "Parent lookups", parent.lookups, is( equalTo( Arrays.asList( "java.lang.String" ) ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Parent class loader recording the names it was asked for.
+     */
+    private static class RecordingClassLoader extends ClassLoader
+    {
+
+        final List<String> lookups = new ArrayList<String>();
+
+        RecordingClassLoader()
+        {
+            super( ClassLoader.getSystemClassLoader() );
+        }
+
+        @Override
+        protected Class<?> loadClass( final String name, final boolean resolve )
+            throws ClassNotFoundException
+        {
+            lookups.add( name );
+            return super.loadClass( name, resolve );
+        }
+
+        @Override
+        public URL getResource( final String name )
+        {
+            lookups.add( name );
+            return super.getResource( name );
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+
+import org.easymock.Capture;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * BundleHeaderIndex Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleHeaderIndexTest
+{
+
+    /**
+     * Tests lookups by header name and by value token.
+     */
+    @Test
+    public void lookup()
+    {
+        final Bundle b1 = bundle( 1, headers(
+            "Provide-Capability", "osgi.extender;osgi.extender=foo, osgi.service;objectClass=org.Foo",
+            "Web-ContextPath", "/foo"
+        ) );
+        final Bundle b2 = bundle( 2, headers( "Provide-Capability", "osgi.extender;osgi.extender=bar" ) );
+        final Bundle b3 = bundle( 3, headers( "Bundle-SymbolicName", "org.bar" ) );
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( anyObject( BundleListener.class ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ b1, b2, b3 } );
+        replay( context, b1, b2, b3 );
+
+        final BundleHeaderIndex index = new BundleHeaderIndex( context );
+        index.open();
+        assertThat( "By name", index.getBundles( "Web-ContextPath" ), is( equalTo( set( b1 ) ) ) );
+        assertThat( "By name", index.getBundles( "Provide-Capability" ), is( equalTo( set( b1, b2 ) ) ) );
+        assertThat(
+            "By token", index.getBundles( "Provide-Capability", "osgi.extender" ), is( equalTo( set( b1, b2 ) ) )
+        );
+        assertThat( "By token", index.getBundles( "Provide-Capability", "osgi.service" ), is( equalTo( set( b1 ) ) ) );
+        assertThat( "Unknown token", index.getBundles( "Provide-Capability", "osgi.ee" ).size(), is( equalTo( 0 ) ) );
+        assertThat( "Unknown name", index.getBundles( "Fragment-Host" ).size(), is( equalTo( 0 ) ) );
+        assertThat( "Header", index.getHeader( b1, "Web-ContextPath" ), is( equalTo( "/foo" ) ) );
+        assertThat( "Missing header", index.getHeader( b3, "Web-ContextPath" ), is( nullValue() ) );
+        verify( context, b1, b2, b3 );
+    }
+
+    /**
+     * Tests that header names are case insensitive.
+     */
+    @Test
+    public void caseInsensitiveNames()
+    {
+        final Bundle b1 = bundle( 1, headers( "Web-ContextPath", "/foo" ) );
+        final Bundle b2 = bundle( 2, headers( "web-contextpath", "/bar" ) );
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( anyObject( BundleListener.class ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ b1, b2 } );
+        replay( context, b1, b2 );
+
+        final BundleHeaderIndex index = new BundleHeaderIndex( context );
+        index.open();
+        assertThat( "By name", index.getBundles( "WEB-CONTEXTPATH" ), is( equalTo( set( b1, b2 ) ) ) );
+        assertThat( "By token", index.getBundles( "web-ContextPath", "/bar" ), is( equalTo( set( b2 ) ) ) );
+        assertThat( "Header", index.getHeader( b2, "Web-ContextPath" ), is( equalTo( "/bar" ) ) );
+    }
+
+    /**
+     * Tests that the index follows install, update and uninstall events, re-reading only the changed bundle.
+     */
+    @Test
+    public void followsBundleEvents()
+    {
+        final Bundle b1 = bundle( 1, headers( "Web-ContextPath", "/foo" ) );
+        final Bundle b2 = createMock( Bundle.class );
+        expect( b2.getBundleId() ).andStubReturn( 2L );
+        expect( b2.getState() ).andStubReturn( Bundle.INSTALLED );
+        expect( b2.getHeaders( "" ) ).andReturn( headers( "Web-ContextPath", "/bar" ) ).once();
+        expect( b2.getHeaders( "" ) ).andReturn( headers( "Provide-Capability", "osgi.extender" ) ).once();
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ b1 } );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, b1, b2 );
+
+        final BundleHeaderIndex index = new BundleHeaderIndex( context );
+        index.open();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.INSTALLED, b2 ) );
+        assertThat( "Installed", index.getBundles( "Web-ContextPath" ), is( equalTo( set( b1, b2 ) ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UPDATED, b2 ) );
+        assertThat( "Old header", index.getBundles( "Web-ContextPath" ), is( equalTo( set( b1 ) ) ) );
+        assertThat( "Old token", index.getBundles( "Web-ContextPath", "/bar" ).size(), is( equalTo( 0 ) ) );
+        assertThat(
+            "New header", index.getBundles( "Provide-Capability", "osgi.extender" ), is( equalTo( set( b2 ) ) )
+        );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNINSTALLED, b2 ) );
+        assertThat( "Uninstalled", index.getBundles( "Provide-Capability" ).size(), is( equalTo( 0 ) ) );
+        assertThat( "Uninstalled", index.getHeader( b2, "Provide-Capability" ), is( nullValue() ) );
+        assertThat( "Other bundle", index.getBundles( "Web-ContextPath" ), is( equalTo( set( b1 ) ) ) );
+
+        index.close();
+        assertThat( "Closed", index.getBundles( "Web-ContextPath" ).size(), is( equalTo( 0 ) ) );
+        verify( context, b1, b2 );
+    }
+
+    private static Bundle bundle( final long id, final Hashtable<String, String> headers )
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( id );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( bundle.getHeaders( "" ) ).andReturn( headers ).once();
+        return bundle;
+    }
+
+    private static Hashtable<String, String> headers( final String... namesAndValues )
+    {
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        for( int i = 0; i < namesAndValues.length; i += 2 )
+        {
+            headers.put( namesAndValues[ i ], namesAndValues[ i + 1 ] );
+        }
+        return headers;
+    }
+
+    private static HashSet<Bundle> set( final Bundle... bundles )
+    {
+        final HashSet<Bundle> set = new HashSet<Bundle>();
+        Collections.addAll( set, bundles );
+        return set;
+    }
+
+}
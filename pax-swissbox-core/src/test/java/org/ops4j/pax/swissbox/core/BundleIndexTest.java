@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.easymock.Capture;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Version;
+
+/**
+ * BundleIndex Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleIndexTest
+{
+
+    /**
+     * Tests lookups by symbolic name and version, including version normalization.
+     */
+    @Test
+    public void lookup()
+    {
+        final Bundle b1 = bundle( 1, "org.foo", "1.0.0" );
+        final Bundle b2 = bundle( 2, "org.foo", "2.0.0" );
+        final Bundle b3 = bundle( 3, "org.bar", "1.0.0" );
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( anyObject( BundleListener.class ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ b3, b2, b1 } );
+        replay( context, b1, b2, b3 );
+
+        final BundleIndex index = new BundleIndex( context );
+        index.open();
+        assertThat( "Any version", index.getBundle( "org.foo" ), is( equalTo( b1 ) ) );
+        assertThat( "Short version", index.getBundle( "org.foo", "2" ), is( equalTo( b2 ) ) );
+        assertThat( "Unknown version", index.getBundle( "org.foo", "3.0.0" ), is( nullValue() ) );
+        assertThat( "All versions", index.getBundles( "org.foo" ).size(), is( equalTo( 2 ) ) );
+        assertThat( "Unknown name", index.getBundles( "org.baz" ).size(), is( equalTo( 0 ) ) );
+    }
+
+    /**
+     * Tests that the index follows install, update and uninstall events.
+     */
+    @Test
+    public void followsBundleEvents()
+    {
+        final Bundle b1 = createMock( Bundle.class );
+        expect( b1.getBundleId() ).andStubReturn( 1L );
+        expect( b1.getState() ).andStubReturn( Bundle.INSTALLED );
+        expect( b1.getSymbolicName() ).andStubReturn( "org.foo" );
+        expect( b1.getVersion() ).andReturn( new Version( "1.0.0" ) ).andReturn( new Version( "1.1.0" ) );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        replay( context, b1 );
+
+        final BundleIndex index = new BundleIndex( context );
+        index.open();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.INSTALLED, b1 ) );
+        assertThat( "Installed", index.getBundle( "org.foo", "1.0.0" ), is( equalTo( b1 ) ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UPDATED, b1 ) );
+        assertThat( "Old version", index.getBundle( "org.foo", "1.0.0" ), is( nullValue() ) );
+        assertThat( "New version", index.getBundle( "org.foo", "1.1.0" ), is( equalTo( b1 ) ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNINSTALLED, b1 ) );
+        assertThat( "Uninstalled", index.getBundle( "org.foo" ), is( nullValue() ) );
+    }
+
+    private static Bundle bundle( final long id, final String symbolicName, final String version )
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( id );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( bundle.getSymbolicName() ).andStubReturn( symbolicName );
+        expect( bundle.getVersion() ).andStubReturn( new Version( version ) );
+        return bundle;
+    }
+
+}
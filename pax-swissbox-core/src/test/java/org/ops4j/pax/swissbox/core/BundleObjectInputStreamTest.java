@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+
+/**
+ * BundleObjectInputStream Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleObjectInputStreamTest
+{
+
+    /**
+     * Tests that classes are resolved via the bundle only once across streams sharing a cache.
+     */
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void resolvesViaSharedCache()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( (Class) bundle.loadClass( "java.util.ArrayList" ) ).andReturn( ArrayList.class );
+        expect( (Class) bundle.loadClass( "java.lang.Integer" ) ).andReturn( Integer.class );
+        expect( (Class) bundle.loadClass( "java.lang.Number" ) ).andReturn( Number.class );
+        replay( bundle );
+        final byte[] payload = serialize( new ArrayList<Integer>( Arrays.asList( 1, 2, 3 ) ) );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        final ClassResolutionCache cache = new ClassResolutionCache();
+        for( int i = 0; i < 2; i++ )
+        {
+            final BundleObjectInputStream in =
+                new BundleObjectInputStream( new ByteArrayInputStream( payload ), classLoader, cache );
+            assertThat( "Deserialized", (ArrayList<Integer>) in.readObject(),
+                        is( equalTo( Arrays.asList( 1, 2, 3 ) ) ) );
+            in.close();
+        }
+        verify( bundle );
+    }
+
+    /**
+     * Tests that the resolutions of a bundle are dropped on refresh.
+     */
+    @Test
+    public void invalidatedOnRefresh()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( (Class) bundle.loadClass( "java.lang.Integer" ) ).andReturn( Integer.class ).times( 2 );
+        replay( bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        final ClassResolutionCache cache = new ClassResolutionCache();
+        assertThat( "Resolved", cache.resolve( classLoader, "java.lang.Integer" ),
+                    is( equalTo( (Object) Integer.class ) ) );
+        assertThat( "Cached", cache.resolve( classLoader, "java.lang.Integer" ),
+                    is( equalTo( (Object) Integer.class ) ) );
+        cache.bundleChanged( new BundleEvent( BundleEvent.UNRESOLVED, bundle ) );
+        assertThat( "Re-resolved", cache.resolve( classLoader, "java.lang.Integer" ),
+                    is( equalTo( (Object) Integer.class ) ) );
+        verify( bundle );
+    }
+
+    private static byte[] serialize( final Object object )
+        throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream( bytes );
+        out.writeObject( object );
+        out.close();
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * BundleResourceCache Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleResourceCacheTest
+{
+
+    /**
+     * Tests that a resource is read once, served from the cache afterwards and read again after a bundle update.
+     */
+    @Test
+    public void cachesUntilUpdated()
+        throws IOException
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        expect( bundle.getLastModified() ).andReturn( 1L ).times( 2 ).andReturn( 2L );
+        replay( bundle );
+        final CountingClassLoader classLoader = new CountingClassLoader( file( "content", 1 ) );
+
+        final BundleResourceCache cache = new BundleResourceCache( 1024 );
+        assertThat( "First read", read( cache.getResourceAsStream( bundle, "r", classLoader ) ), is( "content" ) );
+        assertThat( "Cached read", read( cache.getResourceAsStream( bundle, "r", classLoader ) ), is( "content" ) );
+        assertThat( "Lookups", classLoader.lookups, is( equalTo( 1 ) ) );
+        assertThat( "Size", cache.getSize(), is( equalTo( 7L ) ) );
+        assertThat( "Updated", read( cache.getResourceAsStream( bundle, "r", classLoader ) ), is( "content" ) );
+        assertThat( "Lookups after update", classLoader.lookups, is( equalTo( 2 ) ) );
+    }
+
+    /**
+     * Tests that resources bigger than the maximum entry size are served completely but not cached.
+     */
+    @Test
+    public void doesNotCacheBigResources()
+        throws IOException
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        expect( bundle.getLastModified() ).andStubReturn( 1L );
+        replay( bundle );
+        final CountingClassLoader classLoader = new CountingClassLoader( file( "x", 20000 ) );
+
+        final BundleResourceCache cache = new BundleResourceCache( 1024 * 1024, 100 );
+        assertThat( "First read", read( cache.getResourceAsStream( bundle, "r", classLoader ) ).length(),
+                    is( equalTo( 20000 ) ) );
+        assertThat( "Second read", read( cache.getResourceAsStream( bundle, "r", classLoader ) ).length(),
+                    is( equalTo( 20000 ) ) );
+        assertThat( "Size", cache.getSize(), is( equalTo( 0L ) ) );
+    }
+
+    /**
+     * Tests that the least recently used entries are evicted once the size limit is reached.
+     */
+    @Test
+    public void evictsLeastRecentlyUsed()
+        throws IOException
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        expect( bundle.getLastModified() ).andStubReturn( 1L );
+        replay( bundle );
+        final CountingClassLoader classLoader = new CountingClassLoader( file( "0123456789", 1 ) );
+
+        final BundleResourceCache cache = new BundleResourceCache( 25 );
+        read( cache.getResourceAsStream( bundle, "a", classLoader ) );
+        read( cache.getResourceAsStream( bundle, "b", classLoader ) );
+        read( cache.getResourceAsStream( bundle, "a", classLoader ) );
+        read( cache.getResourceAsStream( bundle, "c", classLoader ) );
+        assertThat( "Size", cache.getSize(), is( equalTo( 20L ) ) );
+        read( cache.getResourceAsStream( bundle, "a", classLoader ) );
+        assertThat( "Lookups", classLoader.lookups, is( equalTo( 3 ) ) );
+        read( cache.getResourceAsStream( bundle, "b", classLoader ) );
+        assertThat( "Lookups after eviction", classLoader.lookups, is( equalTo( 4 ) ) );
+    }
+
+    /**
+     * Tests that class loaders of the same bundle sharing a cache but delegating differently do not serve each
+     * other's content.
+     */
+    @Test
+    public void separatesDelegation()
+        throws IOException
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( 1L );
+        expect( bundle.getLastModified() ).andStubReturn( 1L );
+        expect( bundle.getResource( "r" ) ).andStubReturn( file( "bundle", 1 ) );
+        replay( bundle );
+        final CountingClassLoader parent = new CountingClassLoader( file( "parent", 1 ) );
+
+        final BundleResourceCache cache = new BundleResourceCache( 1024 );
+        final BundleClassLoader bundleOnly = new BundleClassLoader( bundle );
+        bundleOnly.setResourceCache( cache );
+        final BundleClassLoader parentFirst = new BundleClassLoader( bundle, parent );
+        parentFirst.setResourceCache( cache );
+        final BundleClassLoader otherParentFirst = new BundleClassLoader( bundle, parent );
+        otherParentFirst.setResourceCache( cache );
+        assertThat( "Bundle only", read( bundleOnly.getResourceAsStream( "r" ) ), is( "bundle" ) );
+        assertThat( "Parent first", read( parentFirst.getResourceAsStream( "r" ) ), is( "parent" ) );
+        assertThat( "Same delegation", read( otherParentFirst.getResourceAsStream( "r" ) ), is( "parent" ) );
+        assertThat( "Parent lookups", parent.lookups, is( equalTo( 1 ) ) );
+        assertThat( "Bundle only", read( bundleOnly.getResourceAsStream( "r" ) ), is( "bundle" ) );
+    }
+
+    private static URL file( final String content, final int repeat )
+        throws IOException
+    {
+        final File file = File.createTempFile( "resource", ".txt" );
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            for( int i = 0; i < repeat; i++ )
+            {
+                out.write( content.getBytes( "UTF-8" ) );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return file.toURI().toURL();
+    }
+
+    private static String read( final InputStream in )
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try
+        {
+            int b;
+            while( ( b = in.read() ) >= 0 )
+            {
+                out.write( b );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return out.toString( "UTF-8" );
+    }
+
+    private static class CountingClassLoader
+        extends ClassLoader
+    {
+
+        final URL url;
+        int lookups;
+
+        CountingClassLoader( final URL url )
+        {
+            super( null );
+            this.url = url;
+        }
+
+        @Override
+        public URL getResource( final String name )
+        {
+            lookups++;
+            return url;
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+/**
+ * BundleUtils Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleUtilsTest
+{
+
+    /**
+     * Tests that the bundle context is taken from getBundleContext on each call.
+     */
+    @Test
+    public void getBundleContextFromMethod()
+    {
+        final BundleContext context = createMock( BundleContext.class );
+        final AtomicInteger calls = new AtomicInteger();
+        final Bundle bundle = proxyBundle( context, calls );
+
+        assertThat( "Bundle context", BundleUtils.getBundleContext( bundle ), is( sameInstance( context ) ) );
+        assertThat( "Bundle context", BundleUtils.getBundleContext( bundle ), is( sameInstance( context ) ) );
+        assertThat( "getBundleContext calls", calls.get(), is( equalTo( 2 ) ) );
+    }
+
+    /**
+     * Tests that the bundle context is taken from a field if getBundleContext cannot be used.
+     */
+    @Test
+    public void getBundleContextFromField()
+    {
+        final BundleContext context = createMock( BundleContext.class );
+        final FieldOnlyBundle bundle = createMock( FieldOnlyBundle.class );
+        expect( bundle.getBundleContext() ).andStubThrow( new UnsupportedOperationException() );
+        replay( bundle );
+        bundle.m_context = context;
+
+        assertThat( "Bundle context", BundleUtils.getBundleContext( bundle ), is( sameInstance( context ) ) );
+        assertThat( "Bundle context", BundleUtils.getBundleContext( bundle ), is( sameInstance( context ) ) );
+    }
+
+    /**
+     * Tests that null is returned if there is neither a working method nor a field.
+     */
+    @Test
+    public void getBundleContextNotDiscovered()
+    {
+        final Bundle bundle = proxyBundle( null, new AtomicInteger() );
+
+        assertThat( "Bundle context", BundleUtils.getBundleContext( bundle ), is( nullValue() ) );
+    }
+
+    /**
+     * @param context bundle context to return or null to fail getBundleContext
+     * @param calls   counter of getBundleContext calls
+     *
+     * @return bundle proxy without any fields
+     */
+    private static Bundle proxyBundle( final BundleContext context, final AtomicInteger calls )
+    {
+        return (Bundle) Proxy.newProxyInstance(
+            BundleUtilsTest.class.getClassLoader(), new Class<?>[]{ Bundle.class }, new InvocationHandler()
+        {
+            public Object invoke( final Object proxy, final Method method, final Object[] args )
+            {
+                if( !"getBundleContext".equals( method.getName() ) )
+                {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+                calls.incrementAndGet();
+                if( context == null )
+                {
+                    throw new IllegalStateException( "Bundle not active" );
+                }
+                return context;
+            }
+        }
+        );
+    }
+
+    /**
+     * Bundle keeping its context in a field, like bundles of pre 4.1 frameworks.
+     */
+    public abstract static class FieldOnlyBundle
+        implements Bundle
+    {
+
+        private BundleContext m_context;
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * ClassLoadingMetrics Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class ClassLoadingMetricsTest
+{
+
+    /**
+     * Tests that loads, misses and parent delegations of a class loader are counted.
+     */
+    @Test
+    public void countsClassLoads()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( (Class) bundle.loadClass( "org.foo.Bar" ) ).andReturn( Integer.class );
+        expect( bundle.loadClass( "org.foo.Missing" ) ).andThrow( new ClassNotFoundException( "org.foo.Missing" ) );
+        expect( bundle.getResource( "org/foo/missing.txt" ) ).andReturn( null );
+        replay( bundle );
+
+        final BundleClassLoader classLoader =
+            new BundleClassLoader( bundle, getClass().getClassLoader(), DelegationPolicy.BUNDLE_FIRST );
+        final ClassLoadingMetrics metrics = new ClassLoadingMetrics();
+        classLoader.setClassLoadingMetrics( metrics );
+        classLoader.loadClass( "org.foo.Bar" );
+        try
+        {
+            classLoader.loadClass( "org.foo.Missing" );
+            fail( "Expected ClassNotFoundException" );
+        }
+        catch( ClassNotFoundException expected )
+        {
+            // expected
+        }
+        classLoader.getResource( "org/foo/missing.txt" );
+
+        assertThat( "Class loads", metrics.getClassLoads(), is( equalTo( 2L ) ) );
+        assertThat( "Class misses", metrics.getClassMisses(), is( equalTo( 1L ) ) );
+        assertThat( "Resource lookups", metrics.getResourceLookups(), is( equalTo( 1L ) ) );
+        assertThat( "Resource misses", metrics.getResourceMisses(), is( equalTo( 1L ) ) );
+        assertThat( "Parent delegations", metrics.getParentDelegations(), is( equalTo( 2L ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Tests that only the slowest names are kept, slowest first.
+     */
+    @Test
+    public void keepsSlowest()
+    {
+        final ClassLoadingMetrics metrics = new ClassLoadingMetrics( 2 );
+        metrics.recordClassLoad( "a", 10, true );
+        metrics.recordClassLoad( "b", 30, true );
+        metrics.recordClassLoad( "c", 20, true );
+        metrics.recordClassLoad( "d", 5, true );
+        metrics.recordClassLoad( "c", 40, true );
+        assertThat( "Slowest", new ArrayList<String>( metrics.getSlowest().keySet() ),
+                    is( equalTo( Arrays.asList( "c", "b" ) ) ) );
+        metrics.reset();
+        assertThat( "Slowest after reset", metrics.getSlowest().size(), is( equalTo( 0 ) ) );
+    }
+
+    /**
+     * Tests registration as MXBean.
+     */
+    @Test
+    public void registersMXBean()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        expect( bundle.getBundleId() ).andStubReturn( 42L );
+        replay( bundle );
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ClassLoadingMetrics().register( server, bundle );
+        try
+        {
+            assertThat( "Class loads", server.getAttribute( name, "ClassLoads" ), is( equalTo( (Object) 0L ) ) );
+        }
+        finally
+        {
+            server.unregisterMBean( name );
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * ClassLoadingProfile Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class ClassLoadingProfileTest
+{
+
+    /**
+     * Tests that recorded classes are stored once, in loading order, and preloaded from the stored profile.
+     */
+    @Test
+    public void recordAndPreload()
+        throws Exception
+    {
+        final File file = File.createTempFile( "profile", ".txt" );
+        file.deleteOnExit();
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getDataFile( ClassLoadingProfile.PROFILE_FILE ) ).andStubReturn( file );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        replay( bundle );
+
+        final ClassLoadingProfile profile = new ClassLoadingProfile( bundle, 1, TimeUnit.HOURS );
+        profile.record( "java.lang.Integer" );
+        profile.startRecording();
+        profile.record( "java.lang.String" );
+        profile.record( "java.lang.Long" );
+        profile.record( "java.lang.String" );
+        profile.record( "org.foo.Removed" );
+        assertThat( "Stored", profile.stopRecording(), is( true ) );
+        profile.record( "java.lang.Short" );
+
+        assertThat( "Stored classes", profile.getStoredClassNames(),
+                    is( equalTo( Arrays.asList( "java.lang.String", "java.lang.Long", "org.foo.Removed" ) ) ) );
+        assertThat( "Preloaded", profile.preload( getClass().getClassLoader() ).get(), is( equalTo( 2 ) ) );
+    }
+
+    /**
+     * Tests that classes preloaded while recording are not recorded again, while classes loaded afterwards are.
+     */
+    @Test
+    public void preloadIsNotRecorded()
+        throws Exception
+    {
+        final File file = File.createTempFile( "profile", ".txt" );
+        file.deleteOnExit();
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getDataFile( ClassLoadingProfile.PROFILE_FILE ) ).andStubReturn( file );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( (Class) bundle.loadClass( "java.lang.Integer" ) ).andStubReturn( Integer.class );
+        expect( (Class) bundle.loadClass( "java.lang.Long" ) ).andStubReturn( Long.class );
+        expect( (Class) bundle.loadClass( "java.lang.Short" ) ).andStubReturn( Short.class );
+        replay( bundle );
+
+        final ClassLoadingProfile profile = new ClassLoadingProfile( bundle, 1, TimeUnit.HOURS );
+        profile.startRecording();
+        profile.record( "java.lang.Integer" );
+        profile.record( "java.lang.Long" );
+        profile.stopRecording();
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassLoadingProfile( profile );
+        profile.startRecording();
+        assertThat( "Preloaded", profile.preload( classLoader ).get(), is( equalTo( 2 ) ) );
+        classLoader.loadClass( "java.lang.Short" );
+        profile.stopRecording();
+
+        assertThat( "Stored classes", profile.getStoredClassNames(),
+                    is( equalTo( Arrays.asList( "java.lang.Integer", "java.lang.Long", "java.lang.Short" ) ) ) );
+    }
+
+    /**
+     * Tests that the profile stays the same over several restarts that preload it and record again, although the
+     * preloaded classes do not reach the bundle anymore.
+     */
+    @Test
+    public void profileIsStableOverRestarts()
+        throws Exception
+    {
+        final File file = File.createTempFile( "profile", ".txt" );
+        file.deleteOnExit();
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getDataFile( ClassLoadingProfile.PROFILE_FILE ) ).andStubReturn( file );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( (Class) bundle.loadClass( "java.lang.Integer" ) ).andStubReturn( Integer.class );
+        expect( (Class) bundle.loadClass( "java.lang.Long" ) ).andStubReturn( Long.class );
+        replay( bundle );
+
+        final ClassLoadingProfile first = new ClassLoadingProfile( bundle, 1, TimeUnit.HOURS );
+        final BundleClassLoader firstClassLoader = new BundleClassLoader( bundle );
+        firstClassLoader.setClassLoadingProfile( first );
+        first.startRecording();
+        firstClassLoader.loadClass( "java.lang.Integer" );
+        firstClassLoader.loadClass( "java.lang.Long" );
+        first.stopRecording();
+        final List<String> recorded = first.getStoredClassNames();
+        assertThat( "Recorded", recorded, is( equalTo( Arrays.asList( "java.lang.Integer", "java.lang.Long" ) ) ) );
+
+        for( int restart = 1; restart <= 2; restart++ )
+        {
+            final ClassLoadingProfile profile = new ClassLoadingProfile( bundle, 1, TimeUnit.HOURS );
+            final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+            classLoader.setClassLoadingProfile( profile );
+            profile.startRecording();
+            assertThat( "Preloaded", profile.preload( classLoader ).get(), is( equalTo( 2 ) ) );
+            classLoader.loadClass( "java.lang.Integer" );
+            classLoader.loadClass( "java.lang.Long" );
+            profile.stopRecording();
+            assertThat( "Stored after restart " + restart, profile.getStoredClassNames(), is( equalTo( recorded ) ) );
+        }
+    }
+
+    /**
+     * Tests that without a stored profile nothing is preloaded.
+     */
+    @Test
+    public void noStoredProfile()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getDataFile( ClassLoadingProfile.PROFILE_FILE ) ).andStubReturn( null );
+        replay( bundle );
+
+        final ClassLoadingProfile profile = new ClassLoadingProfile( bundle, 1, TimeUnit.HOURS );
+        assertThat( "Preloaded", profile.preload( getClass().getClassLoader() ).get(), is( equalTo( 0 ) ) );
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.namespace.BundleNamespace;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.resource.Namespace;
+
+/**
+ * ClassSpaceIndex Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class ClassSpaceIndexTest
+{
+
+    /**
+     * Tests that certain misses are rejected without asking the bundle while local names and names in imported packages
+     * not listed by the wiring are still loaded from the bundle.
+     */
+    @Test
+    public void certainMissIsRejected()
+        throws Exception
+    {
+        final BundleWiring wiring = wiring( false, imports( "org.imported" ), "org/foo/Bar.class", "org/foo/bar.xml" );
+        expect( wiring.isCurrent() ).andStubReturn( true );
+        final Bundle bundle = resolvedBundle( wiring );
+        expect( bundle.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( (Class) bundle.loadClass( "org.foo.Bar" ) ).andReturn( String.class );
+        expect( (Class) bundle.loadClass( "org.imported.Api" ) ).andReturn( Integer.class );
+        replay( wiring, bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertNotLoaded( classLoader, "org.missing.Foo" );
+        assertThat( "Resource", classLoader.getResource( "org/missing/foo.xml" ), is( nullValue() ) );
+        assertThat( "Loaded class", classLoader.loadClass( "org.foo.Bar" ), is( equalTo( (Object) String.class ) ) );
+        assertThat(
+            "Loaded class", classLoader.loadClass( "org.imported.Api" ), is( equalTo( (Object) Integer.class ) )
+        );
+        verify( wiring, bundle );
+    }
+
+    /**
+     * Tests that names in JDK and boot delegated packages are never rejected.
+     */
+    @Test
+    public void bootDelegatedPackagesAreNotRejected()
+        throws Exception
+    {
+        final BundleWiring wiring = wiring( false, imports(), "org/foo/Bar.class" );
+        expect( wiring.isCurrent() ).andStubReturn( true );
+        final Bundle bundle = resolvedBundle( wiring );
+        expect( bundle.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( bundle.loadClass( "javax.xml.parsers.Missing" ) ).andThrow(
+            new ClassNotFoundException( "javax.xml.parsers.Missing" )
+        );
+        expect( (Class) bundle.loadClass( "com.acme.boot.inner.Foo" ) ).andReturn( String.class );
+        expect( (Class) bundle.loadClass( "org.sunlike.Foo" ) ).andReturn( Integer.class );
+        replay( wiring, bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertNotLoaded( classLoader, "javax.xml.parsers.Missing" );
+        assertThat(
+            "Loaded class", classLoader.loadClass( "com.acme.boot.inner.Foo" ), is( equalTo( (Object) String.class ) )
+        );
+        assertThat(
+            "Loaded class", classLoader.loadClass( "org.sunlike.Foo" ), is( equalTo( (Object) Integer.class ) )
+        );
+        verify( wiring, bundle );
+    }
+
+    /**
+     * Tests that nothing is rejected for bundles using dynamic imports.
+     */
+    @Test
+    public void dynamicImportsAreNotRejected()
+        throws Exception
+    {
+        final BundleWiring wiring = wiring( true, imports(), "org/foo/Bar.class" );
+        expect( wiring.isCurrent() ).andStubReturn( true );
+        final Bundle bundle = resolvedBundle( wiring );
+        expect( bundle.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( (Class) bundle.loadClass( "org.dynamic.Foo" ) ).andReturn( String.class );
+        replay( wiring, bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertThat(
+            "Loaded class", classLoader.loadClass( "org.dynamic.Foo" ), is( equalTo( (Object) String.class ) )
+        );
+        verify( wiring, bundle );
+    }
+
+    /**
+     * Tests that the index is dropped and rebuilt once the wiring it was built from is no longer current.
+     */
+    @Test
+    public void indexIsDroppedOnRevisionChange()
+        throws Exception
+    {
+        final BundleWiring oldWiring = wiring( false, imports(), "org/foo/Bar.class" );
+        expect( oldWiring.isCurrent() ).andReturn( true ).andStubReturn( false );
+        final BundleWiring newWiring = wiring( false, imports(), "org/moved/Bar.class" );
+        expect( newWiring.isCurrent() ).andStubReturn( true );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andReturn( oldWiring ).andStubReturn( newWiring );
+        expect( bundle.getBundleContext() ).andStubReturn( context( null ) );
+        expect( bundle.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( (Class) bundle.loadClass( "org.moved.Bar" ) ).andReturn( String.class );
+        replay( oldWiring, newWiring, bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertNotLoaded( classLoader, "org.moved.Bar" );
+        // bundle got updated in the meantime
+        assertThat( "Loaded class", classLoader.loadClass( "org.moved.Bar" ), is( equalTo( (Object) String.class ) ) );
+        awaitIndex();
+
+        assertNotLoaded( classLoader, "org.foo.Bar" );
+        verify( oldWiring, newWiring, bundle );
+    }
+
+    /**
+     * Tests that probing skips bundles for which the name is a certain miss.
+     */
+    @Test
+    public void probingSkipsCertainMisses()
+        throws Exception
+    {
+        final BundleWiring firstWiring = wiring( false, imports(), "org/first/A.class" );
+        expect( firstWiring.isCurrent() ).andStubReturn( true );
+        final BundleWiring secondWiring = wiring( false, imports(), "org/second/B.class" );
+        expect( secondWiring.isCurrent() ).andStubReturn( true );
+        final Bundle first = resolvedBundle( firstWiring );
+        final Bundle second = resolvedBundle( secondWiring );
+        expect( first.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( second.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( (Class) second.loadClass( "org.second.B" ) ).andReturn( String.class );
+        replay( firstWiring, secondWiring, first, second );
+
+        final MultiBundleClassLoader classLoader = new MultiBundleClassLoader( first, second );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertThat( "Loaded class", classLoader.loadClass( "org.second.B" ), is( equalTo( (Object) String.class ) ) );
+        assertNotLoaded( classLoader, "org.missing.Foo" );
+        verify( firstWiring, secondWiring, first, second );
+    }
+
+    /**
+     * Tests that names in packages taken from required bundles are not rejected.
+     */
+    @Test
+    public void requiredBundlePackagesAreNotRejected()
+        throws Exception
+    {
+        final BundleCapability exported = packageCapability( "org.required" );
+        final BundleWiring provider = createMock( BundleWiring.class );
+        expect( provider.getCapabilities( PackageNamespace.PACKAGE_NAMESPACE ) ).andStubReturn(
+            Collections.singletonList( exported )
+        );
+        expect( provider.getRequiredWires( BundleNamespace.BUNDLE_NAMESPACE ) ).andStubReturn(
+            Collections.<BundleWire>emptyList()
+        );
+        final BundleWire requireBundle = createMock( BundleWire.class );
+        expect( requireBundle.getProviderWiring() ).andStubReturn( provider );
+        replay( provider, requireBundle );
+        final BundleWiring wiring = wiring(
+            false, imports(), Collections.singletonList( requireBundle ), "org/foo/Bar.class"
+        );
+        expect( wiring.isCurrent() ).andStubReturn( true );
+        final Bundle bundle = resolvedBundle( wiring );
+        expect( bundle.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) );
+        expect( (Class) bundle.loadClass( "org.required.Api" ) ).andReturn( String.class );
+        replay( wiring, bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertThat(
+            "Loaded class", classLoader.loadClass( "org.required.Api" ), is( equalTo( (Object) String.class ) )
+        );
+        assertNotLoaded( classLoader, "org.missing.Foo" );
+        verify( wiring, bundle );
+    }
+
+    /**
+     * Tests that the index of an unresolved bundle is not built again on every lookup, but once the bundle got
+     * resolved.
+     */
+    @Test
+    public void unresolvedBundleIsNotIndexedOnEveryLookup()
+        throws Exception
+    {
+        final BundleWiring wiring = wiring( false, imports(), "org/foo/Bar.class" );
+        expect( wiring.isCurrent() ).andStubReturn( true );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andReturn( null ).once();
+        expect( bundle.adapt( BundleWiring.class ) ).andReturn( wiring ).once();
+        expect( bundle.getState() ).andReturn( Bundle.INSTALLED ).times( 2 );
+        expect( bundle.getState() ).andStubReturn( Bundle.RESOLVED );
+        expect( bundle.getBundleContext() ).andStubReturn( context( null ) );
+        expect( bundle.loadClass( "org.warm.Up" ) ).andThrow( new ClassNotFoundException( "org.warm.Up" ) ).times( 4 );
+        replay( wiring, bundle );
+
+        final BundleClassLoader classLoader = new BundleClassLoader( bundle );
+        classLoader.setClassSpaceIndexed( true );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+        // still unresolved
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+        // resolved in the meantime
+        assertNotLoaded( classLoader, "org.warm.Up" );
+        awaitIndex();
+
+        assertNotLoaded( classLoader, "org.missing.Foo" );
+        verify( wiring, bundle );
+    }
+
+    private static void assertNotLoaded( final ClassLoader classLoader, final String name )
+    {
+        try
+        {
+            classLoader.loadClass( name );
+            fail( "Expected ClassNotFoundException for " + name );
+        }
+        catch( ClassNotFoundException expected )
+        {
+            // expected
+        }
+    }
+
+    private static void awaitIndex()
+    {
+        ForkJoinPool.commonPool().awaitQuiescence( 10, TimeUnit.SECONDS );
+    }
+
+    private static Bundle resolvedBundle( final BundleWiring wiring )
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andStubReturn( wiring );
+        expect( bundle.getBundleContext() ).andStubReturn( context( "com.acme.boot.*,org.sunlike" ) );
+        return bundle;
+    }
+
+    private static BundleContext context( final String bootDelegation )
+    {
+        final BundleContext context = createMock( BundleContext.class );
+        expect( context.getProperty( Constants.FRAMEWORK_BOOTDELEGATION ) ).andStubReturn( bootDelegation );
+        replay( context );
+        return context;
+    }
+
+    private static List<BundleWire> imports( final String... packageNames )
+    {
+        final List<BundleWire> wires = new ArrayList<BundleWire>();
+        for( String packageName : packageNames )
+        {
+            final BundleWire wire = createMock( BundleWire.class );
+            expect( wire.getCapability() ).andStubReturn( packageCapability( packageName ) );
+            replay( wire );
+            wires.add( wire );
+        }
+        return wires;
+    }
+
+    private static BundleCapability packageCapability( final String packageName )
+    {
+        final BundleCapability capability = createMock( BundleCapability.class );
+        expect( capability.getAttributes() ).andStubReturn(
+            Collections.<String, Object>singletonMap( PackageNamespace.PACKAGE_NAMESPACE, packageName )
+        );
+        replay( capability );
+        return capability;
+    }
+
+    private static BundleWiring wiring( final boolean dynamicImports,
+                                        final List<BundleWire> imports,
+                                        final String... resources )
+    {
+        return wiring( dynamicImports, imports, Collections.<BundleWire>emptyList(), resources );
+    }
+
+    private static BundleWiring wiring( final boolean dynamicImports,
+                                        final List<BundleWire> imports,
+                                        final List<BundleWire> requiredBundles,
+                                        final String... resources )
+    {
+        final BundleRevision revision = createMock( BundleRevision.class );
+        if( dynamicImports )
+        {
+            final BundleRequirement requirement = createMock( BundleRequirement.class );
+            expect( requirement.getDirectives() ).andStubReturn(
+                Collections.singletonMap(
+                    Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE, PackageNamespace.RESOLUTION_DYNAMIC
+                )
+            );
+            replay( requirement );
+            expect( revision.getDeclaredRequirements( PackageNamespace.PACKAGE_NAMESPACE ) ).andStubReturn(
+                Collections.singletonList( requirement )
+            );
+        }
+        else
+        {
+            expect( revision.getDeclaredRequirements( PackageNamespace.PACKAGE_NAMESPACE ) ).andStubReturn(
+                Collections.<BundleRequirement>emptyList()
+            );
+        }
+        replay( revision );
+        final BundleWiring wiring = createMock( BundleWiring.class );
+        expect( wiring.getRevision() ).andStubReturn( revision );
+        expect( wiring.listResources(
+            "/", "*", BundleWiring.LISTRESOURCES_RECURSE | BundleWiring.LISTRESOURCES_LOCAL
+        ) ).andStubReturn( Arrays.asList( resources ) );
+        expect( wiring.getCapabilities( PackageNamespace.PACKAGE_NAMESPACE ) ).andStubReturn(
+            Collections.<BundleCapability>emptyList()
+        );
+        expect( wiring.getRequiredWires( PackageNamespace.PACKAGE_NAMESPACE ) ).andStubReturn( imports );
+        expect( wiring.getRequiredWires( BundleNamespace.BUNDLE_NAMESPACE ) ).andStubReturn( requiredBundles );
+        return wiring;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * ContextClassLoaderUtils Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class ContextClassLoaderUtilsTest
+{
+
+    private static final Callable<ClassLoader> CURRENT_TCCL = new Callable<ClassLoader>()
+    {
+        public ClassLoader call()
+        {
+            return Thread.currentThread().getContextClassLoader();
+        }
+    };
+
+    /**
+     * Tests that the context class loader is set during the call and restored afterwards.
+     */
+    @Test
+    public void getWithClassLoader()
+    {
+        final ClassLoader classLoader = new ClassLoader( null )
+        {
+        };
+        final ClassLoader before = Thread.currentThread().getContextClassLoader();
+        final ClassLoader during = ContextClassLoaderUtils.getWithClassLoader( classLoader, new Supplier<ClassLoader>()
+        {
+            public ClassLoader get()
+            {
+                return Thread.currentThread().getContextClassLoader();
+            }
+        } );
+        assertThat( "During call", during, is( sameInstance( classLoader ) ) );
+        assertThat( "After call", Thread.currentThread().getContextClassLoader(), is( sameInstance( before ) ) );
+    }
+
+    /**
+     * Tests that tasks submitted to a decorated executor service run with the class loader and that the pool
+     * thread gets its original context class loader back.
+     */
+    @Test
+    public void executorServiceWithClassLoader()
+        throws Exception
+    {
+        final ClassLoader classLoader = new ClassLoader( null )
+        {
+        };
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+        try
+        {
+            final ClassLoader original = pool.submit( CURRENT_TCCL ).get();
+            final ExecutorService decorated =
+                ContextClassLoaderUtils.executorServiceWithClassLoader( classLoader, pool );
+            assertThat( "In task", decorated.submit( CURRENT_TCCL ).get(), is( sameInstance( classLoader ) ) );
+            assertThat( "After task", pool.submit( CURRENT_TCCL ).get(), is( sameInstance( original ) ) );
+        }
+        finally
+        {
+            pool.shutdown();
+            pool.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+    }
+
+    /**
+     * Tests that the thread per task executor runs tasks with the class loader.
+     */
+    @Test
+    public void virtualThreadPerTaskExecutor()
+        throws Exception
+    {
+        final ClassLoader classLoader = new ClassLoader( null )
+        {
+        };
+        final ExecutorService executor = ContextClassLoaderUtils.newVirtualThreadPerTaskExecutor( classLoader );
+        try
+        {
+            assertThat( "In task", executor.submit( CURRENT_TCCL ).get(), is( sameInstance( classLoader ) ) );
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+    }
+
+}
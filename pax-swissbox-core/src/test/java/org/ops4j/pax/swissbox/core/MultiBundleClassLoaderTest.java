@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * MultiBundleClassLoader Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class MultiBundleClassLoaderTest
+{
+
+    /**
+     * Tests that a class from an exported package is loaded from the exporting bundle without probing the other
+     * bundles.
+     */
+    @Test
+    public void loadClassFromExporter()
+        throws Exception
+    {
+        final Bundle first = unresolvedBundle( "org.first" );
+        final Bundle second = unresolvedBundle( "org.second;version=\"[1,2)\";uses:=\"org.first,org.x\", org.third" );
+        expect( (Class) second.loadClass( "org.third.Foo" ) ).andReturn( String.class );
+        replay( first, second );
+
+        final MultiBundleClassLoader classLoader = new MultiBundleClassLoader( first, second );
+        assertThat( "Loaded class", classLoader.loadClass( "org.third.Foo" ), is( equalTo( (Object) String.class ) ) );
+        verify( first, second );
+    }
+
+    /**
+     * Tests that a package that is not exported is found by probing and that the owner is remembered.
+     */
+    @Test
+    public void loadClassFromPrivatePackage()
+        throws Exception
+    {
+        final Bundle first = unresolvedBundle( null );
+        final Bundle second = unresolvedBundle( null );
+        expect( first.loadClass( "org.hidden.Foo" ) ).andThrow( new ClassNotFoundException( "org.hidden.Foo" ) );
+        expect( (Class) second.loadClass( "org.hidden.Foo" ) ).andReturn( String.class );
+        expect( (Class) second.loadClass( "org.hidden.Bar" ) ).andReturn( Integer.class );
+        replay( first, second );
+
+        final MultiBundleClassLoader classLoader = new MultiBundleClassLoader( first, second );
+        assertThat( "Loaded class", classLoader.loadClass( "org.hidden.Foo" ), is( equalTo( (Object) String.class ) ) );
+        assertThat( "Loaded class", classLoader.loadClass( "org.hidden.Bar" ), is( equalTo( (Object) Integer.class ) ) );
+        verify( first, second );
+    }
+
+    /**
+     * Tests that resources are looked up in the bundle owning the package and that removing a bundle re-assigns
+     * its packages.
+     */
+    @Test
+    public void removeBundleReassignsPackages()
+        throws Exception
+    {
+        final URL url = new URL( "file:/org/shared/foo.xml" );
+        final Bundle first = unresolvedBundle( "org.shared" );
+        final Bundle second = unresolvedBundle( "org.shared" );
+        expect( second.getResource( "org/shared/foo.xml" ) ).andReturn( url );
+        replay( first, second );
+
+        final MultiBundleClassLoader classLoader = new MultiBundleClassLoader( first, second );
+        classLoader.removeBundle( first );
+        assertThat( "Resource", classLoader.getResource( "org/shared/foo.xml" ), is( equalTo( url ) ) );
+        verify( first, second );
+    }
+
+    /**
+     * Tests that a bundle that cannot be indexed is not added, so later lookups and additions still work.
+     */
+    @Test
+    public void failedIndexingDoesNotAddBundle()
+        throws Exception
+    {
+        final Bundle first = createMock( Bundle.class );
+        expect( first.adapt( BundleWiring.class ) ).andThrow( new IllegalStateException( "Uninstalled" ) );
+        final Bundle second = unresolvedBundle( "org.second" );
+        expect( (Class) second.loadClass( "org.second.Foo" ) ).andReturn( String.class );
+        replay( first, second );
+
+        final MultiBundleClassLoader classLoader = new MultiBundleClassLoader();
+        try
+        {
+            classLoader.addBundle( first );
+            fail( "Expected IllegalStateException" );
+        }
+        catch( IllegalStateException expected )
+        {
+            // expected
+        }
+        classLoader.addBundle( second );
+        assertThat( "Bundles", classLoader.getBundles(), is( equalTo( Collections.singletonList( second ) ) ) );
+        assertThat( "Loaded class", classLoader.loadClass( "org.second.Foo" ), is( equalTo( (Object) String.class ) ) );
+        verify( first, second );
+    }
+
+    /**
+     * Tests that the class loader is registered as parallel capable.
+     */
+    @Test
+    public void parallelCapable()
+    {
+        assertThat( "Parallel capable", new MultiBundleClassLoader().isRegisteredAsParallelCapable(), is( true ) );
+    }
+
+    private static Bundle unresolvedBundle( final String exports )
+    {
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        if( exports != null )
+        {
+            headers.put( Constants.EXPORT_PACKAGE, exports );
+        }
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andStubReturn( null );
+        expect( bundle.getHeaders( "" ) ).andStubReturn( headers );
+        return bundle;
+    }
+
+}
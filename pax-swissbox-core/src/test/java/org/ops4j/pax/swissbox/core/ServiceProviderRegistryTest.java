@@ -0,0 +1,220 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.core;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+
+import org.easymock.Capture;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * ServiceProviderRegistry Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class ServiceProviderRegistryTest
+{
+
+    /**
+     * Tests that providers of resolved bundles are found, lazily instantiated and removed on refresh.
+     */
+    @Test
+    public void providers()
+        throws Exception
+    {
+        final Bundle bundle = bundle( 1, 0 );
+        expect( bundle.findEntries( "META-INF/services", "*", false ) ).andReturn(
+            Collections.enumeration( Collections.singletonList(
+                file( "java.lang.Runnable", "# comment\n" + Thread.class.getName() + " # inline\n\n" )
+            ) )
+        ).once();
+        expect( (Class) bundle.loadClass( Thread.class.getName() ) ).andReturn( Thread.class ).once();
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ bundle } );
+        replay( context, bundle );
+
+        final ServiceProviderRegistry registry = new ServiceProviderRegistry( context );
+        registry.open();
+        final List<ServiceProviderRegistry.Provider> providers = registry.getProviders( Runnable.class );
+        assertThat( "Providers", providers.size(), is( equalTo( 1 ) ) );
+        assertThat( "Provider class", providers.get( 0 ).getClassName(), is( equalTo( Thread.class.getName() ) ) );
+        assertThat( "Instance", providers.get( 0 ).newInstance( Runnable.class ), is( instanceOf( Thread.class ) ) );
+        assertThat( "Instance", providers.get( 0 ).newInstance( Runnable.class ), is( instanceOf( Thread.class ) ) );
+        assertThat( "Other service", registry.getProviders( "org.foo.Service" ).size(), is( equalTo( 0 ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNRESOLVED, bundle ) );
+        assertThat( "Providers after refresh", registry.getProviders( Runnable.class ).size(), is( equalTo( 0 ) ) );
+        verify( context, bundle );
+    }
+
+    /**
+     * Tests that providers declared in a fragment are registered once, for the host, whether the bundles are resolved
+     * on open or later.
+     */
+    @Test
+    public void fragmentProvidersBelongToHost()
+        throws Exception
+    {
+        final URL services = file( "java.lang.Runnable", Thread.class.getName() );
+        final Bundle host = bundle( 1, 0 );
+        expect( host.findEntries( "META-INF/services", "*", false ) ).andReturn(
+            Collections.enumeration( Collections.singletonList( services ) )
+        ).andReturn(
+            Collections.enumeration( Collections.singletonList( services ) )
+        );
+        final Bundle fragment = bundle( 2, BundleRevision.TYPE_FRAGMENT );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ host, fragment } );
+        replay( context, host, fragment );
+
+        final ServiceProviderRegistry registry = new ServiceProviderRegistry( context );
+        registry.open();
+        List<ServiceProviderRegistry.Provider> providers = registry.getProviders( Runnable.class );
+        assertThat( "Providers", providers.size(), is( equalTo( 1 ) ) );
+        assertThat( "Provider bundle", providers.get( 0 ).getBundle(), is( sameInstance( host ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNRESOLVED, host ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNRESOLVED, fragment ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, fragment ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, host ) );
+        providers = registry.getProviders( Runnable.class );
+        assertThat( "Providers after refresh", providers.size(), is( equalTo( 1 ) ) );
+        assertThat( "Provider bundle", providers.get( 0 ).getBundle(), is( sameInstance( host ) ) );
+        verify( context, host, fragment );
+    }
+
+    /**
+     * Tests that providers are ordered by bundle id, installed bundles are not scanned and updates are followed.
+     */
+    @Test
+    public void ordersAndFollowsBundles()
+        throws Exception
+    {
+        final Bundle b1 = bundle( 1, 0 );
+        final Bundle b2 = bundle( 2, 0 );
+        final Bundle installed = createMock( Bundle.class );
+        expect( installed.getState() ).andStubReturn( Bundle.INSTALLED );
+        final URL b2Services = file( "org.foo.Service", "org.b2.First\norg.b2.Second" );
+        expect( b2.findEntries( "META-INF/services", "*", false ) ).andReturn(
+            Collections.enumeration( Collections.singletonList( b2Services ) )
+        );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ b2, installed } );
+        expect( b1.findEntries( "META-INF/services", "*", false ) ).andReturn(
+            Collections.enumeration( Collections.singletonList( file( "org.foo.Service", "org.b1.Provider" ) ) )
+        );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, b1, b2, installed );
+
+        final ServiceProviderRegistry registry = new ServiceProviderRegistry( context );
+        registry.open();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, b1 ) );
+        assertThat( "Providers", classNames( registry.getProviders( "org.foo.Service" ) ),
+                    is( equalTo( Arrays.asList( "org.b1.Provider", "org.b2.First", "org.b2.Second" ) ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UPDATED, b2 ) );
+        assertThat( "Providers after update", classNames( registry.getProviders( "org.foo.Service" ) ),
+                    is( equalTo( Arrays.asList( "org.b1.Provider" ) ) ) );
+
+        registry.close();
+        assertThat( "Providers after close", registry.getProviders( "org.foo.Service" ).size(), is( equalTo( 0 ) ) );
+        verify( context, b1, b2, installed );
+    }
+
+    /**
+     * Tests that a provider that is not a sub type of the service is reported as a service configuration error.
+     */
+    @Test( expected = ServiceConfigurationError.class )
+    public void providerNotSubtype()
+        throws Exception
+    {
+        final Bundle bundle = bundle( 1, 0 );
+        expect( (Class) bundle.loadClass( String.class.getName() ) ).andReturn( String.class );
+        replay( bundle );
+
+        new ServiceProviderRegistry.Provider( bundle, Runnable.class.getName(), String.class.getName() )
+            .newInstance( Runnable.class );
+    }
+
+    private static Bundle bundle( final long id, final int types )
+    {
+        final BundleRevision revision = createMock( BundleRevision.class );
+        expect( revision.getTypes() ).andStubReturn( types );
+        replay( revision );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andStubReturn( id );
+        expect( bundle.getState() ).andStubReturn( Bundle.RESOLVED );
+        expect( bundle.adapt( BundleRevision.class ) ).andStubReturn( revision );
+        return bundle;
+    }
+
+    private static List<String> classNames( final List<ServiceProviderRegistry.Provider> providers )
+    {
+        final List<String> classNames = new ArrayList<String>();
+        for( ServiceProviderRegistry.Provider provider : providers )
+        {
+            classNames.add( provider.getClassName() );
+        }
+        return classNames;
+    }
+
+    private static URL file( final String name, final String content )
+        throws IOException
+    {
+        final File dir = File.createTempFile( "services", "" );
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        final File file = new File( dir, name );
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            out.close();
+        }
+        return file.toURI().toURL();
+    }
+
+}
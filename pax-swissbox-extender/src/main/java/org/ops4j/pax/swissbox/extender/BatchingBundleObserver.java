@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Observer for watched bundles entries that gets notified about several bundles at once. Use a
+ * {@link BatchingBundleObserverAdapter} to register it with a bundle watcher.
+ *
+ * @since 1.9.1
+ */
+public interface BatchingBundleObserver<T>
+{
+
+    /**
+     * Called when bundles got started and contain the desired entries.
+     *
+     * @param entries watched entries by bundle, in the order the bundles got started
+     */
+    void addingEntries( Map<Bundle, List<T>> entries );
+
+    /**
+     * Called when bundles got stopped.
+     *
+     * @param entries watched entries by bundle, in the order the bundles got stopped
+     */
+    void removingEntries( Map<Bundle, List<T>> entries );
+
+}
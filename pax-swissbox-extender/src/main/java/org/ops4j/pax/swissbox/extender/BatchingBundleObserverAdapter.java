@@ -0,0 +1,259 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bundle observer that gathers the notifications of a time window and passes them as one batch to a
+ * {@link BatchingBundleObserver}. A batch is passed on once the window elapsed since its first notification, or
+ * earlier once it contains the maximum number of bundles. A bundle that is both removed and added counts once.
+ * <p>
+ * Within a batch the removals are passed on before the additions. A bundle that is added and removed again within the
+ * same batch is not passed on at all.
+ *
+ * @since 1.9.1
+ */
+public class BatchingBundleObserverAdapter<T>
+    implements BundleObserver<T>
+{
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger( BatchingBundleObserverAdapter.class );
+    /**
+     * Flushes whatever batch is pending.
+     */
+    private static final long ANY_BATCH = -1;
+    /**
+     * Returned by pending() when the batch did not reach the maximum size yet.
+     */
+    private static final long NOT_FULL = -2;
+
+    /**
+     * Observer the batches are passed to. Cannot be null.
+     */
+    private final BatchingBundleObserver<T> m_observer;
+    /**
+     * Time window in milliseconds.
+     */
+    private final long m_windowMillis;
+    /**
+     * Maximum number of bundles in a batch.
+     */
+    private final int m_maxBatchSize;
+    /**
+     * Lock held while passing a batch on, so that batches are passed on one after the other.
+     */
+    private final Object m_deliveryLock;
+    /**
+     * Pending additions. Guarded by this.
+     */
+    private Map<Bundle, List<T>> m_added;
+    /**
+     * Pending removals. Guarded by this.
+     */
+    private Map<Bundle, List<T>> m_removed;
+    /**
+     * Number of distinct bundles in the pending notifications. Guarded by this.
+     */
+    private int m_size;
+    /**
+     * True if the timer of the pending batch was started. Guarded by this.
+     */
+    private boolean m_timerStarted;
+    /**
+     * Incremented on each batch, so that a pending timer of an already passed on or emptied batch is ignored.
+     * Guarded by this.
+     */
+    private long m_batches;
+
+    /**
+     * Creates an adapter.
+     *
+     * @param observer     observer to pass the batches to. Cannot be null.
+     * @param window       time window
+     * @param unit         unit of time window. Cannot be null.
+     * @param maxBatchSize maximum number of bundles in a batch, at least 1
+     */
+    public BatchingBundleObserverAdapter( final BatchingBundleObserver<T> observer,
+                                          final long window,
+                                          final TimeUnit unit,
+                                          final int maxBatchSize )
+    {
+        NullArgumentException.validateNotNull( observer, "Observer" );
+        NullArgumentException.validateNotNull( unit, "Time unit" );
+        if( maxBatchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Maximum batch size must be at least 1" );
+        }
+        m_observer = observer;
+        m_windowMillis = unit.toMillis( window );
+        m_maxBatchSize = maxBatchSize;
+        m_deliveryLock = new Object();
+        m_added = new LinkedHashMap<Bundle, List<T>>();
+        m_removed = new LinkedHashMap<Bundle, List<T>>();
+    }
+
+    public void addingEntries( final Bundle bundle, final List<T> entries )
+    {
+        final long full;
+        synchronized( this )
+        {
+            if( m_added.put( bundle, entries ) == null && !m_removed.containsKey( bundle ) )
+            {
+                m_size++;
+            }
+            full = pending();
+        }
+        if( full != NOT_FULL )
+        {
+            flush( full );
+        }
+    }
+
+    public void removingEntries( final Bundle bundle, final List<T> entries )
+    {
+        final long full;
+        synchronized( this )
+        {
+            if( m_added.remove( bundle ) != null )
+            {
+                // the addition was not passed on yet, so there is nothing to remove
+                if( !m_removed.containsKey( bundle ) && --m_size == 0 )
+                {
+                    // batch is empty again, the next notification starts a new time window
+                    nextBatch();
+                }
+                return;
+            }
+            if( m_removed.put( bundle, entries ) == null )
+            {
+                m_size++;
+            }
+            full = pending();
+        }
+        if( full != NOT_FULL )
+        {
+            flush( full );
+        }
+    }
+
+    /**
+     * Passes the pending notifications on right away, e.g. before the bundle watcher stops.
+     */
+    public void flush()
+    {
+        flush( ANY_BATCH );
+    }
+
+    /**
+     * Passes the pending notifications on, if they still belong to the given batch. The batch is checked and taken
+     * in one step while holding the delivery lock, so that a batch started in between is not passed on early.
+     *
+     * @param batch batch to pass on, as counted by m_batches, or ANY_BATCH to pass on whatever is pending
+     */
+    private void flush( final long batch )
+    {
+        synchronized( m_deliveryLock )
+        {
+            final Map<Bundle, List<T>> added;
+            final Map<Bundle, List<T>> removed;
+            synchronized( this )
+            {
+                if( batch != ANY_BATCH && batch != m_batches )
+                {
+                    // already passed on
+                    return;
+                }
+                added = m_added;
+                removed = m_removed;
+                m_added = new LinkedHashMap<Bundle, List<T>>();
+                m_removed = new LinkedHashMap<Bundle, List<T>>();
+                nextBatch();
+            }
+            if( removed.size() > 0 )
+            {
+                m_observer.removingEntries( Collections.unmodifiableMap( removed ) );
+            }
+            if( added.size() > 0 )
+            {
+                m_observer.addingEntries( Collections.unmodifiableMap( added ) );
+            }
+        }
+    }
+
+    /**
+     * Starts a new, empty batch. Must be called while holding the lock.
+     */
+    private void nextBatch()
+    {
+        m_size = 0;
+        m_timerStarted = false;
+        m_batches++;
+    }
+
+    /**
+     * Starts the timer of the batch on its first notification. Must be called while holding the lock.
+     *
+     * @return the batch if it reached the maximum size, NOT_FULL otherwise
+     */
+    private long pending()
+    {
+        final long batch = m_batches;
+        if( !m_timerStarted )
+        {
+            m_timerStarted = true;
+            CompletableFuture.runAsync( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        flush( batch );
+                    }
+                    catch( Throwable t )
+                    {
+                        LOG.error( "Ignored exception during batch notification", t );
+                    }
+                }
+            }, CompletableFuture.delayedExecutor( m_windowMillis, TimeUnit.MILLISECONDS ) );
+        }
+        return m_size >= m_maxBatchSize ? batch : NOT_FULL;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+            "observer=" ).append( m_observer ).append( ",window=" ).append( m_windowMillis ).append(
+            "ms,maxBatchSize=" ).append( m_maxBatchSize ).append( "}" ).toString();
+    }
+
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * In memory index of the entries of bundles (including attached fragments), so that any number of
+ * {@link Bundle#findEntries(String, String, boolean)} like queries walk the bundle content only once per bundle
+ * revision. The index of a bundle is built on the first query and rebuilt once the bundle gets updated or refreshed,
+ * that is once its wiring or its last modification changed. Unresolved bundles are not indexed.
+ * <p>
+ * A {@link #getShared() shared} index is used by default by {@link IndexedBundleURLEntryScanner}s, so that scanners of
+ * different extenders share it.
+ * <p>
+ * The index of a bundle holds the URLs of all its entries and is kept as long as the {@link Bundle} object is
+ * reachable. Frameworks keep that object while the bundle is installed, so the index of a stopped or unresolved
+ * bundle stays in memory until the bundle is uninstalled and collected, and the shared index lives as long as this
+ * class. Extenders watching many or large bundles should {@link #invalidate(Bundle)} bundles they no longer track,
+ * or use an index of their own and {@link #clear()} it on stop.
+ *
+ * @since 1.9.1
+ */
+public class BundleEntryIndex
+{
+
+    /**
+     * Index shared by default. Never cleared by itself, see the memory notes of the class.
+     */
+    private static final BundleEntryIndex SHARED = new BundleEntryIndex();
+
+    /**
+     * Index per bundle. Does not keep uninstalled bundles from being garbage collected. Guarded by itself.
+     */
+    private final Map<Bundle, Snapshot> m_snapshots;
+
+    /**
+     * Creates an empty index.
+     */
+    public BundleEntryIndex()
+    {
+        m_snapshots = new WeakHashMap<Bundle, Snapshot>();
+    }
+
+    /**
+     * Getter. Entries of bundles indexed in the shared index stay in memory while the bundles are installed, unless
+     * invalidated.
+     *
+     * @return index shared by default
+     */
+    public static BundleEntryIndex getShared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Finds entries the same way as {@link Bundle#findEntries(String, String, boolean)}, from the index of the bundle.
+     *
+     * @param bundle      bundle to search. Cannot be null.
+     * @param path        path to look in. Null or "/" for the root of the bundle.
+     * @param filePattern pattern the last element of the entry path must match, supporting "*" as wild-card. Null
+     *                    matches all entries.
+     * @param recurse     true to search sub-directories as well
+     *
+     * @return found entries. Empty if none was found.
+     */
+    public List<URL> findEntries( final Bundle bundle, final String path, final String filePattern,
+                                  final boolean recurse )
+    {
+        NullArgumentException.validateNotNull( bundle, "Bundle" );
+        final BundleWiring wiring = bundle.adapt( BundleWiring.class );
+        if( wiring == null )
+        {
+            // not resolved, so there is no fixed set of fragments yet
+            return list( bundle.findEntries( path == null ? "/" : path, filePattern, recurse ) );
+        }
+        final Node directory = getSnapshot( bundle, wiring ).root.find( path == null ? "/" : path );
+        if( directory == null )
+        {
+            return Collections.emptyList();
+        }
+        final List<URL> entries = new ArrayList<URL>();
+        directory.collect( filePattern == null ? "*" : filePattern, recurse, entries );
+        return entries;
+    }
+
+    /**
+     * Removes the index of a bundle.
+     *
+     * @param bundle bundle
+     */
+    public void invalidate( final Bundle bundle )
+    {
+        synchronized( m_snapshots )
+        {
+            m_snapshots.remove( bundle );
+        }
+    }
+
+    /**
+     * Removes the index of all bundles.
+     */
+    public void clear()
+    {
+        synchronized( m_snapshots )
+        {
+            m_snapshots.clear();
+        }
+    }
+
+    private Snapshot getSnapshot( final Bundle bundle, final BundleWiring wiring )
+    {
+        final long lastModified = bundle.getLastModified();
+        synchronized( m_snapshots )
+        {
+            final Snapshot snapshot = m_snapshots.get( bundle );
+            if( snapshot != null && snapshot.wiring.get() == wiring && snapshot.lastModified == lastModified )
+            {
+                return snapshot;
+            }
+        }
+        // built outside the lock, so that bundles are indexed in parallel
+        final Node root = new Node();
+        final Enumeration<URL> entries = bundle.findEntries( "/", "*", true );
+        if( entries != null )
+        {
+            while( entries.hasMoreElements() )
+            {
+                final URL entry = entries.nextElement();
+                if( entry != null )
+                {
+                    root.add( entry );
+                }
+            }
+        }
+        final Snapshot snapshot = new Snapshot( wiring, lastModified, root );
+        synchronized( m_snapshots )
+        {
+            m_snapshots.put( bundle, snapshot );
+        }
+        return snapshot;
+    }
+
+    private static List<URL> list( final Enumeration<URL> entries )
+    {
+        return entries == null ? Collections.<URL>emptyList() : Collections.list( entries );
+    }
+
+    /**
+     * Returns true if the name matches the pattern, supporting "*" as wild-card for any number of characters.
+     *
+     * @param pattern pattern
+     * @param name    name to match
+     *
+     * @return true if matching
+     */
+    static boolean matches( final String pattern, final String name )
+    {
+        final int star = pattern.indexOf( '*' );
+        if( star < 0 )
+        {
+            return pattern.equals( name );
+        }
+        if( !name.startsWith( pattern.substring( 0, star ) ) )
+        {
+            return false;
+        }
+        int position = star;
+        int start = star + 1;
+        int next;
+        while( ( next = pattern.indexOf( '*', start ) ) >= 0 )
+        {
+            final int found = name.indexOf( pattern.substring( start, next ), position );
+            if( found < 0 )
+            {
+                return false;
+            }
+            position = found + next - start;
+            start = next + 1;
+        }
+        final String suffix = pattern.substring( start );
+        return name.length() - suffix.length() >= position && name.endsWith( suffix );
+    }
+
+    /**
+     * Index of one bundle revision.
+     */
+    private static final class Snapshot
+    {
+
+        /**
+         * Wiring the index was built for. Weak, so that the index does not keep a refreshed revision alive.
+         */
+        final WeakReference<BundleWiring> wiring;
+        final long lastModified;
+        final Node root;
+
+        Snapshot( final BundleWiring wiring, final long lastModified, final Node root )
+        {
+            this.wiring = new WeakReference<BundleWiring>( wiring );
+            this.lastModified = lastModified;
+            this.root = root;
+        }
+
+    }
+
+    /**
+     * Path element of the index.
+     */
+    private static final class Node
+    {
+
+        /**
+         * Child elements by name, in bundle order. Null if none.
+         */
+        Map<String, Node> children;
+        /**
+         * Entries with the path of this element, more than one if fragments contain the same path. Null if none, e.g.
+         * for directories without own entry.
+         */
+        List<URL> entries;
+
+        void add( final URL entry )
+        {
+            Node node = this;
+            for( String name : entry.getPath().split( "/" ) )
+            {
+                if( name.length() == 0 )
+                {
+                    continue;
+                }
+                if( node.children == null )
+                {
+                    node.children = new LinkedHashMap<String, Node>();
+                }
+                Node child = node.children.get( name );
+                if( child == null )
+                {
+                    child = new Node();
+                    node.children.put( name, child );
+                }
+                node = child;
+            }
+            if( node.entries == null )
+            {
+                node.entries = new ArrayList<URL>( 1 );
+            }
+            node.entries.add( entry );
+        }
+
+        Node find( final String path )
+        {
+            Node node = this;
+            for( String name : path.split( "/" ) )
+            {
+                if( name.length() == 0 )
+                {
+                    continue;
+                }
+                node = node.children == null ? null : node.children.get( name );
+                if( node == null )
+                {
+                    return null;
+                }
+            }
+            return node;
+        }
+
+        void collect( final String filePattern, final boolean recurse, final List<URL> found )
+        {
+            if( children == null )
+            {
+                return;
+            }
+            for( Map.Entry<String, Node> child : children.entrySet() )
+            {
+                if( child.getValue().entries != null && matches( filePattern, child.getKey() ) )
+                {
+                    found.addAll( child.getValue().entries );
+                }
+                if( recurse )
+                {
+                    child.getValue().collect( filePattern, true, found );
+                }
+            }
+        }
+
+    }
+
+}
@@ -20,9 +20,6 @@ package org.ops4j.pax.swissbox.extender;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import org.osgi.framework.Bundle;
@@ -35,7 +32,7 @@ import org.ops4j.lang.NullArgumentException;
  * @since 0.2.0, February 09, 2008
  */
 public class BundleManifestScanner
-    implements BundleScanner<ManifestEntry>
+    implements HeaderAwareBundleScanner<ManifestEntry>
 {
 
     /**
@@ -70,10 +67,27 @@ public class BundleManifestScanner
     {
         NullArgumentException.validateNotNull( bundle, "Bundle" );
 
-        final Dictionary bundleHeaders = bundle.getHeaders();
-        if( bundleHeaders != null && !bundleHeaders.isEmpty() )
+        return scan( bundle, bundle.getHeaders() );
+    }
+
+    /**
+     * Scans the given bundle headers for matches against configured manifest headers.
+     *
+     * @param bundle  bundle to be scanned
+     * @param headers headers of the bundle
+     *
+     * @return list of matching manifest entries
+     *
+     * @see HeaderAwareBundleScanner#scan(Bundle, Dictionary)
+     */
+    public List<ManifestEntry> scan( final Bundle bundle, final Dictionary<String, String> headers )
+    {
+        NullArgumentException.validateNotNull( bundle, "Bundle" );
+
+        if( headers != null && !headers.isEmpty() )
         {
-            return asManifestEntryList( m_manifestFilter.match( dictionaryToMap( bundleHeaders ) ) );
+            // the filter works on a view, so only the matching headers are copied
+            return asManifestEntryList( m_manifestFilter.match( new DictionaryMap( headers ) ) );
         }
         else
         {
@@ -90,52 +104,17 @@ public class BundleManifestScanner
      */
     private static List<ManifestEntry> asManifestEntryList( final Map<String, String> entries )
     {
-        final List<ManifestEntry> manifestEntries = new ArrayList<ManifestEntry>();
-        if( entries != null && !entries.isEmpty() )
-        {
-            for( Map.Entry<String, String> entry : entries.entrySet() )
-            {
-                manifestEntries.add( new ManifestEntry( entry.getKey(), entry.getValue() ) );
-            }
-        }
-        return manifestEntries;
-    }
-
-    /**
-     * Converts a dictionary of String/String to a map.
-     *
-     * @param dictionary to be converted
-     *
-     * @return dictionary content as map
-     *
-     * @throws IllegalArgumentException if dictionary entries keys or values are not string
-     */
-    private static Map<String, String> dictionaryToMap( final Dictionary dictionary )
-    {
-        final Map<String, String> map = new HashMap<String, String>();
-        try
+        if( entries == null || entries.isEmpty() )
         {
-            // first try a shortcut
-            if( dictionary instanceof Hashtable )
-            {
-                map.putAll( (Hashtable<String, String>) dictionary );
-            }
-            else
-            {
-                final Enumeration keys = dictionary.keys();
-                while( keys.hasMoreElements() )
-                {
-                    final String key = (String) keys.nextElement();
-                    map.put( key, (String) dictionary.get( key ) );
-                }
-            }
-            return map;
+            // a new list, as callers may add to it
+            return new ArrayList<ManifestEntry>( 0 );
         }
-        catch( ClassCastException e )
+        final List<ManifestEntry> manifestEntries = new ArrayList<ManifestEntry>( entries.size() );
+        for( Map.Entry<String, String> entry : entries.entrySet() )
         {
-            throw new IllegalArgumentException( "Dictionary entries must have String keys and values" );
+            manifestEntries.add( new ManifestEntry( entry.getKey(), entry.getValue() ) );
         }
+        return manifestEntries;
     }
 
-
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Codec for the entry URLs found by a {@link BundleURLScanner}. Only the entry path is stored, as the URLs of bundle
+ * entries are framework specific and may change between framework restarts. On read the URL is looked up again in
+ * the bundle and its attached fragments. As the same path may exist in the bundle and in its fragments, the position
+ * of the entry among the entries with the same path is stored too.
+ *
+ * @since 1.9.1
+ */
+public class BundleURLCodec
+    implements ScanResultCodec<URL>
+{
+
+    public void write( final Bundle bundle, final URL entry, final DataOutput out )
+        throws IOException
+    {
+        final String path = entry.getPath();
+        out.writeUTF( path );
+        out.writeInt( indexOf( bundle, path, entry ) );
+    }
+
+    public URL read( final Bundle bundle, final DataInput in )
+        throws IOException
+    {
+        final String path = in.readUTF();
+        final int index = in.readInt();
+        if( index == 0 )
+        {
+            final URL entry = bundle.getEntry( path );
+            if( entry != null )
+            {
+                return entry;
+            }
+        }
+        // entry of an attached fragment
+        final Enumeration<URL> entries = findEntries( bundle, path );
+        for( int i = 0; entries != null && entries.hasMoreElements(); i++ )
+        {
+            final URL entry = entries.nextElement();
+            if( i == index )
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return position of the entry among the entries of the bundle and its fragments with the same path
+     */
+    private static int indexOf( final Bundle bundle, final String path, final URL entry )
+    {
+        // URL.equals() may resolve host names, compare the external forms instead
+        final String externalForm = entry.toExternalForm();
+        final URL hostEntry = bundle.getEntry( path );
+        if( hostEntry != null && hostEntry.toExternalForm().equals( externalForm ) )
+        {
+            return 0;
+        }
+        final Enumeration<URL> entries = findEntries( bundle, path );
+        for( int i = 0; entries != null && entries.hasMoreElements(); i++ )
+        {
+            if( entries.nextElement().toExternalForm().equals( externalForm ) )
+            {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static Enumeration<URL> findEntries( final Bundle bundle, final String path )
+    {
+        final int slash = path.lastIndexOf( '/' );
+        return bundle.findEntries( slash > 0 ? path.substring( 0, slash ) : "/", path.substring( slash + 1 ), false );
+    }
+
+}
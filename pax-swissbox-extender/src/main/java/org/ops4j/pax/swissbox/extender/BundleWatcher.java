@@ -17,15 +17,29 @@
  */
 package org.ops4j.pax.swissbox.extender;
 
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -35,7 +49,9 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
 import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.wiring.BundleRevision;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +60,22 @@ import org.slf4j.LoggerFactory;
  * resource found during scanning will be registered. Once a bundle stops the registered resources for that bundle will
  * be unregistered.
  * If the bundle watcher is stopped all bundle resources will be unregistered.
+ * <p>
+ * Scanning, un-registering and notifying the observers is not done on the framework event thread but on a worker
+ * pool, strictly in event order per bundle, so observers always see the removal of a bundle after its addition.
+ * Different bundles are processed in parallel. Use {@link #awaitPendingScans(long, TimeUnit)} to wait for the queued work to be done.
+ * <p>
+ * On start the already active bundles are scanned in parallel (see {@link #setInitialScanParallelism(int)}) and the
+ * observers are notified about them in bundle id order. By default start returns once this initial scan is complete,
+ * see {@link #setWaitForInitialScan(boolean)}. Optionally bundles are scanned ahead once resolved, see
+ * {@link #setPreScan(boolean)}.
+ * <p>
+ * {@link DeltaBundleObserver}s can be notified about the changed entries only, if a bundle starts again shortly after
+ * it stopped, e.g. on update or refresh, see {@link #setUpdateGracePeriod(long, TimeUnit)}. This is off by default.
+ * <p>
+ * The worker pool is created on start and shut down on stop, after the queued work is drained. Use a {@link Builder}
+ * to configure the pool, to use virtual threads or to supply an executor service owned by the caller. Observers that
+ * rather get notified about several bundles at once can be added as {@link BatchingBundleObserver}s.
  *
  * @author Alin Dreghiciu
  * @since October 14, 2007
@@ -70,18 +102,80 @@ public class BundleWatcher<T>
      */
     private final List<BundleObserver<T>> m_observers;
     /**
-     * Mapping between bundle and scanned resources. Cannot be null.
+     * Mapping between bundle and scanned resources. Cannot be null. A bundle is registered by the thread that adds it
+     * and un-registered by the thread that removes it.
      */
-    private Map<Bundle, List<T>> m_mappings;
+    private final ConcurrentMap<Bundle, List<T>> m_mappings;
+    /**
+     * True between start and stop. Bundles are only registered while watching.
+     */
+    private volatile boolean m_watching;
     /**
      * Bundle listener for bundle events. Cannot be null. 
      */
     private BundleListener m_bundleListener;
 
-	/**
-	 * A Service for running multithreaded tasks.
-	 */
-	private final ExecutorService executorService;
+    /**
+     * Executor service supplied by the caller. Null if the watcher creates its own on start.
+     */
+    private final ExecutorService m_suppliedExecutor;
+    /**
+     * Number of pool threads, if the watcher creates its own pool.
+     */
+    private final int m_poolSize;
+    /**
+     * Maximum number of queued tasks of the created pool, 0 for unbounded.
+     */
+    private final int m_queueCapacity;
+    /**
+     * True if the watcher runs each task in a new virtual thread instead of a pool, when supported by the runtime.
+     */
+    private final boolean m_virtualThreads;
+    /**
+     * How long stop waits for queued work and for the executor to terminate, in milliseconds.
+     */
+    private final long m_drainTimeoutMillis;
+    /**
+     * Executor service in use between start and stop. Null while stopped.
+     */
+    private volatile ExecutorService m_executorService;
+    /**
+     * Runs the scanning and un-registering of each bundle serially, in event order, on the executor service.
+     */
+    private final KeyedSerialExecutor m_bundleLanes;
+    /**
+     * Maximum number of bundles scanned in parallel during the initial scan.
+     */
+    private volatile int m_initialScanParallelism;
+    /**
+     * True if start waits for the initial scan to complete.
+     */
+    private volatile boolean m_waitForInitialScan;
+    /**
+     * Released once the initial scan is complete. Null if there was no initial scan yet.
+     */
+    private volatile CountDownLatch m_initialScanDone;
+    /**
+     * True if bundles are scanned ahead, once they get resolved.
+     */
+    private volatile boolean m_preScan;
+    /**
+     * Results of scans done ahead, by bundle. Only accessed from the lane of the bundle and on stop.
+     */
+    private final ConcurrentMap<Bundle, PreScan<T>> m_preScans;
+    /**
+     * Maximum number of results of scans done ahead kept at the same time.
+     */
+    private volatile int m_maxPreScans;
+    /**
+     * Resources of stopped bundles whose removal is held back from the delta observers, by bundle. Only accessed from
+     * the lane of the bundle and on stop.
+     */
+    private final ConcurrentMap<Bundle, List<T>> m_parked;
+    /**
+     * How long the removal of a stopped bundle is held back from the delta observers, in milliseconds.
+     */
+    private volatile long m_updateGraceMillis;
 
     /**
      * Create a new bundle watcher.
@@ -104,6 +198,35 @@ public class BundleWatcher<T>
     public BundleWatcher( final BundleContext context,
                           final BundleScanner<T> scanner,
                           final BundleObserver<T>... observers )
+    {
+        this( context, scanner, (ExecutorService) null, observers );
+    }
+
+    /**
+     * Create a new bundle watcher that runs its work on the given executor service. The executor service is owned by
+     * the caller and is not shut down on stop.
+     *
+     * @param context         a bundle context. Cannot be null.
+     * @param scanner         a bundle scanner. Cannot be null.
+     * @param executorService executor service for scanning and notifications. If null the watcher creates its own.
+     * @param observers       list of observers
+     */
+    public BundleWatcher( final BundleContext context,
+                          final BundleScanner<T> scanner,
+                          final ExecutorService executorService,
+                          final BundleObserver<T>... observers )
+    {
+        this( context, scanner, observers, executorService, 3, 0, false, TimeUnit.SECONDS.toMillis( 60 ) );
+    }
+
+    private BundleWatcher( final BundleContext context,
+                           final BundleScanner<T> scanner,
+                           final BundleObserver<T>[] observers,
+                           final ExecutorService executorService,
+                           final int poolSize,
+                           final int queueCapacity,
+                           final boolean virtualThreads,
+                           final long drainTimeoutMillis )
     {
         LOG.debug( "Creating bundle watcher with scanner [" + scanner + "]..." );
 
@@ -117,38 +240,216 @@ public class BundleWatcher<T>
         {
             m_observers.addAll( Arrays.asList( observers ) );
         }
-        
-        executorService = Executors.newScheduledThreadPool(3, new ThreadFactory() {
+        m_mappings = new ConcurrentHashMap<Bundle, List<T>>();
+        m_suppliedExecutor = executorService;
+        m_poolSize = poolSize;
+        m_queueCapacity = queueCapacity;
+        m_virtualThreads = virtualThreads;
+        m_drainTimeoutMillis = drainTimeoutMillis;
+        m_preScans = new ConcurrentHashMap<Bundle, PreScan<T>>();
+        m_parked = new ConcurrentHashMap<Bundle, List<T>>();
+        m_bundleLanes = new KeyedSerialExecutor( new Executor()
+        {
+            public void execute( final Runnable task )
+            {
+                getExecutorService().execute( task );
+            }
+        }
+        );
+        m_initialScanParallelism = 3;
+        m_waitForInitialScan = true;
+        m_maxPreScans = 256;
+    }
+
+    /**
+     * Sets the maximum number of already active bundles scanned in parallel on start. To be set before start.
+     *
+     * @param parallelism maximum number of parallel scans, at least 1. Defaults to 3.
+     */
+    public void setInitialScanParallelism( final int parallelism )
+    {
+        if( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( "Parallelism must be at least 1" );
+        }
+        m_initialScanParallelism = parallelism;
+    }
+
+    /**
+     * Sets if start returns only after the already active bundles are scanned and the observers are notified, or as
+     * soon as the initial scan is scheduled. To be set before start.
+     *
+     * @param wait true to wait for the initial scan. Defaults to true.
+     */
+    public void setWaitForInitialScan( final boolean wait )
+    {
+        m_waitForInitialScan = wait;
+    }
+
+    /**
+     * Sets if bundles are scanned ahead in the background as soon as they get resolved or their lazy activation
+     * begins, so that on start the observers are notified without waiting for the scan. Results of bundles that get
+     * unresolved, updated or uninstalled before they start are discarded. Fragments are not scanned ahead, as they
+     * never start. Results of bundles that are resolved but never started are kept until the watcher stops, so at
+     * most {@link #setMaxPreScans(int)} results are kept; further resolved bundles are scanned on start. To be set
+     * before start.
+     *
+     * @param preScan true to scan resolved bundles ahead. Defaults to false.
+     */
+    public void setPreScan( final boolean preScan )
+    {
+        m_preScan = preScan;
+    }
+
+    /**
+     * Sets the maximum number of results of scans done ahead that are kept at the same time. See
+     * {@link #setPreScan(boolean)}.
+     *
+     * @param maxPreScans maximum number of kept results, at least 1. Defaults to 256.
+     */
+    public void setMaxPreScans( final int maxPreScans )
+    {
+        if( maxPreScans < 1 )
+        {
+            throw new IllegalArgumentException( "Maximum number of pre-scans must be at least 1" );
+        }
+        m_maxPreScans = maxPreScans;
+    }
 
-			private final AtomicInteger count = new AtomicInteger();
-			
-			public Thread newThread(Runnable r) {
-				final Thread t = Executors.defaultThreadFactory().newThread(r);
-		        t.setName("BundleWatcher" + ": " + count.incrementAndGet());
-		        t.setDaemon(true);
-		        return t;
-			}
-		});
+    /**
+     * Sets how long the removal of a stopped bundle is held back from the {@link DeltaBundleObserver}s, waiting for
+     * the bundle to start again. Other observers are notified right away.
+     * <p>
+     * The watcher cannot tell an update or refresh from a plain stop, so a bundle that is just stopped stays
+     * registered with the delta observers for the whole grace period. Use a grace period only if the delta observers
+     * can tolerate that, and keep it short.
+     *
+     * @param gracePeriod grace period, 0 to notify delta observers about the removal right away. Defaults to 0.
+     * @param unit        unit of grace period. Cannot be null.
+     */
+    public void setUpdateGracePeriod( final long gracePeriod, final TimeUnit unit )
+    {
+        NullArgumentException.validateNotNull( unit, "Time unit" );
+        m_updateGraceMillis = unit.toMillis( gracePeriod );
     }
     
-    void destroy() {
-    	executorService.shutdown();
-        // wait for the queued tasks to execute
-        try {
-        	executorService.awaitTermination(60, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            // ignore
+    /**
+     * Returns the executor service in use.
+     *
+     * @return executor service
+     *
+     * @throws RejectedExecutionException if the watcher is not started, so that the work is done in the calling
+     *                                    thread
+     */
+    private ExecutorService getExecutorService()
+    {
+        final ExecutorService executorService = m_executorService;
+        if( executorService == null )
+        {
+            throw new RejectedExecutionException( "Bundle watcher is not started" );
+        }
+        return executorService;
+    }
+
+    /**
+     * Creates the executor service used between start and stop, if none was supplied.
+     */
+    private ExecutorService createExecutorService()
+    {
+        if( m_suppliedExecutor != null )
+        {
+            return m_suppliedExecutor;
+        }
+        if( m_virtualThreads )
+        {
+            try
+            {
+                // available from Java 21 on
+                return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+            }
+            catch( Exception e )
+            {
+                LOG.warn( "Virtual threads are not supported by this runtime, using a thread pool" );
+            }
+        }
+        final BlockingQueue<Runnable> queue = m_queueCapacity > 0
+                                              ? new ArrayBlockingQueue<Runnable>( m_queueCapacity )
+                                              : new LinkedBlockingQueue<Runnable>();
+        // when the queue is full the task is rejected and then run in the submitting thread
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            m_poolSize, m_poolSize, 60, TimeUnit.SECONDS, queue, new ThreadFactory()
+        {
+            private final AtomicInteger m_count = new AtomicInteger();
+
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread thread = Executors.defaultThreadFactory().newThread( runnable );
+                thread.setName( "BundleWatcher: " + m_count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        }
+        );
+        pool.allowCoreThreadTimeOut( true );
+        return pool;
+    }
+
+    /**
+     * Shuts down the executor service created on start, waiting up to the drain timeout for running tasks.
+     */
+    private void shutdownExecutorService( final ExecutorService executorService )
+    {
+        if( executorService == m_suppliedExecutor )
+        {
+            return;
+        }
+        executorService.shutdown();
+        try
+        {
+            if( !executorService.awaitTermination( m_drainTimeoutMillis, TimeUnit.MILLISECONDS ) )
+            {
+                LOG.warn( "Bundle watcher tasks did not finish in time, interrupting them" );
+                executorService.shutdownNow();
+            }
+        }
+        catch( InterruptedException e )
+        {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
         }
     }
 
 
+    /**
+     * Waits until the scans and un-registrations queued so far are done. Must not be called from an observer.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     *
+     * @return true if all queued work is done, false if the timeout elapsed before
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitPendingScans( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos( timeout );
+        final CountDownLatch initialScanDone = m_initialScanDone;
+        if( initialScanDone != null && !initialScanDone.await( timeout, unit ) )
+        {
+            return false;
+        }
+        return m_bundleLanes.awaitQuiescence( deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+    }
+
     /**
      * Registers a listener for bundle events and scans already active bundles.
      */
     @Override
     protected void onStart()
     {
-        m_mappings = new HashMap<Bundle, List<T>>();
+        m_executorService = createExecutorService();
+        m_watching = true;
         // listen to bundles events
         m_context.addBundleListener( m_bundleListener = new SynchronousBundleListener()
         {
@@ -158,10 +459,27 @@ public class BundleWatcher<T>
                 switch( bundleEvent.getType() )
                 {
                     case BundleEvent.STARTED:
-                        register( bundleEvent.getBundle() );
+                        scheduleRegister( bundleEvent.getBundle() );
                         break;
                     case BundleEvent.STOPPED:
-                        unregister( bundleEvent.getBundle() );
+                        scheduleUnregister( bundleEvent.getBundle(), true );
+                        break;
+                    case BundleEvent.RESOLVED:
+                    case BundleEvent.LAZY_ACTIVATION:
+                        if( m_preScan )
+                        {
+                            schedulePreScan( bundleEvent.getBundle() );
+                        }
+                        break;
+                    case BundleEvent.UNRESOLVED:
+                    case BundleEvent.UPDATED:
+                        if( m_preScan )
+                        {
+                            scheduleDiscardPreScan( bundleEvent.getBundle() );
+                        }
+                        break;
+                    case BundleEvent.UNINSTALLED:
+                        scheduleDiscard( bundleEvent.getBundle() );
                         break;
                 }
             }
@@ -170,6 +488,7 @@ public class BundleWatcher<T>
         );
 
         // scan already started bundles
+        final List<Bundle> active = new ArrayList<Bundle>();
         Bundle[] bundles = m_context.getBundles();
         if( bundles != null )
         {
@@ -177,86 +496,525 @@ public class BundleWatcher<T>
             {
                 if( bundle.getState() == Bundle.ACTIVE )
                 {
-                    register( bundle );
+                    active.add( bundle );
+                }
+            }
+        }
+        Collections.sort( active, new Comparator<Bundle>()
+        {
+            public int compare( final Bundle b1, final Bundle b2 )
+            {
+                return Long.compare( b1.getBundleId(), b2.getBundleId() );
+            }
+        }
+        );
+        final CountDownLatch initialScanDone = new CountDownLatch( 1 );
+        m_initialScanDone = initialScanDone;
+        final Runnable initialScan = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    initialScan( active );
+                }
+                finally
+                {
+                    initialScanDone.countDown();
+                }
+            }
+        };
+        if( m_waitForInitialScan )
+        {
+            initialScan.run();
+        }
+        else
+        {
+            // the initial scan waits for the pool, so it does not run on the pool itself
+            final Thread thread = new Thread( initialScan, "BundleWatcher: initial scan" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+    }
+
+    /**
+     * Scans the given bundles in parallel and registers the results in the order of the list. Each registration is
+     * done in the lane of the bundle, so it is ordered with the events of the bundle received in the meantime.
+     *
+     * @param bundles bundles to scan
+     */
+    private void initialScan( final List<Bundle> bundles )
+    {
+        final List<CompletableFuture<List<T>>> results = new ArrayList<CompletableFuture<List<T>>>( bundles.size() );
+        for( int i = 0; i < bundles.size(); i++ )
+        {
+            results.add( new CompletableFuture<List<T>>() );
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final Runnable worker = new Runnable()
+        {
+            public void run()
+            {
+                int index;
+                while( ( index = next.getAndIncrement() ) < bundles.size() )
+                {
+                    try
+                    {
+                        LOG.debug( "Scanning bundle [" + bundles.get( index ).getSymbolicName() + "]" );
+                        results.get( index ).complete( m_scanner.scan( bundles.get( index ) ) );
+                    }
+                    catch( Throwable t )
+                    {
+                        results.get( index ).completeExceptionally( t );
+                    }
+                }
+            }
+        };
+        final int workers = Math.min( m_initialScanParallelism, bundles.size() );
+        for( int i = 0; i < workers; i++ )
+        {
+            try
+            {
+                getExecutorService().execute( worker );
+            }
+            catch( RejectedExecutionException e )
+            {
+                worker.run();
+            }
+        }
+        for( int i = 0; i < bundles.size(); i++ )
+        {
+            final Bundle bundle = bundles.get( i );
+            final List<T> scanned;
+            try
+            {
+                scanned = results.get( i ).get();
+            }
+            catch( ExecutionException e )
+            {
+                LOG.error( "Ignored exception during scan of bundle [" + bundle.getSymbolicName() + "]", e.getCause() );
+                continue;
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            final CountDownLatch registered = new CountDownLatch( 1 );
+            m_bundleLanes.execute( bundle, new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        // skip bundles stopped in the meantime
+                        if( bundle.getState() == Bundle.ACTIVE )
+                        {
+                            register( bundle, scanned );
+                        }
+                    }
+                    finally
+                    {
+                        registered.countDown();
+                    }
                 }
             }
+            );
+            try
+            {
+                registered.await();
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
     /**
-     * Un-register the bundle listener, releases resources
+     * Un-register the bundle listener, releases resources. The executor service created on start is shut down.
      */
     @Override
     protected void onStop()
     {
         m_context.removeBundleListener( m_bundleListener );
-        final Bundle[] toBeRemoved = m_mappings.keySet().toArray( new Bundle[m_mappings.keySet().size()] );
-        for( Bundle bundle : toBeRemoved )
+        try
+        {
+            // let already queued scans finish so that their resources are un-registered below
+            if( !awaitPendingScans( m_drainTimeoutMillis, TimeUnit.MILLISECONDS ) )
+            {
+                LOG.warn( "Pending bundle scans did not finish in time" );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        m_watching = false;
+        // un-register in the lanes as well, so that it is ordered after any work still running
+        for( Bundle bundle : m_mappings.keySet() )
+        {
+            scheduleUnregister( bundle, false );
+        }
+        try
+        {
+            if( !m_bundleLanes.awaitQuiescence( m_drainTimeoutMillis, TimeUnit.MILLISECONDS ) )
+            {
+                LOG.warn( "Bundle un-registrations did not finish in time" );
+            }
+        }
+        catch( InterruptedException e )
         {
-            unregister( bundle );
+            Thread.currentThread().interrupt();
         }
 
+        for( Bundle bundle : m_parked.keySet() )
+        {
+            releaseParked( bundle );
+        }
+        m_preScans.clear();
         m_bundleListener = null;
-        m_mappings = null;
+        final ExecutorService executorService = m_executorService;
+        m_executorService = null;
+        shutdownExecutorService( executorService );
+        // pass on what is left of the pending batches
+        for( BundleObserver<T> observer : m_observers )
+        {
+            if( observer instanceof BatchingBundleObserverAdapter )
+            {
+                ( (BatchingBundleObserverAdapter<T>) observer ).flush();
+            }
+        }
+    }
+
+    /**
+     * Queues the registration of a bundle in the lane of the bundle.
+     *
+     * @param bundle registered bundle
+     */
+    private void scheduleRegister( final Bundle bundle )
+    {
+        m_bundleLanes.execute( bundle, new Runnable()
+        {
+            public void run()
+            {
+                register( bundle );
+            }
+        }
+        );
+    }
+
+    /**
+     * Queues the un-registration of a bundle in the lane of the bundle.
+     *
+     * @param bundle un-registered bundle
+     * @param park   true if the removal may be held back from the delta observers
+     */
+    private void scheduleUnregister( final Bundle bundle, final boolean park )
+    {
+        m_bundleLanes.execute( bundle, new Runnable()
+        {
+            public void run()
+            {
+                unregister( bundle, park );
+            }
+        }
+        );
+    }
+
+    /**
+     * Queues discarding everything kept for an uninstalled bundle in the lane of the bundle.
+     *
+     * @param bundle uninstalled bundle
+     */
+    private void scheduleDiscard( final Bundle bundle )
+    {
+        m_bundleLanes.execute( bundle, new Runnable()
+        {
+            public void run()
+            {
+                m_preScans.remove( bundle );
+                releaseParked( bundle );
+            }
+        }
+        );
+    }
+
+    /**
+     * Queues a scan ahead of start in the lane of the bundle.
+     *
+     * @param bundle resolved bundle
+     */
+    private void schedulePreScan( final Bundle bundle )
+    {
+        m_bundleLanes.execute( bundle, new Runnable()
+        {
+            public void run()
+            {
+                if( !m_watching || m_mappings.containsKey( bundle ) || m_preScans.containsKey( bundle ) )
+                {
+                    return;
+                }
+                if( m_preScans.size() >= m_maxPreScans || isFragment( bundle ) )
+                {
+                    // bounded as results of bundles that never start are kept; fragments never start
+                    return;
+                }
+                final long lastModified = bundle.getLastModified();
+                LOG.debug( "Scanning resolved bundle [" + bundle.getSymbolicName() + "] ahead" );
+                m_preScans.put( bundle, new PreScan<T>( lastModified, m_scanner.scan( bundle ) ) );
+            }
+        }
+        );
+    }
+
+    private static boolean isFragment( final Bundle bundle )
+    {
+        final BundleRevision revision = bundle.adapt( BundleRevision.class );
+        if( revision != null )
+        {
+            return ( revision.getTypes() & BundleRevision.TYPE_FRAGMENT ) != 0;
+        }
+        final Dictionary<String, String> headers = bundle.getHeaders( "" );
+        return headers != null && headers.get( Constants.FRAGMENT_HOST ) != null;
+    }
+
+    /**
+     * Queues discarding the result of a scan ahead in the lane of the bundle.
+     *
+     * @param bundle unresolved, updated or uninstalled bundle
+     */
+    private void scheduleDiscardPreScan( final Bundle bundle )
+    {
+        m_bundleLanes.execute( bundle, new Runnable()
+        {
+            public void run()
+            {
+                m_preScans.remove( bundle );
+            }
+        }
+        );
     }
 
     /**
      * Scans entries using the bundle scanner and registers the result of scanning process.
      * Then notify the observers. If an exception appears during notification, it is ignored.
+     * The result of a scan ahead is used instead if the bundle did not change since.
      *
      * @param bundle registered bundle
      */
     private void register( final Bundle bundle )
     {
+        final PreScan<T> preScan = m_preScans.remove( bundle );
+        if( !m_watching || m_mappings.containsKey( bundle ) )
+        {
+            // watcher was stopped meanwhile or bundle is already registered
+            return;
+        }
+        if( preScan != null && preScan.lastModified == bundle.getLastModified() )
+        {
+            register( bundle, preScan.entries );
+            return;
+        }
         LOG.debug( "Scanning bundle [" + bundle.getSymbolicName() + "]" );
-        final List<T> resources = m_scanner.scan( bundle );
-        m_mappings.put( bundle, resources );
-        if( resources != null && resources.size() > 0 )
+        register( bundle, m_scanner.scan( bundle ) );
+    }
+
+    /**
+     * Registers the result of scanning process. Then notify the observers. If an exception appears during
+     * notification, it is ignored.
+     *
+     * @param bundle  registered bundle
+     * @param scanned scanned resources
+     */
+    private void register( final Bundle bundle, final List<T> scanned )
+    {
+        final List<T> resources = scanned == null ? Collections.<T>emptyList() : scanned;
+        if( !m_watching || m_mappings.putIfAbsent( bundle, resources ) != null )
+        {
+            // watcher was stopped meanwhile or bundle is already registered
+            return;
+        }
+        if( !m_watching )
+        {
+            // stopped while registering, un-register unless already done by stop
+            m_mappings.remove( bundle, resources );
+            return;
+        }
+        final List<T> parked = m_parked.remove( bundle );
+        List<T> added = null;
+        List<T> removed = null;
+        if( parked != null )
+        {
+            added = new ArrayList<T>();
+            removed = new ArrayList<T>();
+            diff( parked, resources, added, removed );
+        }
+        if( resources.size() > 0 )
         {
             LOG.debug( "Found resources " + resources );
-		            for( final BundleObserver<T> observer : m_observers )
-		            {
-		                try
-		                {
-		                	//here the executor service completes the job in an extra thread. 
-		                	executorService.submit(new Runnable() {
-		                		public void run() {
-		                		    try 
-		                		    {
-		                		        observer.addingEntries( bundle, Collections.unmodifiableList( resources ) );
-		                		    }
-		                		    catch (Throwable t)
-		                		    {
-		                		        LOG.error( "Exception in executor thread", t );
-		                		    }
-		                		}
-		                	});
-		                }
-		                catch( Throwable ignore )
-		                {
-		                    LOG.error( "Ignored exception during register", ignore );
-		                }
-		            }
+        }
+        for( BundleObserver<T> observer : m_observers )
+        {
+            try
+            {
+                if( parked != null && observer instanceof DeltaBundleObserver )
+                {
+                    if( added.size() > 0 || removed.size() > 0 )
+                    {
+                        ( (DeltaBundleObserver<T>) observer ).entriesChanged(
+                            bundle, Collections.unmodifiableList( added ), Collections.unmodifiableList( removed )
+                        );
+                    }
+                }
+                else if( resources.size() > 0 )
+                {
+                    observer.addingEntries( bundle, Collections.unmodifiableList( resources ) );
+                }
+            }
+            catch( Throwable ignore )
+            {
+                LOG.error( "Ignored exception during register", ignore );
+            }
+        }
+    }
+
+    /**
+     * Computes the entries added and removed between two scans of a bundle. Duplicate entries are counted.
+     *
+     * @param before  entries before
+     * @param after   entries after
+     * @param added   filled with the entries in after but not in before
+     * @param removed filled with the entries in before but not in after
+     */
+    private static <T> void diff( final List<T> before,
+                                  final List<T> after,
+                                  final List<T> added,
+                                  final List<T> removed )
+    {
+        final Map<Object, Integer> remaining = new HashMap<Object, Integer>();
+        for( T entry : before )
+        {
+            final Integer count = remaining.get( diffKey( entry ) );
+            remaining.put( diffKey( entry ), count == null ? 1 : count + 1 );
+        }
+        for( T entry : after )
+        {
+            final Integer count = remaining.get( diffKey( entry ) );
+            if( count == null || count == 0 )
+            {
+                added.add( entry );
+            }
+            else
+            {
+                remaining.put( diffKey( entry ), count - 1 );
+            }
+        }
+        for( T entry : before )
+        {
+            final Integer count = remaining.get( diffKey( entry ) );
+            if( count > 0 )
+            {
+                removed.add( entry );
+                remaining.put( diffKey( entry ), count - 1 );
+            }
         }
     }
 
+    /**
+     * URLs are compared via their protocol, port and file, as {@link URL#equals(Object)} may resolve host names and
+     * frameworks put the bundle revision into the host of bundle entry URLs, e.g.
+     * {@code bundle://<id>.<revision>:<classpath index>/path} on Felix, so the same entry has another URL after an
+     * update.
+     */
+    private static Object diffKey( final Object entry )
+    {
+        if( entry instanceof URL )
+        {
+            final URL url = (URL) entry;
+            return url.getProtocol() + ":" + url.getPort() + ":" + url.getFile();
+        }
+        return entry;
+    }
+
     /**
      * Un-registers each entry from the unregistered bundle by first notifying the observers. If an exception appears
-     * during notification, it is ignored.
+     * during notification, it is ignored. If parking, the delta observers are notified only once the grace period
+     * elapsed without the bundle being started again.
      *
      * @param bundle the un-registred bundle
+     * @param park   true if the removal may be held back from the delta observers
      */
-    private void unregister( final Bundle bundle )
+    private void unregister( final Bundle bundle, final boolean park )
     {
     	if (bundle == null)
     		return; // no need to go any further, system probably stopped. 
+        final List<T> resources = m_mappings.remove( bundle );
+        if( resources == null )
+        {
+            // not registered or already un-registered by another thread
+            return;
+        }
         LOG.debug( "Releasing bundle [" + bundle.getSymbolicName() + "]" );
-        final List<T> resources = m_mappings.get( bundle );
-        if( resources != null && resources.size() > 0 )
+        final boolean parking = park && m_watching && m_updateGraceMillis > 0 && hasDeltaObservers();
+        if( parking )
+        {
+            m_parked.put( bundle, resources );
+            CompletableFuture.runAsync( new Runnable()
+            {
+                public void run()
+                {
+                    m_bundleLanes.execute( bundle, new Runnable()
+                    {
+                        public void run()
+                        {
+                            if( m_parked.get( bundle ) == resources )
+                            {
+                                releaseParked( bundle );
+                            }
+                        }
+                    }
+                    );
+                }
+            }, CompletableFuture.delayedExecutor( m_updateGraceMillis, TimeUnit.MILLISECONDS ) );
+        }
+        notifyRemoving( bundle, resources, !parking );
+    }
+
+    /**
+     * Notifies the delta observers about the removal of a stopped bundle that did not start again.
+     *
+     * @param bundle stopped bundle
+     */
+    private void releaseParked( final Bundle bundle )
+    {
+        final List<T> resources = m_parked.remove( bundle );
+        if( resources != null )
+        {
+            LOG.debug( "Releasing parked bundle [" + bundle.getSymbolicName() + "]" );
+            notifyRemoving( bundle, resources, true );
+        }
+    }
+
+    /**
+     * Notifies the observers about removed resources.
+     *
+     * @param bundle    the un-registered bundle
+     * @param resources removed resources
+     * @param delta     true if delta observers are notified, false if they are skipped
+     */
+    private void notifyRemoving( final Bundle bundle, final List<T> resources, final boolean delta )
+    {
+        if( resources.size() > 0 )
         {
             LOG.debug( "Un-registering " + resources );
             for( BundleObserver<T> observer : m_observers )
             {
+                if( !delta && observer instanceof DeltaBundleObserver )
+                {
+                    continue;
+                }
                 try
                 {
                     observer.removingEntries( bundle, Collections.unmodifiableList( resources ) );
@@ -267,7 +1025,290 @@ public class BundleWatcher<T>
                 }
             }
         }
-        m_mappings.remove( bundle );
+    }
+
+    private boolean hasDeltaObservers()
+    {
+        for( BundleObserver<T> observer : m_observers )
+        {
+            if( observer instanceof DeltaBundleObserver )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Result of a scan done ahead of start.
+     */
+    private static final class PreScan<T>
+    {
+
+        /**
+         * Last modification of the bundle when scanned.
+         */
+        final long lastModified;
+        /**
+         * Scanned entries. Can be null.
+         */
+        final List<T> entries;
+
+        PreScan( final long lastModified, final List<T> entries )
+        {
+            this.lastModified = lastModified;
+            this.entries = entries;
+        }
+
+    }
+
+    /**
+     * Builder of bundle watchers, for configuring the executor the work is done on.
+     *
+     * @param <T> type of scanned entries
+     *
+     * @since 1.9.1
+     */
+    public static class Builder<T>
+    {
+
+        private final BundleContext m_context;
+        private final BundleScanner<T> m_scanner;
+        private final List<BundleObserver<T>> m_observers;
+        private ExecutorService m_executorService;
+        private int m_poolSize;
+        private int m_queueCapacity;
+        private boolean m_virtualThreads;
+        private long m_drainTimeoutMillis;
+        private int m_initialScanParallelism;
+        private boolean m_waitForInitialScan;
+        private boolean m_preScan;
+        private int m_maxPreScans;
+        private long m_updateGraceMillis;
+
+        /**
+         * Creates a builder.
+         *
+         * @param context a bundle context. Cannot be null.
+         * @param scanner a bundle scanner. Cannot be null.
+         */
+        public Builder( final BundleContext context, final BundleScanner<T> scanner )
+        {
+            NullArgumentException.validateNotNull( context, "Context" );
+            NullArgumentException.validateNotNull( scanner, "Bundle scanner" );
+            m_context = context;
+            m_scanner = scanner;
+            m_observers = new ArrayList<BundleObserver<T>>();
+            m_poolSize = 3;
+            m_drainTimeoutMillis = TimeUnit.SECONDS.toMillis( 60 );
+            m_maxPreScans = 256;
+            m_initialScanParallelism = 3;
+            m_waitForInitialScan = true;
+        }
+
+        /**
+         * Adds an observer.
+         *
+         * @param observer observer to add. Cannot be null.
+         *
+         * @return this builder
+         */
+        public Builder<T> observer( final BundleObserver<T> observer )
+        {
+            NullArgumentException.validateNotNull( observer, "Observer" );
+            m_observers.add( observer );
+            return this;
+        }
+
+        /**
+         * Adds an observer that gets notified in batches.
+         *
+         * @param observer     observer to add. Cannot be null.
+         * @param window       time window a batch is gathered in
+         * @param unit         unit of time window. Cannot be null.
+         * @param maxBatchSize maximum number of bundles in a batch, at least 1
+         *
+         * @return this builder
+         *
+         * @see BatchingBundleObserverAdapter
+         */
+        public Builder<T> batchingObserver( final BatchingBundleObserver<T> observer,
+                                            final long window,
+                                            final TimeUnit unit,
+                                            final int maxBatchSize )
+        {
+            return observer( new BatchingBundleObserverAdapter<T>( observer, window, unit, maxBatchSize ) );
+        }
+
+        /**
+         * Sets an executor service owned by the caller. It is not shut down on stop. Overrides the pool settings.
+         *
+         * @param executorService executor service. Null to let the watcher create its own.
+         *
+         * @return this builder
+         */
+        public Builder<T> executorService( final ExecutorService executorService )
+        {
+            m_executorService = executorService;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads of the pool created on start.
+         *
+         * @param poolSize number of threads, at least 1. Defaults to 3.
+         *
+         * @return this builder
+         */
+        public Builder<T> poolSize( final int poolSize )
+        {
+            if( poolSize < 1 )
+            {
+                throw new IllegalArgumentException( "Pool size must be at least 1" );
+            }
+            m_poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Bounds the queue of the pool created on start. Work that does not fit into the queue is done in the
+         * submitting thread, usually the framework event thread, which slows down the event source.
+         *
+         * @param queueCapacity maximum number of queued tasks, 0 for unbounded. Defaults to 0.
+         *
+         * @return this builder
+         */
+        public Builder<T> queueCapacity( final int queueCapacity )
+        {
+            if( queueCapacity < 0 )
+            {
+                throw new IllegalArgumentException( "Queue capacity must not be negative" );
+            }
+            m_queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Runs each task in a new virtual thread instead of a pool. Falls back to the pool if the runtime does not
+         * support virtual threads.
+         *
+         * @param virtualThreads true to use virtual threads. Defaults to false.
+         *
+         * @return this builder
+         */
+        public Builder<T> virtualThreads( final boolean virtualThreads )
+        {
+            m_virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Sets how long stop waits for the queued work and for the created executor to terminate. Tasks still running
+         * afterwards are interrupted.
+         *
+         * @param timeout drain timeout
+         * @param unit    unit of timeout. Cannot be null.
+         *
+         * @return this builder
+         */
+        public Builder<T> drainTimeout( final long timeout, final TimeUnit unit )
+        {
+            NullArgumentException.validateNotNull( unit, "Time unit" );
+            m_drainTimeoutMillis = unit.toMillis( timeout );
+            return this;
+        }
+
+        /**
+         * @param parallelism maximum number of parallel scans on start
+         *
+         * @return this builder
+         *
+         * @see BundleWatcher#setInitialScanParallelism(int)
+         */
+        public Builder<T> initialScanParallelism( final int parallelism )
+        {
+            if( parallelism < 1 )
+            {
+                throw new IllegalArgumentException( "Parallelism must be at least 1" );
+            }
+            m_initialScanParallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param wait true to wait for the initial scan on start
+         *
+         * @return this builder
+         *
+         * @see BundleWatcher#setWaitForInitialScan(boolean)
+         */
+        public Builder<T> waitForInitialScan( final boolean wait )
+        {
+            m_waitForInitialScan = wait;
+            return this;
+        }
+
+        /**
+         * @param preScan true to scan resolved bundles ahead
+         *
+         * @return this builder
+         *
+         * @see BundleWatcher#setPreScan(boolean)
+         */
+        public Builder<T> preScan( final boolean preScan )
+        {
+            m_preScan = preScan;
+            return this;
+        }
+
+        /**
+         * @param maxPreScans maximum number of kept results of scans done ahead, at least 1
+         *
+         * @return this builder
+         *
+         * @see BundleWatcher#setMaxPreScans(int)
+         */
+        public Builder<T> maxPreScans( final int maxPreScans )
+        {
+            m_maxPreScans = maxPreScans;
+            return this;
+        }
+
+        /**
+         * @param gracePeriod grace period
+         * @param unit        unit of grace period. Cannot be null.
+         *
+         * @return this builder
+         *
+         * @see BundleWatcher#setUpdateGracePeriod(long, TimeUnit)
+         */
+        public Builder<T> updateGracePeriod( final long gracePeriod, final TimeUnit unit )
+        {
+            NullArgumentException.validateNotNull( unit, "Time unit" );
+            m_updateGraceMillis = unit.toMillis( gracePeriod );
+            return this;
+        }
+
+        /**
+         * Creates the bundle watcher.
+         *
+         * @return created bundle watcher, not started
+         */
+        @SuppressWarnings( "unchecked" )
+        public BundleWatcher<T> build()
+        {
+            final BundleWatcher<T> watcher = new BundleWatcher<T>(
+                m_context, m_scanner, m_observers.toArray( new BundleObserver[m_observers.size()] ),
+                m_executorService, m_poolSize, m_queueCapacity, m_virtualThreads, m_drainTimeoutMillis
+            );
+            watcher.setInitialScanParallelism( m_initialScanParallelism );
+            watcher.setWaitForInitialScan( m_waitForInitialScan );
+            watcher.setPreScan( m_preScan );
+            watcher.setMaxPreScans( m_maxPreScans );
+            watcher.setUpdateGracePeriod( m_updateGraceMillis, TimeUnit.MILLISECONDS );
+            return watcher;
+        }
+
     }
 
 }
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches bundles life cycle events on behalf of many extenders, as a replacement for one {@link BundleWatcher} per
+ * extender. There is only one bundle listener, the headers of a started bundle are read only once per event and all
+ * registered scanners scan the bundle in parallel. The results are passed to the observers of each registration.
+ * <p>
+ * As with {@link BundleWatcher} the work is not done on the framework event thread but on a worker pool, strictly in
+ * event order per bundle. Scanners implementing {@link HeaderAwareBundleScanner} get the shared header snapshot.
+ * <p>
+ * Typical usage, e.g. from the activator of a bundle providing the hub as a service to the extenders:
+ * <pre>
+ * final BundleWatcherHub hub = new BundleWatcherHub( context );
+ * hub.open();
+ * final BundleWatcherHub.Registration registration = hub.register( scanner, observer );
+ * ...
+ * registration.unregister();
+ * hub.close();
+ * </pre>
+ *
+ * @since 1.9.1
+ */
+public class BundleWatcherHub
+{
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger( BundleWatcherHub.class );
+
+    /**
+     * Registration of a skipped scan.
+     */
+    private static final Runnable NOOP = new Runnable()
+    {
+        public void run()
+        {
+            // nothing to register
+        }
+    };
+
+    /**
+     * Bundle context used to list bundles and register the listener. Cannot be null.
+     */
+    private final BundleContext m_context;
+    /**
+     * Number of pool threads.
+     */
+    private final int m_poolSize;
+    /**
+     * Registered scanners and observers, in registration order.
+     */
+    private final List<Registration<?>> m_registrations;
+    /**
+     * Runs the work of each bundle serially, in event order, on the executor service.
+     */
+    private final KeyedSerialExecutor m_bundleLanes;
+    /**
+     * Executor service in use while open. Null while closed.
+     */
+    private volatile ExecutorService m_executorService;
+    /**
+     * Listener for bundle events. Null if the hub is not open.
+     */
+    private SynchronousBundleListener m_listener;
+    /**
+     * True while open. Cleared first on close, so that scans finishing during or after close, e.g. of events delivered
+     * while closing, do not register entries anymore.
+     */
+    private volatile boolean m_open;
+    /**
+     * How long close and un-register wait for the queued work, in milliseconds.
+     */
+    private volatile long m_drainTimeoutMillis;
+
+    /**
+     * Creates a hub with a pool of 3 threads. The hub must be opened before use.
+     *
+     * @param context bundle context. Cannot be null.
+     */
+    public BundleWatcherHub( final BundleContext context )
+    {
+        this( context, 3 );
+    }
+
+    /**
+     * Creates a hub. The hub must be opened before use.
+     *
+     * @param context  bundle context. Cannot be null.
+     * @param poolSize number of threads scanning bundles, at least 1
+     */
+    public BundleWatcherHub( final BundleContext context, final int poolSize )
+    {
+        NullArgumentException.validateNotNull( context, "Context" );
+        if( poolSize < 1 )
+        {
+            throw new IllegalArgumentException( "Pool size must be at least 1" );
+        }
+        m_context = context;
+        m_poolSize = poolSize;
+        m_registrations = new CopyOnWriteArrayList<Registration<?>>();
+        m_drainTimeoutMillis = TimeUnit.SECONDS.toMillis( 60 );
+        m_bundleLanes = new KeyedSerialExecutor( new Executor()
+        {
+            public void execute( final Runnable task )
+            {
+                final ExecutorService executorService = m_executorService;
+                if( executorService == null )
+                {
+                    throw new RejectedExecutionException( "Hub is not open" );
+                }
+                executorService.execute( task );
+            }
+        }
+        );
+    }
+
+    /**
+     * Sets how long {@link #close()} and {@link Registration#unregister()} wait for the queued work to be done.
+     *
+     * @param timeout maximum time to wait. Defaults to 60 seconds.
+     * @param unit    unit of timeout. Cannot be null.
+     */
+    public void setDrainTimeout( final long timeout, final TimeUnit unit )
+    {
+        NullArgumentException.validateNotNull( unit, "Time unit" );
+        m_drainTimeoutMillis = unit.toMillis( timeout );
+    }
+
+    /**
+     * Starts the worker pool and registers the bundle listener. Has no effect if already open.
+     */
+    public synchronized void open()
+    {
+        if( m_listener != null )
+        {
+            return;
+        }
+        m_executorService = Executors.newFixedThreadPool( m_poolSize, new ThreadFactory()
+        {
+            private final AtomicInteger m_count = new AtomicInteger();
+
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread thread = Executors.defaultThreadFactory().newThread( runnable );
+                thread.setName( "BundleWatcherHub: " + m_count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        }
+        );
+        m_listener = new SynchronousBundleListener()
+        {
+            public void bundleChanged( final BundleEvent event )
+            {
+                if( !m_open )
+                {
+                    // delivered while closing
+                    return;
+                }
+                final Bundle bundle = event.getBundle();
+                switch( event.getType() )
+                {
+                    case BundleEvent.STARTED:
+                        m_bundleLanes.execute( bundle, new Runnable()
+                        {
+                            public void run()
+                            {
+                                started( bundle, m_registrations );
+                            }
+                        }
+                        );
+                        break;
+                    case BundleEvent.STOPPED:
+                        m_bundleLanes.execute( bundle, new Runnable()
+                        {
+                            public void run()
+                            {
+                                for( Registration<?> registration : m_registrations )
+                                {
+                                    registration.unregister( bundle );
+                                }
+                            }
+                        }
+                        );
+                        break;
+                }
+            }
+        };
+        m_open = true;
+        m_context.addBundleListener( m_listener );
+        for( Registration<?> registration : m_registrations )
+        {
+            scanActive( registration );
+        }
+    }
+
+    /**
+     * Un-registers the bundle listener, notifies the observers about the removal of all bundles and stops the worker
+     * pool. Waits at most the drain timeout for the queued work, see {@link #setDrainTimeout(long, TimeUnit)}. Scans
+     * still running then do not register their entries. The registrations are kept, so the hub can be opened again.
+     */
+    public synchronized void close()
+    {
+        if( m_listener == null )
+        {
+            return;
+        }
+        m_open = false;
+        m_context.removeBundleListener( m_listener );
+        m_listener = null;
+        // let already queued work finish, so that un-registering below does not overlap with it
+        awaitLanes();
+        for( Registration<?> registration : m_registrations )
+        {
+            unregisterAll( registration );
+        }
+        awaitLanes();
+        final ExecutorService executorService = m_executorService;
+        m_executorService = null;
+        executorService.shutdown();
+    }
+
+    /**
+     * Registers a scanner and its observers. If the hub is open, the already active bundles are scanned right away.
+     *
+     * @param scanner   bundle scanner. Cannot be null.
+     * @param observers observers for scanned entries
+     *
+     * @return registration, to un-register the scanner
+     */
+    public <T> Registration<T> register( final BundleScanner<T> scanner, final BundleObserver<T>... observers )
+    {
+        NullArgumentException.validateNotNull( scanner, "Bundle scanner" );
+        final Registration<T> registration = new Registration<T>( scanner, observers );
+        synchronized( this )
+        {
+            m_registrations.add( registration );
+            if( m_listener != null )
+            {
+                scanActive( registration );
+            }
+        }
+        return registration;
+    }
+
+    /**
+     * Waits until the work queued so far is done. Must not be called from an observer.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     *
+     * @return true if all queued work is done, false if the timeout elapsed before
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitPendingScans( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        return m_bundleLanes.awaitQuiescence( timeout, unit );
+    }
+
+    /**
+     * Queues the scan of the active bundles for one registration.
+     */
+    private void scanActive( final Registration<?> registration )
+    {
+        final Bundle[] bundles = m_context.getBundles();
+        if( bundles == null )
+        {
+            return;
+        }
+        final List<Registration<?>> registrations = Collections.<Registration<?>>singletonList( registration );
+        for( final Bundle bundle : bundles )
+        {
+            if( bundle.getState() == Bundle.ACTIVE )
+            {
+                m_bundleLanes.execute( bundle, new Runnable()
+                {
+                    public void run()
+                    {
+                        // skip bundles stopped in the meantime
+                        if( bundle.getState() == Bundle.ACTIVE )
+                        {
+                            started( bundle, registrations );
+                        }
+                    }
+                }
+                );
+            }
+        }
+    }
+
+    /**
+     * Queues the removal of all bundles of one registration.
+     */
+    private void unregisterAll( final Registration<?> registration )
+    {
+        for( final Bundle bundle : registration.m_mappings.keySet() )
+        {
+            m_bundleLanes.execute( bundle, new Runnable()
+            {
+                public void run()
+                {
+                    registration.unregister( bundle );
+                }
+            }
+            );
+        }
+    }
+
+    private void awaitLanes()
+    {
+        try
+        {
+            if( !m_bundleLanes.awaitQuiescence( m_drainTimeoutMillis, TimeUnit.MILLISECONDS ) )
+            {
+                LOG.warn( "Pending bundle scans did not finish in time" );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Scans a started bundle with the scanners of the given registrations in parallel and then notifies the observers
+     * in registration order. Runs in the lane of the bundle.
+     */
+    private void started( final Bundle bundle, final List<Registration<?>> registrations )
+    {
+        if( registrations.isEmpty() )
+        {
+            return;
+        }
+        final Dictionary<String, String> headers = bundle.getHeaders();
+        final List<FutureTask<Runnable>> scans = new ArrayList<FutureTask<Runnable>>( registrations.size() );
+        for( Registration<?> registration : registrations )
+        {
+            final FutureTask<Runnable> scan = registration.scan( bundle, headers );
+            scans.add( scan );
+            if( scans.size() < registrations.size() )
+            {
+                try
+                {
+                    m_executorService.execute( scan );
+                }
+                catch( Exception ignore )
+                {
+                    // stopped or saturated, is run below
+                }
+            }
+        }
+        // help with the scans not picked up by the pool yet, so that a busy pool cannot dead lock
+        for( FutureTask<Runnable> scan : scans )
+        {
+            scan.run();
+        }
+        for( int i = 0; i < scans.size(); i++ )
+        {
+            try
+            {
+                scans.get( i ).get().run();
+            }
+            catch( ExecutionException e )
+            {
+                LOG.error( "Ignored exception during scan of bundle [" + bundle.getSymbolicName() + "]", e.getCause() );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Registration of a scanner and its observers.
+     *
+     * @param <T> type of scanned entries
+     */
+    public final class Registration<T>
+    {
+
+        /**
+         * Bundle scanner. Cannot be null.
+         */
+        private final BundleScanner<T> m_scanner;
+        /**
+         * Observers for scanned entries. Cannot be null but can be empty.
+         */
+        private final List<BundleObserver<T>> m_observers;
+        /**
+         * Mapping between bundle and scanned resources.
+         */
+        private final ConcurrentMap<Bundle, List<T>> m_mappings;
+        /**
+         * True until un-registered.
+         */
+        private volatile boolean m_registered;
+
+        Registration( final BundleScanner<T> scanner, final BundleObserver<T>[] observers )
+        {
+            m_scanner = scanner;
+            m_observers = new ArrayList<BundleObserver<T>>();
+            if( observers != null )
+            {
+                m_observers.addAll( Arrays.asList( observers ) );
+            }
+            m_mappings = new ConcurrentHashMap<Bundle, List<T>>();
+            m_registered = true;
+        }
+
+        /**
+         * Un-registers the scanner. The observers are notified about the removal of the scanned bundles before this
+         * method returns. Must not be called from an observer.
+         */
+        public void unregister()
+        {
+            synchronized( BundleWatcherHub.this )
+            {
+                if( !m_registered )
+                {
+                    return;
+                }
+                m_registered = false;
+                m_registrations.remove( this );
+                unregisterAll( this );
+            }
+            awaitLanes();
+        }
+
+        /**
+         * Creates the scan task of a bundle. The task returns the registration of the result.
+         */
+        FutureTask<Runnable> scan( final Bundle bundle, final Dictionary<String, String> headers )
+        {
+            return new FutureTask<Runnable>( new Callable<Runnable>()
+            {
+                public Runnable call()
+                {
+                    if( !m_registered || m_mappings.containsKey( bundle ) )
+                    {
+                        return NOOP;
+                    }
+                    LOG.debug( "Scanning bundle [" + bundle.getSymbolicName() + "]" );
+                    final List<T> scanned = m_scanner instanceof HeaderAwareBundleScanner
+                                            ? ( (HeaderAwareBundleScanner<T>) m_scanner ).scan( bundle, headers )
+                                            : m_scanner.scan( bundle );
+                    return new Runnable()
+                    {
+                        public void run()
+                        {
+                            register( bundle, scanned );
+                        }
+                    };
+                }
+            }
+            );
+        }
+
+        private void register( final Bundle bundle, final List<T> scanned )
+        {
+            final List<T> resources = scanned == null ? Collections.<T>emptyList() : scanned;
+            if( !m_registered || !m_open || m_mappings.putIfAbsent( bundle, resources ) != null )
+            {
+                return;
+            }
+            if( !m_registered || !m_open )
+            {
+                // un-registered or closed while registering, un-register unless already done
+                m_mappings.remove( bundle, resources );
+                return;
+            }
+            if( resources.size() > 0 )
+            {
+                for( BundleObserver<T> observer : m_observers )
+                {
+                    try
+                    {
+                        observer.addingEntries( bundle, Collections.unmodifiableList( resources ) );
+                    }
+                    catch( Throwable ignore )
+                    {
+                        LOG.error( "Ignored exception during register", ignore );
+                    }
+                }
+            }
+        }
+
+        void unregister( final Bundle bundle )
+        {
+            final List<T> resources = m_mappings.remove( bundle );
+            if( resources == null || resources.size() == 0 )
+            {
+                return;
+            }
+            for( BundleObserver<T> observer : m_observers )
+            {
+                try
+                {
+                    observer.removingEntries( bundle, Collections.unmodifiableList( resources ) );
+                }
+                catch( Throwable ignore )
+                {
+                    LOG.error( "Ignored exception during un-register", ignore );
+                }
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+                "scanner=" ).append( m_scanner ).append( "}" ).toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bundle scanner decorator that stores the scan results of the decorated scanner in a directory, usually in the data
+ * area of the extender, so that bundles that did not change since the last scan are not scanned again, e.g. after a
+ * restart of the extender.
+ * <p>
+ * Results are stored per bundle id and used only if the bundle location, the last modification time of the bundle
+ * and the attached fragments are still the same, and if they were stored by the same scanner, as identified by a
+ * fingerprint (by default the last modification time of the extender bundle). Entries are written and read via a
+ * {@link ScanResultCodec}.
+ *
+ * @param <T> type of scanned entries
+ *
+ * @since 1.9.1
+ */
+public class CachingBundleScanner<T>
+    implements BundleScanner<T>
+{
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger( CachingBundleScanner.class );
+
+    /**
+     * Version of the file format.
+     */
+    private static final int FORMAT = 2;
+
+    /**
+     * Decorated scanner. Cannot be null.
+     */
+    private final BundleScanner<T> m_scanner;
+    /**
+     * Codec for scanned entries. Cannot be null.
+     */
+    private final ScanResultCodec<T> m_codec;
+    /**
+     * Directory the scan results are stored in. Null if there is no file system support, then nothing is cached.
+     */
+    private final File m_directory;
+    /**
+     * Identifies the scanner (its code and configuration) the results are stored by. Cannot be null.
+     */
+    private final String m_fingerprint;
+
+    /**
+     * Creates a caching scanner storing the results in the data area of the extender bundle. Stored results are
+     * dropped once the extender bundle gets updated.
+     *
+     * @param context bundle context of the extender. Cannot be null.
+     * @param name    name of the cache, unique within the extender. Cannot be null.
+     * @param scanner scanner to decorate. Cannot be null.
+     * @param codec   codec for scanned entries. Cannot be null.
+     */
+    public CachingBundleScanner( final BundleContext context,
+                                 final String name,
+                                 final BundleScanner<T> scanner,
+                                 final ScanResultCodec<T> codec )
+    {
+        this( dataDirectory( context, name ), String.valueOf( context.getBundle().getLastModified() ), scanner, codec );
+    }
+
+    /**
+     * Creates a caching scanner.
+     *
+     * @param directory directory to store the results in. If null nothing is cached.
+     * @param scanner   scanner to decorate. Cannot be null.
+     * @param codec     codec for scanned entries. Cannot be null.
+     */
+    public CachingBundleScanner( final File directory,
+                                 final BundleScanner<T> scanner,
+                                 final ScanResultCodec<T> codec )
+    {
+        this( directory, "", scanner, codec );
+    }
+
+    /**
+     * Creates a caching scanner.
+     *
+     * @param directory   directory to store the results in. If null nothing is cached.
+     * @param fingerprint identifies the scanner, e.g. its version and configuration. Results stored with another
+     *                    fingerprint are not used. Cannot be null.
+     * @param scanner     scanner to decorate. Cannot be null.
+     * @param codec       codec for scanned entries. Cannot be null.
+     */
+    public CachingBundleScanner( final File directory,
+                                 final String fingerprint,
+                                 final BundleScanner<T> scanner,
+                                 final ScanResultCodec<T> codec )
+    {
+        NullArgumentException.validateNotNull( fingerprint, "Fingerprint" );
+        NullArgumentException.validateNotNull( scanner, "Bundle scanner" );
+        NullArgumentException.validateNotNull( codec, "Codec" );
+        m_scanner = scanner;
+        m_codec = codec;
+        m_directory = directory;
+        m_fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the stored scan result if the bundle did not change, otherwise scans the bundle and stores the result.
+     *
+     * @see BundleScanner#scan(Bundle)
+     */
+    public List<T> scan( final Bundle bundle )
+    {
+        NullArgumentException.validateNotNull( bundle, "Bundle" );
+        if( m_directory == null )
+        {
+            return m_scanner.scan( bundle );
+        }
+        final File file = file( bundle );
+        final String revision = revision( bundle );
+        final List<T> cached = read( bundle, file, revision );
+        if( cached != null )
+        {
+            LOG.debug( "Using cached scan result of bundle [" + bundle.getSymbolicName() + "]" );
+            return cached;
+        }
+        final List<T> scanned = m_scanner.scan( bundle );
+        write( bundle, file, revision, scanned == null ? Collections.<T>emptyList() : scanned );
+        return scanned;
+    }
+
+    /**
+     * Removes the stored scan result of a bundle, e.g. once it is uninstalled.
+     *
+     * @param bundle bundle
+     */
+    public void purge( final Bundle bundle )
+    {
+        if( m_directory != null )
+        {
+            file( bundle ).delete();
+        }
+    }
+
+    /**
+     * Removes all stored scan results.
+     */
+    public void clear()
+    {
+        final File[] files = m_directory == null ? null : m_directory.listFiles();
+        if( files != null )
+        {
+            for( File file : files )
+            {
+                file.delete();
+            }
+        }
+    }
+
+    private File file( final Bundle bundle )
+    {
+        return new File( m_directory, bundle.getBundleId() + ".scan" );
+    }
+
+    private List<T> read( final Bundle bundle, final File file, final String revision )
+    {
+        if( !file.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream( new FileInputStream( file ) )
+            );
+            try
+            {
+                if( in.readInt() != FORMAT
+                    || !m_fingerprint.equals( in.readUTF() )
+                    || !revision.equals( in.readUTF() ) )
+                {
+                    return null;
+                }
+                final int size = in.readInt();
+                if( size < 0 || size > file.length() )
+                {
+                    // corrupted, each entry takes at least one byte of the file
+                    return null;
+                }
+                final List<T> entries = new ArrayList<T>( size );
+                for( int i = 0; i < size; i++ )
+                {
+                    final T entry = m_codec.read( bundle, in );
+                    if( entry == null )
+                    {
+                        return null;
+                    }
+                    entries.add( entry );
+                }
+                return entries;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch( IOException e )
+        {
+            LOG.debug( "Cannot read cached scan result [" + file + "]", e );
+            return null;
+        }
+        catch( RuntimeException e )
+        {
+            // e.g. a codec that cannot cope with a corrupted file
+            LOG.debug( "Cannot read cached scan result [" + file + "]", e );
+            return null;
+        }
+    }
+
+    private void write( final Bundle bundle, final File file, final String revision, final List<T> entries )
+    {
+        try
+        {
+            m_directory.mkdirs();
+            final File temp = File.createTempFile( file.getName(), ".tmp", m_directory );
+            try
+            {
+                final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream( new FileOutputStream( temp ) )
+                );
+                try
+                {
+                    out.writeInt( FORMAT );
+                    out.writeUTF( m_fingerprint );
+                    out.writeUTF( revision );
+                    out.writeInt( entries.size() );
+                    for( T entry : entries )
+                    {
+                        m_codec.write( bundle, entry, out );
+                    }
+                }
+                finally
+                {
+                    out.close();
+                }
+                Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+            finally
+            {
+                temp.delete();
+            }
+        }
+        catch( IOException e )
+        {
+            LOG.warn( "Cannot store scan result [" + file + "]", e );
+        }
+    }
+
+    /**
+     * Identifies the content of a bundle: location, last modification and the attached fragments.
+     */
+    private static String revision( final Bundle bundle )
+    {
+        final StringBuilder revision = new StringBuilder()
+            .append( bundle.getLocation() ).append( '|' ).append( bundle.getLastModified() );
+        final BundleWiring wiring = bundle.adapt( BundleWiring.class );
+        final List<BundleWire> fragments = wiring == null
+                                           ? null
+                                           : wiring.getProvidedWires( BundleRevision.HOST_NAMESPACE );
+        if( fragments != null )
+        {
+            for( BundleWire wire : fragments )
+            {
+                final Bundle fragment = wire.getRequirer().getBundle();
+                revision.append( '|' ).append( fragment.getBundleId() ).append( ':' ).append(
+                    fragment.getLastModified() );
+            }
+        }
+        return revision.toString();
+    }
+
+    private static File dataDirectory( final BundleContext context, final String name )
+    {
+        NullArgumentException.validateNotNull( context, "Context" );
+        NullArgumentException.validateNotNull( name, "Name" );
+        return context.getDataFile( "pax-swissbox-scan-cache/" + name );
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuffer().append( this.getClass().getSimpleName() ).append( "{" ).append(
+            "scanner=" ).append( m_scanner ).append( ",directory=" ).append( m_directory ).append( "}" ).toString();
+    }
+
+}
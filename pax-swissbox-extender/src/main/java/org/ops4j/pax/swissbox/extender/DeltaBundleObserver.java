@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.List;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Observer for watched bundles entries that, when a bundle gets updated or refreshed, is only notified about the
+ * entries that changed instead of the removal of all old entries followed by the addition of all new ones.
+ * <p>
+ * Entries are compared via {@link Object#equals(Object)}, so the entry type should implement it. URLs are compared
+ * via their protocol, port and file but not their host, as frameworks put the bundle revision into the host of
+ * bundle entry URLs (e.g. {@code bundle://<id>.<revision>:<classpath index>/path} on Felix). An unchanged URL entry
+ * is not passed on again, so observers that open it should resolve it against the bundle.
+ * <p>
+ * If the bundle watcher has a grace period set, see
+ * {@link BundleWatcher#setUpdateGracePeriod(long, java.util.concurrent.TimeUnit)}, the removal of a stopped bundle is
+ * held back for the grace period. If the bundle starts again within the grace period
+ * {@link #entriesChanged(Bundle, List, List)} is called, otherwise {@link #removingEntries(Bundle, List)}. Without a
+ * grace period, the default, delta observers are notified like any other observer.
+ * <p>
+ * Note that a bundle that is just stopped keeps its entries registered with delta observers until the grace period
+ * elapsed.
+ *
+ * @since 1.9.1
+ */
+public interface DeltaBundleObserver<T>
+    extends BundleObserver<T>
+{
+
+    /**
+     * Called when a bundle got started again shortly after it stopped and its entries changed. Not called if the
+     * entries are the same as before.
+     *
+     * @param bundle  started bundle
+     * @param added   entries that were not there before
+     * @param removed entries that are not there anymore
+     */
+    void entriesChanged( Bundle bundle, List<T> added, List<T> removed );
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view of a dictionary with String keys and values, such as bundle headers, so that the dictionary does
+ * not have to be copied into a map. Entries are only created while iterating, and not at all for hash tables, whose
+ * entries are passed through as they are and must not be modified. Keys and values that are not Strings cause an
+ * {@link IllegalArgumentException} once accessed.
+ *
+ * @since 1.9.1
+ */
+class DictionaryMap
+    extends AbstractMap<String, String>
+{
+
+    /**
+     * Viewed dictionary. Cannot be null.
+     */
+    private final Dictionary<?, ?> m_dictionary;
+
+    DictionaryMap( final Dictionary<?, ?> dictionary )
+    {
+        m_dictionary = dictionary;
+    }
+
+    @Override
+    public int size()
+    {
+        return m_dictionary.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return m_dictionary.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey( final Object key )
+    {
+        return key != null && m_dictionary.get( key ) != null;
+    }
+
+    @Override
+    public String get( final Object key )
+    {
+        return key == null ? null : asString( m_dictionary.get( key ) );
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, String>>()
+        {
+            @Override
+            public int size()
+            {
+                return m_dictionary.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator()
+            {
+                if( m_dictionary instanceof Hashtable )
+                {
+                    // shortcut, the hash table entries are used as they are
+                    return new EntryIterator( ( (Hashtable<?, ?>) m_dictionary ).entrySet().iterator() );
+                }
+                return new KeyIterator( m_dictionary.keys() );
+            }
+        };
+    }
+
+    private static String asString( final Object value )
+    {
+        if( value == null || value instanceof String )
+        {
+            return (String) value;
+        }
+        throw new IllegalArgumentException( "Dictionary entries must have String keys and values" );
+    }
+
+    /**
+     * Iterates over the entries of a hash table, checking that keys and values are Strings.
+     */
+    private static final class EntryIterator
+        implements Iterator<Map.Entry<String, String>>
+    {
+
+        private final Iterator<? extends Map.Entry<?, ?>> m_entries;
+
+        EntryIterator( final Iterator<? extends Map.Entry<?, ?>> entries )
+        {
+            m_entries = entries;
+        }
+
+        public boolean hasNext()
+        {
+            return m_entries.hasNext();
+        }
+
+        @SuppressWarnings( "unchecked" )
+        public Map.Entry<String, String> next()
+        {
+            final Map.Entry<?, ?> entry = m_entries.next();
+            asString( entry.getKey() );
+            asString( entry.getValue() );
+            return (Map.Entry<String, String>) entry;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "Read-only view" );
+        }
+
+    }
+
+    /**
+     * Iterates over the keys of a dictionary, creating the entries on the way.
+     */
+    private final class KeyIterator
+        implements Iterator<Map.Entry<String, String>>
+    {
+
+        private final Enumeration<?> m_keys;
+
+        KeyIterator( final Enumeration<?> keys )
+        {
+            m_keys = keys;
+        }
+
+        public boolean hasNext()
+        {
+            return m_keys.hasMoreElements();
+        }
+
+        public Map.Entry<String, String> next()
+        {
+            if( !m_keys.hasMoreElements() )
+            {
+                throw new NoSuchElementException();
+            }
+            final Object key = m_keys.nextElement();
+            return new SimpleImmutableEntry<String, String>( asString( key ), asString( m_dictionary.get( key ) ) );
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "Read-only view" );
+        }
+
+    }
+
+}
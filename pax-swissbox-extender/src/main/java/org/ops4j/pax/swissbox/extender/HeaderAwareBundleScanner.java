@@ -0,0 +1,45 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.Dictionary;
+import java.util.List;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * A bundle scanner that can scan a bundle using headers already read, so that scanners sharing the same bundle event
+ * do not each read the (localized) headers of the bundle again.
+ *
+ * @since 1.9.1
+ */
+public interface HeaderAwareBundleScanner<T>
+    extends BundleScanner<T>
+{
+
+    /**
+     * Scan a bundle for resources, using the given headers instead of {@link Bundle#getHeaders()}.
+     *
+     * @param bundle  bundle to be scanned
+     * @param headers headers of the bundle. Can be null.
+     *
+     * @return found bundle resources. If no resource was found it should return an empty list.
+     */
+    List<T> scan( Bundle bundle, Dictionary<String, String> headers );
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ops4j.lang.NullArgumentException;
+import org.osgi.framework.Bundle;
+
+/**
+ * A {@link BundleURLEntryScanner} that searches a {@link BundleEntryIndex} instead of calling
+ * {@link Bundle#findEntries(String, String, boolean)}, so that several scanners looking at the same bundles walk the
+ * bundle content only once. Scanners use the {@link BundleEntryIndex#getShared() shared} index unless an index is
+ * given.
+ *
+ * @since 1.9.1
+ */
+public abstract class IndexedBundleURLEntryScanner<T>
+    extends BundleURLEntryScanner<T>
+{
+
+    /**
+     * Index to search. Cannot be null.
+     */
+    private final BundleEntryIndex m_index;
+
+    /**
+     * Delegate to BundleEntryScanner, using the shared index.
+     *
+     * @see BundleEntryScanner#BundleEntryScanner(String,String,boolean)
+     */
+    public IndexedBundleURLEntryScanner( final String path,
+                                         final String filePattern,
+                                         final boolean recurse )
+    {
+        this( BundleEntryIndex.getShared(), path, filePattern, recurse );
+    }
+
+    /**
+     * Delegate to BundleEntryScanner.
+     *
+     * @param index index to search. Cannot be null.
+     *
+     * @see BundleEntryScanner#BundleEntryScanner(String,String,boolean)
+     */
+    public IndexedBundleURLEntryScanner( final BundleEntryIndex index,
+                                         final String path,
+                                         final String filePattern,
+                                         final boolean recurse )
+    {
+        super( path, filePattern, recurse );
+        NullArgumentException.validateNotNull( index, "Index" );
+        m_index = index;
+    }
+
+    /**
+     * Delegate to BundleEntryScanner, using the shared index.
+     *
+     * @see BundleEntryScanner#BundleEntryScanner(String,String,String,String,String,boolean)
+     */
+    public IndexedBundleURLEntryScanner( final String pathManifestHeader,
+                                         final String filePatternManifestHeader,
+                                         final String recurseManifestHeader,
+                                         final String path,
+                                         final String filePattern,
+                                         boolean recurse )
+    {
+        this(
+            BundleEntryIndex.getShared(), pathManifestHeader, filePatternManifestHeader, recurseManifestHeader, path,
+            filePattern, recurse
+        );
+    }
+
+    /**
+     * Delegate to BundleEntryScanner.
+     *
+     * @param index index to search. Cannot be null.
+     *
+     * @see BundleEntryScanner#BundleEntryScanner(String,String,String,String,String,boolean)
+     */
+    public IndexedBundleURLEntryScanner( final BundleEntryIndex index,
+                                         final String pathManifestHeader,
+                                         final String filePatternManifestHeader,
+                                         final String recurseManifestHeader,
+                                         final String path,
+                                         final String filePattern,
+                                         boolean recurse )
+    {
+        super( pathManifestHeader, filePatternManifestHeader, recurseManifestHeader, path, filePattern, recurse );
+        NullArgumentException.validateNotNull( index, "Index" );
+        m_index = index;
+    }
+
+    /**
+     * @see BundleScanner#scan(org.osgi.framework.Bundle)
+     */
+    @Override
+    public List<T> scan( final Bundle bundle )
+    {
+        final List<URL> entries = m_index.findEntries(
+            bundle, getPath( bundle ), getFilePattern( bundle ), getRecurse( bundle )
+        );
+        final List<T> resources = new ArrayList<T>( entries.size() );
+        for( URL entry : entries )
+        {
+            resources.add( createResource( bundle, entry ) );
+        }
+        return resources;
+    }
+
+}
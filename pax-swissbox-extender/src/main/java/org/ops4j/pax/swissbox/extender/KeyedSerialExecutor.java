@@ -0,0 +1,195 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks on a backing executor, serially per key: tasks submitted for the same key run one after the other, in
+ * submission order, while tasks of different keys run in parallel. Used to run the work for a bundle in order without
+ * blocking the framework event thread.
+ *
+ * @since 1.9.1
+ */
+class KeyedSerialExecutor
+{
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger( KeyedSerialExecutor.class );
+
+    /**
+     * Executor the lanes are drained on. Cannot be null.
+     */
+    private final Executor m_executor;
+    /**
+     * Lanes with pending or running tasks, by key. Guarded by itself.
+     */
+    private final Map<Object, Lane> m_lanes;
+    /**
+     * Number of pending or running tasks. Guarded by m_lanes.
+     */
+    private int m_pending;
+
+    KeyedSerialExecutor( final Executor executor )
+    {
+        m_executor = executor;
+        m_lanes = new HashMap<Object, Lane>();
+    }
+
+    /**
+     * Queues a task in the lane of a key. If the backing executor rejects the task, it is run in the calling thread.
+     *
+     * @param key  lane key
+     * @param task task to run
+     */
+    void execute( final Object key, final Runnable task )
+    {
+        final Lane lane;
+        synchronized( m_lanes )
+        {
+            m_pending++;
+            final Lane existing = m_lanes.get( key );
+            if( existing != null )
+            {
+                existing.tasks.add( task );
+                return;
+            }
+            lane = new Lane( key );
+            lane.tasks.add( task );
+            m_lanes.put( key, lane );
+        }
+        try
+        {
+            m_executor.execute( lane );
+        }
+        catch( RejectedExecutionException e )
+        {
+            lane.run();
+        }
+    }
+
+    /**
+     * Waits until there are no pending or running tasks.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     *
+     * @return true if all tasks are done, false if the timeout elapsed before
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitQuiescence( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos( timeout );
+        synchronized( m_lanes )
+        {
+            while( m_pending > 0 )
+            {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+                if( remaining <= 0 )
+                {
+                    return false;
+                }
+                m_lanes.wait( remaining );
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Getter.
+     *
+     * @return number of pending or running tasks
+     */
+    int getPendingCount()
+    {
+        synchronized( m_lanes )
+        {
+            return m_pending;
+        }
+    }
+
+    /**
+     * Queue of tasks of one key. Runs until its queue is empty and then removes itself.
+     */
+    private final class Lane
+        implements Runnable
+    {
+
+        final Object key;
+        /**
+         * Tasks not yet run. Guarded by m_lanes.
+         */
+        final ArrayDeque<Runnable> tasks;
+
+        Lane( final Object key )
+        {
+            this.key = key;
+            this.tasks = new ArrayDeque<Runnable>();
+        }
+
+        public void run()
+        {
+            while( true )
+            {
+                final Runnable task;
+                synchronized( m_lanes )
+                {
+                    task = tasks.poll();
+                    if( task == null )
+                    {
+                        m_lanes.remove( key );
+                        return;
+                    }
+                }
+                try
+                {
+                    task.run();
+                }
+                catch( Throwable t )
+                {
+                    LOG.error( "Ignored exception in task for [" + key + "]", t );
+                }
+                finally
+                {
+                    synchronized( m_lanes )
+                    {
+                        m_pending--;
+                        if( m_pending == 0 )
+                        {
+                            m_lanes.notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Codec for the {@link ManifestEntry}s found by a {@link BundleManifestScanner}.
+ *
+ * @since 1.9.1
+ */
+public class ManifestEntryCodec
+    implements ScanResultCodec<ManifestEntry>
+{
+
+    public void write( final Bundle bundle, final ManifestEntry entry, final DataOutput out )
+        throws IOException
+    {
+        out.writeUTF( entry.getKey() );
+        out.writeBoolean( entry.getValue() != null );
+        if( entry.getValue() != null )
+        {
+            out.writeUTF( entry.getValue() );
+        }
+    }
+
+    public ManifestEntry read( final Bundle bundle, final DataInput in )
+        throws IOException
+    {
+        final String key = in.readUTF();
+        return new ManifestEntry( key, in.readBoolean() ? in.readUTF() : null );
+    }
+
+}
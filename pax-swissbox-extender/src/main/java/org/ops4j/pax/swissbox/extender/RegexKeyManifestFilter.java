@@ -19,6 +19,7 @@ package org.ops4j.pax.swissbox.extender;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.ops4j.lang.NullArgumentException;
@@ -55,12 +56,15 @@ public class RegexKeyManifestFilter
 
     public Map<String, String> match( final Map<String, String> entries )
     {
+        // a new map also when nothing matches, as callers may add to it; its table is only allocated on first put
         final Map<String, String> matching = new HashMap<String, String>();
         if( entries != null && !entries.isEmpty() )
         {
+            // one matcher per call, reset for each key
+            final Matcher matcher = m_pattern.matcher( "" );
             for( Map.Entry<String, String> entry : entries.entrySet() )
             {
-                if( m_pattern.matcher( entry.getKey() ).matches() )
+                if( matcher.reset( entry.getKey() ).matches() )
                 {
                     matching.put( entry.getKey(), entry.getValue() );
                 }
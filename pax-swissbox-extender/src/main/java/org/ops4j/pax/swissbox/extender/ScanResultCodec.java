@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Writes and reads scan results, so that {@link CachingBundleScanner} can store them.
+ *
+ * @param <T> type of scanned entries
+ *
+ * @since 1.9.1
+ */
+public interface ScanResultCodec<T>
+{
+
+    /**
+     * Writes an entry. Each entry must take at least one byte, as stored results with more entries than bytes are
+     * treated as corrupted.
+     *
+     * @param bundle bundle the entry was scanned from
+     * @param entry  entry to write. Cannot be null.
+     * @param out    output to write to
+     *
+     * @throws IOException re-thrown from writing
+     */
+    void write( Bundle bundle, T entry, DataOutput out )
+        throws IOException;
+
+    /**
+     * Reads an entry.
+     *
+     * @param bundle bundle the entry was scanned from
+     * @param in     input to read from
+     *
+     * @return read entry. Null if the entry cannot be restored, in which case the bundle is scanned again.
+     *
+     * @throws IOException re-thrown from reading
+     */
+    T read( Bundle bundle, DataInput in )
+        throws IOException;
+
+}
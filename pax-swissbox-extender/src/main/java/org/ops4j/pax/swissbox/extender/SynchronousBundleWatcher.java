@@ -17,12 +17,13 @@
  */
 package org.ops4j.pax.swissbox.extender;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.swissbox.lifecycle.AbstractLifecycle;
@@ -69,9 +70,15 @@ public class SynchronousBundleWatcher<T>
      */
     private final List<BundleObserver<T>> m_observers;
     /**
-     * Mapping between bundle and scanned resources. Cannot be null.
+     * Mapping between bundle and scanned resources. Cannot be null. A bundle is registered by the thread that adds it
+     * and un-registered by the thread that removes it. While a bundle is scanned it is mapped to a {@link Scanning}
+     * placeholder, so that a concurrent un-register can cancel the registration.
      */
-    private Map<Bundle, List<T>> m_mappings;
+    private final ConcurrentMap<Bundle, List<T>> m_mappings;
+    /**
+     * True between start and stop. Bundles are only registered while watching.
+     */
+    private volatile boolean m_watching;
     /**
      * Bundle listener for bundle events. Cannot be null.
      */
@@ -111,6 +118,7 @@ public class SynchronousBundleWatcher<T>
         {
             m_observers.addAll( Arrays.asList( observers ) );
         }
+        m_mappings = new ConcurrentHashMap<Bundle, List<T>>();
     }
 
     /**
@@ -119,7 +127,7 @@ public class SynchronousBundleWatcher<T>
     @Override
     protected void onStart()
     {
-        m_mappings = new HashMap<Bundle, List<T>>();
+        m_watching = true;
         // listen to bundles events
         m_context.addBundleListener( m_bundleListener = new SynchronousBundleListener()
         {
@@ -129,7 +137,7 @@ public class SynchronousBundleWatcher<T>
                 switch( bundleEvent.getType() )
                 {
                     case BundleEvent.STARTED:
-                        register( bundleEvent.getBundle() );
+                        register( bundleEvent.getBundle(), false );
                         break;
                     case BundleEvent.STOPPED:
                         unregister( bundleEvent.getBundle() );
@@ -148,7 +156,7 @@ public class SynchronousBundleWatcher<T>
             {
                 if( bundle.getState() == Bundle.ACTIVE )
                 {
-                    register( bundle );
+                    register( bundle, true );
                 }
             }
         }
@@ -161,29 +169,73 @@ public class SynchronousBundleWatcher<T>
     protected void onStop()
     {
         m_context.removeBundleListener( m_bundleListener );
-        final Bundle[] toBeRemoved =
-            m_mappings.keySet().toArray( new Bundle[m_mappings.keySet().size()] );
-        for( Bundle bundle : toBeRemoved )
+        m_watching = false;
+        for( Bundle bundle : m_mappings.keySet() )
         {
             unregister( bundle );
         }
+        // pass on what is left of the pending batches
+        for( BundleObserver<T> observer : m_observers )
+        {
+            if( observer instanceof BatchingBundleObserverAdapter )
+            {
+                ( (BatchingBundleObserverAdapter<T>) observer ).flush();
+            }
+        }
 
         m_bundleListener = null;
-        m_mappings = null;
     }
 
     /**
      * Scans entries using the bundle scanner and registers the result of scanning process. Then
      * notify the observers. If an exception appears during notification, it is ignored.
      * 
-     * @param bundle registered bundle
+     * @param bundle        registered bundle
+     * @param onlyIfActive true if the bundle may have stopped before it was marked as scanning, e.g. on start
      */
-    private void register( final Bundle bundle )
+    private void register( final Bundle bundle, final boolean onlyIfActive )
     {
+        if( !m_watching )
+        {
+            // watcher was stopped meanwhile
+            return;
+        }
+        final Scanning<T> scanning = new Scanning<T>();
+        if( m_mappings.putIfAbsent( bundle, scanning ) != null )
+        {
+            // bundle is already registered or being scanned
+            return;
+        }
+        if( onlyIfActive && bundle.getState() != Bundle.ACTIVE )
+        {
+            // stopped before it was marked as scanning
+            m_mappings.remove( bundle, scanning );
+            return;
+        }
         LOG.debug( "Scanning bundle [" + bundle.getSymbolicName() + "]" );
-        final List<T> resources = m_scanner.scan( bundle );
-        m_mappings.put( bundle, resources );
-        if( resources != null && resources.size() > 0 )
+        final List<T> scanned;
+        try
+        {
+            scanned = m_scanner.scan( bundle );
+        }
+        catch( RuntimeException e )
+        {
+            m_mappings.remove( bundle, scanning );
+            throw e;
+        }
+        final List<T> resources = scanned == null ? Collections.<T>emptyList() : scanned;
+        if( !m_mappings.replace( bundle, scanning, resources ) )
+        {
+            // stopped or un-registered while scanning
+            return;
+        }
+        if( !m_watching )
+        {
+            // stopped while registering, un-register unless already done by stop
+            m_mappings.remove( bundle, resources );
+            return;
+        }
+        if( resources.size() > 0 )
         {
             LOG.debug( "Found resources " + resources );
             for( final BundleObserver<T> observer : m_observers )
@@ -210,9 +262,14 @@ public class SynchronousBundleWatcher<T>
     {
         if( bundle == null )
             return; // no need to go any further, system probably stopped.
+        final List<T> resources = m_mappings.remove( bundle );
+        if( resources == null || resources instanceof Scanning )
+        {
+            // not registered, already un-registered by another thread or registration cancelled
+            return;
+        }
         LOG.debug( "Releasing bundle [" + bundle.getSymbolicName() + "]" );
-        final List<T> resources = m_mappings.get( bundle );
-        if( resources != null && resources.size() > 0 )
+        if( resources.size() > 0 )
         {
             LOG.debug( "Un-registering " + resources );
             for( BundleObserver<T> observer : m_observers )
@@ -227,6 +284,40 @@ public class SynchronousBundleWatcher<T>
                 }
             }
         }
-        m_mappings.remove( bundle );
     }
+
+    /**
+     * Placeholder of a bundle being scanned. Equal only to itself, so that it can be replaced or removed atomically by
+     * the registration that created it.
+     */
+    private static final class Scanning<T>
+        extends AbstractList<T>
+    {
+
+        @Override
+        public T get( final int index )
+        {
+            throw new IndexOutOfBoundsException( "Bundle is being scanned" );
+        }
+
+        @Override
+        public int size()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean equals( final Object other )
+        {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode( this );
+        }
+
+    }
+
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * BatchingBundleObserverAdapter Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BatchingBundleObserverAdapterTest
+{
+
+    private final List<String> m_calls = Collections.synchronizedList( new ArrayList<String>() );
+    private final CountDownLatch m_delivered = new CountDownLatch( 2 );
+
+    private final BatchingBundleObserver<String> m_observer = new BatchingBundleObserver<String>()
+    {
+        public void addingEntries( final Map<Bundle, List<String>> entries )
+        {
+            m_calls.add( "add " + names( entries ) );
+            m_delivered.countDown();
+        }
+
+        public void removingEntries( final Map<Bundle, List<String>> entries )
+        {
+            m_calls.add( "remove " + names( entries ) );
+            m_delivered.countDown();
+        }
+    };
+
+    /**
+     * Tests that a batch is passed on once it reached the maximum size, in notification order.
+     */
+    @Test
+    public void flushOnMaxBatchSize()
+    {
+        final BatchingBundleObserverAdapter<String> adapter =
+            new BatchingBundleObserverAdapter<String>( m_observer, 1, TimeUnit.HOURS, 3 );
+        adapter.addingEntries( bundle( "b" ), Collections.singletonList( "entry" ) );
+        adapter.addingEntries( bundle( "a" ), Collections.singletonList( "entry" ) );
+        assertThat( "Calls before batch is full", m_calls.size(), is( equalTo( 0 ) ) );
+        adapter.addingEntries( bundle( "c" ), Collections.singletonList( "entry" ) );
+        assertThat( "Calls", m_calls, is( equalTo( Arrays.asList( "add [b, a, c]" ) ) ) );
+    }
+
+    /**
+     * Tests that a batch is passed on once the time window elapsed.
+     */
+    @Test
+    public void flushOnTimeWindow()
+        throws Exception
+    {
+        final BatchingBundleObserverAdapter<String> adapter =
+            new BatchingBundleObserverAdapter<String>( m_observer, 50, TimeUnit.MILLISECONDS, 100 );
+        adapter.addingEntries( bundle( "a" ), Collections.singletonList( "entry" ) );
+        adapter.removingEntries( bundle( "b" ), Collections.singletonList( "entry" ) );
+        assertThat( "Delivered", m_delivered.await( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Calls", m_calls, is( equalTo( Arrays.asList( "remove [b]", "add [a]" ) ) ) );
+    }
+
+    /**
+     * Tests that a bundle added and removed within the same batch is not passed on, while a bundle removed and added
+     * again is.
+     */
+    @Test
+    public void addAndRemoveWithinBatchCancel()
+    {
+        final BatchingBundleObserverAdapter<String> adapter =
+            new BatchingBundleObserverAdapter<String>( m_observer, 1, TimeUnit.HOURS, 100 );
+        final Bundle a = bundle( "a" );
+        final Bundle b = bundle( "b" );
+        adapter.addingEntries( a, Collections.singletonList( "entry" ) );
+        adapter.removingEntries( a, Collections.singletonList( "entry" ) );
+        adapter.removingEntries( b, Collections.singletonList( "entry" ) );
+        adapter.addingEntries( b, Collections.singletonList( "entry" ) );
+        adapter.flush();
+        adapter.flush();
+        assertThat( "Calls", m_calls, is( equalTo( Arrays.asList( "remove [b]", "add [b]" ) ) ) );
+    }
+
+    /**
+     * Tests that a bundle removed and added again counts once towards the maximum batch size.
+     */
+    @Test
+    public void removedAndAddedBundleCountsOnce()
+    {
+        final BatchingBundleObserverAdapter<String> adapter =
+            new BatchingBundleObserverAdapter<String>( m_observer, 1, TimeUnit.HOURS, 2 );
+        final Bundle a = bundle( "a" );
+        adapter.removingEntries( a, Collections.singletonList( "entry" ) );
+        adapter.addingEntries( a, Collections.singletonList( "entry" ) );
+        assertThat( "Calls before batch is full", m_calls.size(), is( equalTo( 0 ) ) );
+        adapter.addingEntries( bundle( "b" ), Collections.singletonList( "entry" ) );
+        assertThat( "Calls", m_calls, is( equalTo( Arrays.asList( "remove [a]", "add [a, b]" ) ) ) );
+    }
+
+    /**
+     * Tests that a batch emptied by a cancelled addition gets a new time window, so the timer of the emptied batch
+     * does not pass on the next notifications early.
+     */
+    @Test
+    public void emptiedBatchGetsNewTimeWindow()
+        throws Exception
+    {
+        final BatchingBundleObserverAdapter<String> adapter =
+            new BatchingBundleObserverAdapter<String>( m_observer, 400, TimeUnit.MILLISECONDS, 100 );
+        final Bundle a = bundle( "a" );
+        adapter.addingEntries( a, Collections.singletonList( "entry" ) );
+        adapter.removingEntries( a, Collections.singletonList( "entry" ) );
+        Thread.sleep( 200 );
+        final long added = System.nanoTime();
+        adapter.addingEntries( bundle( "b" ), Collections.singletonList( "entry" ) );
+        adapter.removingEntries( bundle( "c" ), Collections.singletonList( "entry" ) );
+        assertThat( "Delivered", m_delivered.await( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat(
+            "Window of new batch elapsed",
+            TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - added ) >= 350,
+            is( true )
+        );
+        assertThat( "Calls", m_calls, is( equalTo( Arrays.asList( "remove [c]", "add [b]" ) ) ) );
+    }
+
+    /**
+     * Tests that neither a timer nor a size flush that waited for an earlier delivery passes on the batch started
+     * after their own batch was passed on.
+     */
+    @Test
+    public void waitingFlushDoesNotPassOnNextBatch()
+        throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final CountDownLatch nextBatch = new CountDownLatch( 1 );
+        final Bundle c = bundle( "c" );
+        final AtomicReference<BatchingBundleObserverAdapter<String>> adapter =
+            new AtomicReference<BatchingBundleObserverAdapter<String>>();
+        adapter.set( new BatchingBundleObserverAdapter<String>( new BatchingBundleObserver<String>()
+        {
+            public void addingEntries( final Map<Bundle, List<String>> entries )
+            {
+                m_observer.addingEntries( entries );
+                if( entries.size() == 1 && !entries.containsKey( c ) )
+                {
+                    // keep the delivery of the first batch going
+                    try
+                    {
+                        release.await();
+                    }
+                    catch( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                else if( entries.size() == 2 )
+                {
+                    // start the next batch right after the full batch was passed on
+                    adapter.get().addingEntries( c, Collections.singletonList( "entry" ) );
+                    nextBatch.countDown();
+                }
+            }
+
+            public void removingEntries( final Map<Bundle, List<String>> entries )
+            {
+                m_observer.removingEntries( entries );
+            }
+        }, 300, TimeUnit.MILLISECONDS, 2
+        ) );
+        adapter.get().addingEntries( bundle( "a" ), Collections.singletonList( "entry" ) );
+        final Thread first = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                adapter.get().flush();
+            }
+        }
+        );
+        first.start();
+        while( m_calls.isEmpty() )
+        {
+            Thread.sleep( 5 );
+        }
+        // timer of the second batch elapses and waits, as does its size flush, while the first batch is delivered
+        adapter.get().addingEntries( bundle( "b1" ), Collections.singletonList( "entry" ) );
+        final Thread full = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                adapter.get().addingEntries( bundle( "b2" ), Collections.singletonList( "entry" ) );
+            }
+        }
+        );
+        full.start();
+        Thread.sleep( 600 );
+        final long released = System.nanoTime();
+        release.countDown();
+        assertThat( "Next batch started", nextBatch.await( 10, TimeUnit.SECONDS ), is( true ) );
+        first.join();
+        full.join();
+        while( m_calls.size() < 3 )
+        {
+            Thread.sleep( 5 );
+        }
+        assertThat(
+            "Window of next batch elapsed",
+            TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - released ) >= 250,
+            is( true )
+        );
+        assertThat( "Calls", m_calls, is( equalTo( Arrays.asList( "add [a]", "add [b1, b2]", "add [c]" ) ) ) );
+    }
+
+    private static Bundle bundle( final String name )
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( name );
+        replay( bundle );
+        return bundle;
+    }
+
+    private static String names( final Map<Bundle, List<String>> entries )
+    {
+        final List<String> names = new ArrayList<String>();
+        for( Bundle bundle : entries.keySet() )
+        {
+            names.add( bundle.getSymbolicName() );
+        }
+        return names.toString();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * BundleEntryIndex Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleEntryIndexTest
+{
+
+    private static final String[] PATHS = {
+        "/META-INF/", "/META-INF/MANIFEST.MF", "/META-INF/spring/", "/META-INF/spring/context.xml",
+        "/META-INF/spring/osgi/", "/META-INF/spring/osgi/osgi-context.xml", "/WEB-INF/web.xml", "/index.html"
+    };
+
+    /**
+     * Tests that several queries are answered from one walk of the bundle, with the same results as findEntries.
+     */
+    @Test
+    public void queriesAreAnsweredFromIndex()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        final BundleWiring wiring = createMock( BundleWiring.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andStubReturn( wiring );
+        expect( bundle.getLastModified() ).andStubReturn( 1L );
+        expect( bundle.findEntries( "/", "*", true ) ).andReturn( Collections.enumeration( urls( PATHS ) ) ).once();
+        replay( bundle, wiring );
+
+        final BundleEntryIndex index = new BundleEntryIndex();
+        assertThat(
+            "Spring contexts", paths( index.findEntries( bundle, "/META-INF/spring/", "*.xml", false ) ),
+            is( equalTo( Arrays.asList( "/META-INF/spring/context.xml" ) ) )
+        );
+        assertThat(
+            "Recursive spring contexts", paths( index.findEntries( bundle, "META-INF/spring", "*context.xml", true ) ),
+            is( equalTo( Arrays.asList( "/META-INF/spring/context.xml", "/META-INF/spring/osgi/osgi-context.xml" ) ) )
+        );
+        assertThat(
+            "Implicit directory", paths( index.findEntries( bundle, "/WEB-INF", null, false ) ),
+            is( equalTo( Arrays.asList( "/WEB-INF/web.xml" ) ) )
+        );
+        assertThat(
+            "Directories match too", paths( index.findEntries( bundle, "/", "META*", false ) ),
+            is( equalTo( Arrays.asList( "/META-INF/" ) ) )
+        );
+        assertThat( "Missing path", index.findEntries( bundle, "/OSGI-INF", "*", true ).size(), is( equalTo( 0 ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Tests that the index of an updated bundle is rebuilt.
+     */
+    @Test
+    public void updatedBundleIsIndexedAgain()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        final BundleWiring wiring = createMock( BundleWiring.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andStubReturn( wiring );
+        expect( bundle.getLastModified() ).andReturn( 1L ).times( 2 );
+        expect( bundle.getLastModified() ).andStubReturn( 2L );
+        expect( bundle.findEntries( "/", "*", true ) ).andReturn(
+            Collections.enumeration( urls( "/index.html" ) )
+        ).once();
+        expect( bundle.findEntries( "/", "*", true ) ).andReturn(
+            Collections.enumeration( urls( "/index.html", "/about.html" ) )
+        ).once();
+        replay( bundle, wiring );
+
+        final BundleEntryIndex index = new BundleEntryIndex();
+        assertThat( "Before update", index.findEntries( bundle, "/", "*.html", false ).size(), is( equalTo( 1 ) ) );
+        assertThat( "Unchanged", index.findEntries( bundle, "/", "*.html", false ).size(), is( equalTo( 1 ) ) );
+        assertThat( "After update", index.findEntries( bundle, "/", "*.html", false ).size(), is( equalTo( 2 ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Tests that a scanner configured via manifest headers searches the given index.
+     */
+    @Test
+    public void headerConfiguredScannerUsesGivenIndex()
+        throws Exception
+    {
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put( "Spring-Context", "META-INF/spring" );
+        headers.put( "Spring-Context-Recurse", "true" );
+        final Bundle bundle = createMock( Bundle.class );
+        final BundleWiring wiring = createMock( BundleWiring.class );
+        expect( bundle.adapt( BundleWiring.class ) ).andStubReturn( wiring );
+        expect( bundle.getLastModified() ).andStubReturn( 1L );
+        expect( bundle.getHeaders() ).andStubReturn( headers );
+        expect( bundle.findEntries( "/", "*", true ) ).andReturn( Collections.enumeration( urls( PATHS ) ) ).once();
+        replay( bundle, wiring );
+
+        final BundleEntryIndex index = new BundleEntryIndex();
+        final IndexedBundleURLEntryScanner<String> scanner = new IndexedBundleURLEntryScanner<String>(
+            index, "Spring-Context", "Spring-Context-Pattern", "Spring-Context-Recurse", "/", "*.xml", false
+        )
+        {
+            @Override
+            protected String createResource( final Bundle scanned, final URL entry )
+            {
+                return entry.getPath();
+            }
+        };
+        assertThat(
+            "Scanned", scanner.scan( bundle ),
+            is( equalTo( Arrays.asList( "/META-INF/spring/context.xml", "/META-INF/spring/osgi/osgi-context.xml" ) ) )
+        );
+        assertThat( "Same index", index.findEntries( bundle, "/WEB-INF", "*.xml", false ).size(), is( equalTo( 1 ) ) );
+        verify( bundle );
+    }
+
+    /**
+     * Tests the file pattern matching.
+     */
+    @Test
+    public void filePatterns()
+    {
+        assertThat( BundleEntryIndex.matches( "*", "a.xml" ), is( true ) );
+        assertThat( BundleEntryIndex.matches( "a.xml", "a.xml" ), is( true ) );
+        assertThat( BundleEntryIndex.matches( "a.xml", "b.xml" ), is( false ) );
+        assertThat( BundleEntryIndex.matches( "*.xml", "a.xml" ), is( true ) );
+        assertThat( BundleEntryIndex.matches( "*.xml", "a.xml.bak" ), is( false ) );
+        assertThat( BundleEntryIndex.matches( "a*", "abc" ), is( true ) );
+        assertThat( BundleEntryIndex.matches( "a*b*c", "axxbyyc" ), is( true ) );
+        assertThat( BundleEntryIndex.matches( "a*b*c", "acb" ), is( false ) );
+        assertThat( BundleEntryIndex.matches( "ab*ba", "aba" ), is( false ) );
+    }
+
+    private static List<URL> urls( final String... paths )
+        throws Exception
+    {
+        final List<URL> urls = new ArrayList<URL>();
+        for( String path : paths )
+        {
+            urls.add( new URL( "file:" + path ) );
+        }
+        return urls;
+    }
+
+    private static List<String> paths( final List<URL> urls )
+    {
+        final List<String> paths = new ArrayList<String>();
+        for( URL url : urls )
+        {
+            paths.add( url.getPath() );
+        }
+        return paths;
+    }
+
+}
@@ -17,7 +17,13 @@
  */
 package org.ops4j.pax.swissbox.extender;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
@@ -25,6 +31,8 @@ import java.util.Map;
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import com.sun.management.ThreadMXBean;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 
@@ -101,4 +109,167 @@ public class BundleManifestScannerTest
         assertThat( "Number of headers", 2, is( equalTo( headers.size() ) ) );
     }
 
+    /**
+     * Tests that a new, modifiable list is returned if no header matches.
+     */
+    @Test
+    public void scanWithoutMatches()
+    {
+        final Dictionary<String, String> dictionary = new Hashtable<String, String>();
+        dictionary.put( "k1", "v1" );
+
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getHeaders() ).andReturn( dictionary );
+        final ManifestFilter filter = createMock( ManifestFilter.class );
+        expect( filter.match( (Map<String, String>) notNull() ) ).andReturn( Collections.<String, String>emptyMap() );
+
+        replay( bundle, filter );
+        List<ManifestEntry> headers = new BundleManifestScanner( filter ).scan( bundle );
+        verify( bundle, filter );
+
+        assertThat( "Number of headers", headers.size(), is( equalTo( 0 ) ) );
+        headers.add( new ManifestEntry( "k2", "v2" ) );
+        assertThat( "Number of headers", headers.size(), is( equalTo( 1 ) ) );
+    }
+
+    /**
+     * Tests scanning a bundle with many headers, given as a dictionary that is not a hash table, with a regular
+     * expression filter.
+     */
+    @Test
+    public void scanManyHeaders()
+    {
+        final Map<String, String> map = new HashMap<String, String>();
+        for( int i = 0; i < 45; i++ )
+        {
+            map.put( "Header-" + i, "value" + i );
+        }
+        map.put( "Web-ContextPath", "/app" );
+        final Dictionary<String, String> dictionary = new Dictionary<String, String>()
+        {
+            public int size()
+            {
+                return map.size();
+            }
+
+            public boolean isEmpty()
+            {
+                return map.isEmpty();
+            }
+
+            public Enumeration<String> keys()
+            {
+                return Collections.enumeration( map.keySet() );
+            }
+
+            public Enumeration<String> elements()
+            {
+                return Collections.enumeration( map.values() );
+            }
+
+            public String get( final Object key )
+            {
+                return map.get( key );
+            }
+
+            public String put( final String key, final String value )
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            public String remove( final Object key )
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getHeaders() ).andReturn( dictionary );
+
+        replay( bundle );
+        List<ManifestEntry> headers =
+            new BundleManifestScanner( new RegexKeyManifestFilter( "Web-.*" ) ).scan( bundle );
+        verify( bundle );
+
+        assertThat( "Number of headers", headers.size(), is( equalTo( 1 ) ) );
+        assertThat( "Header", headers.get( 0 ), is( equalTo( new ManifestEntry( "Web-ContextPath", "/app" ) ) ) );
+    }
+
+    /**
+     * Allocation benchmark: scanning a bundle with 45 headers allocates neither a copy of the headers nor a matcher
+     * per header, with and without a matching header. Measured per scanning thread after warm-up, so skipped on VMs
+     * that cannot measure allocations per thread.
+     */
+    @Test
+    public void scanManyHeadersAllocation()
+    {
+        assumeTrue( ManagementFactory.getThreadMXBean() instanceof ThreadMXBean );
+        final ThreadMXBean allocations = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue( allocations.isThreadAllocatedMemorySupported() );
+        allocations.setThreadAllocatedMemoryEnabled( true );
+
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        for( int i = 0; i < 45; i++ )
+        {
+            headers.put( "Header-" + i, "value" + i );
+        }
+        final long noMatch = allocatedPerScan( allocations, headers );
+        headers.put( "Web-ContextPath", "/app" );
+        final long oneMatch = allocatedPerScan( allocations, headers );
+
+        // copying the headers alone takes more than 2 KB
+        assertThat( "Bytes allocated per scan without match (" + noMatch + ")", noMatch < 1024, is( true ) );
+        assertThat( "Bytes allocated per scan with one match (" + oneMatch + ")", oneMatch < 1024, is( true ) );
+    }
+
+    /**
+     * @return bytes allocated by the current thread per scan of a bundle with the given headers, after warm-up
+     */
+    private static long allocatedPerScan( final ThreadMXBean allocations, final Dictionary<String, String> headers )
+    {
+        final Bundle bundle = (Bundle) Proxy.newProxyInstance(
+            Bundle.class.getClassLoader(), new Class<?>[]{ Bundle.class }, new InvocationHandler()
+        {
+            public Object invoke( final Object proxy, final Method method, final Object[] args )
+            {
+                return headers;
+            }
+        }
+        );
+        final BundleManifestScanner scanner = new BundleManifestScanner( new RegexKeyManifestFilter( "Web-.*" ) );
+        final int scans = 100000;
+        int found = 0;
+        for( int i = 0; i < scans; i++ )
+        {
+            found += scanner.scan( bundle ).size();
+        }
+        final long thread = Thread.currentThread().getId();
+        final long before = allocations.getThreadAllocatedBytes( thread );
+        for( int i = 0; i < scans; i++ )
+        {
+            found += scanner.scan( bundle ).size();
+        }
+        final long allocated = allocations.getThreadAllocatedBytes( thread ) - before;
+        assertThat( "Found", found, is( equalTo( headers.get( "Web-ContextPath" ) == null ? 0 : 2 * scans ) ) );
+        return allocated / scans;
+    }
+
+    /**
+     * Tests that headers that are not Strings are not accepted.
+     * Expected to throw IllegalArgumentException.
+     */
+    @Test( expected = IllegalArgumentException.class )
+    @SuppressWarnings( "unchecked" )
+    public void scanNonStringHeaders()
+    {
+        final Dictionary dictionary = new Hashtable();
+        dictionary.put( "k1", Integer.valueOf( 1 ) );
+
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getHeaders() ).andReturn( dictionary );
+
+        replay( bundle );
+        new BundleManifestScanner( new RegexKeyManifestFilter( ".*" ) ).scan( bundle );
+    }
+
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.easymock.Capture;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * BundleWatcherHub Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleWatcherHubTest
+{
+
+    /**
+     * Tests that the headers are read once per event for all scanners and that each registration gets its results.
+     */
+    @Test
+    public void oneHeaderSnapshotForAllScanners()
+        throws Exception
+    {
+        final Dictionary<String, String> headers = new Hashtable<String, String>();
+        headers.put( "Web-ContextPath", "/app" );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        expect( bundle.getHeaders() ).andReturn( headers ).once();
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] ).times( 2 );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final BundleObserver<ManifestEntry> manifestObserver = new BundleObserver<ManifestEntry>()
+        {
+            public void addingEntries( final Bundle added, final List<ManifestEntry> entries )
+            {
+                calls.add( "add " + entries.get( 0 ).getValue() );
+            }
+
+            public void removingEntries( final Bundle removed, final List<ManifestEntry> entries )
+            {
+                calls.add( "remove " + entries.get( 0 ).getValue() );
+            }
+        };
+        final BundleObserver<String> plainObserver = new BundleObserver<String>()
+        {
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                calls.add( "add " + entries.get( 0 ) );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                calls.add( "remove " + entries.get( 0 ) );
+            }
+        };
+        final BundleWatcherHub hub = new BundleWatcherHub( context );
+        hub.open();
+        hub.register(
+            new BundleManifestScanner( new RegexKeyManifestFilter( "Web-ContextPath" ) ), manifestObserver
+        );
+        final BundleWatcherHub.Registration<String> registration = hub.register(
+            new BundleScanner<String>()
+            {
+                public List<String> scan( final Bundle scanned )
+                {
+                    return Collections.singletonList( "plain" );
+                }
+            }, plainObserver
+        );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        assertThat( "Pending scans done", hub.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Calls after start", calls, is( equalTo( Arrays.asList( "add /app", "add plain" ) ) ) );
+
+        registration.unregister();
+        assertThat( "Calls after un-register", calls.get( 2 ), is( equalTo( "remove plain" ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        assertThat( "Pending scans done", hub.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Calls", calls.size(), is( equalTo( 4 ) ) );
+        assertThat( "Calls after stop", calls.get( 3 ), is( equalTo( "remove /app" ) ) );
+        hub.close();
+        verify( context, bundle );
+    }
+
+    /**
+     * Tests that registering with an open hub scans the active bundles and that close removes them.
+     */
+    @Test
+    public void registerScansActiveBundlesAndCloseRemovesThem()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        expect( bundle.getState() ).andStubReturn( Bundle.ACTIVE );
+        expect( bundle.getHeaders() ).andStubReturn( new Hashtable<String, String>() );
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( anyObject( BundleListener.class ) );
+        expect( context.getBundles() ).andStubReturn( new Bundle[]{ bundle } );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final BundleWatcherHub hub = new BundleWatcherHub( context, 1 );
+        hub.open();
+        hub.register(
+            new BundleScanner<String>()
+            {
+                public List<String> scan( final Bundle scanned )
+                {
+                    return Collections.singletonList( "entry" );
+                }
+            }, new BundleObserver<String>()
+            {
+                public void addingEntries( final Bundle added, final List<String> entries )
+                {
+                    calls.add( "add" );
+                }
+
+                public void removingEntries( final Bundle removed, final List<String> entries )
+                {
+                    calls.add( "remove" );
+                }
+            }
+        );
+        assertThat( "Pending scans done", hub.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        hub.close();
+        assertThat( "Calls", calls, is( equalTo( Arrays.asList( "add", "remove" ) ) ) );
+        verify( context );
+    }
+
+    /**
+     * Tests that close waits at most the drain timeout and that a scan finishing after close registers nothing.
+     */
+    @Test
+    public void scanFinishingAfterCloseRegistersNothing()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        expect( bundle.getHeaders() ).andStubReturn( new Hashtable<String, String>() );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andStubReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final CountDownLatch scanning = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final BundleWatcherHub hub = new BundleWatcherHub( context, 1 );
+        hub.setDrainTimeout( 100, TimeUnit.MILLISECONDS );
+        hub.open();
+        hub.register(
+            new BundleScanner<String>()
+            {
+                public List<String> scan( final Bundle scanned )
+                {
+                    scanning.countDown();
+                    try
+                    {
+                        release.await( 10, TimeUnit.SECONDS );
+                    }
+                    catch( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Collections.singletonList( "entry" );
+                }
+            }, new BundleObserver<String>()
+            {
+                public void addingEntries( final Bundle added, final List<String> entries )
+                {
+                    calls.add( "add" );
+                }
+
+                public void removingEntries( final Bundle removed, final List<String> entries )
+                {
+                    calls.add( "remove" );
+                }
+            }
+        );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        assertThat( "Scanning", scanning.await( 10, TimeUnit.SECONDS ), is( true ) );
+
+        final long start = System.nanoTime();
+        hub.close();
+        assertThat(
+            "Close waited for the drain timeout only",
+            TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) < 5000, is( true )
+        );
+        // delivered while closing
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        release.countDown();
+        assertThat( "Pending scans done", hub.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Calls", calls.size(), is( equalTo( 0 ) ) );
+        verify( context );
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.easymock.Capture;
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.ops4j.pax.swissbox.lifecycle.Lifecycle;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Fires concurrent STARTED / STOPPED events at the bundle watchers, while they scan the already active bundles on
+ * start, and checks that the registered bundles match the last event of each bundle and that each registration of a
+ * bundle is matched by exactly one un-registration.
+ * <p>
+ * As with a framework, the events of one bundle are fired in order, by one thread.
+ *
+ * @since 1.9.1
+ */
+public class BundleWatcherStressTest
+{
+
+    private static final int BUNDLES = 16;
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 2000;
+
+    /**
+     * Stress test of the synchronous bundle watcher.
+     */
+    @Test
+    public void synchronousBundleWatcher()
+        throws Exception
+    {
+        final Harness harness = new Harness();
+        final SynchronousBundleWatcher<String> watcher =
+            new SynchronousBundleWatcher<String>( harness.context, harness.scanner, harness.observer );
+        harness.run( watcher );
+        harness.assertRegisteredAsLastEvent();
+        watcher.stop();
+        harness.assertBalanced();
+    }
+
+    /**
+     * Stress test of the bundle watcher.
+     */
+    @Test
+    public void bundleWatcher()
+        throws Exception
+    {
+        final Harness harness = new Harness();
+        final BundleWatcher<String> watcher =
+            new BundleWatcher<String>( harness.context, harness.scanner, harness.observer );
+        harness.run( watcher );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 30, TimeUnit.SECONDS ), is( true ) );
+        harness.assertRegisteredAsLastEvent();
+        watcher.stop();
+        harness.assertBalanced();
+    }
+
+    private static class Harness
+    {
+
+        final Bundle[] bundles;
+        final BundleContext context;
+        final Capture<BundleListener> listener;
+        final ConcurrentMap<Bundle, AtomicInteger> added;
+        final ConcurrentMap<Bundle, AtomicInteger> removed;
+        final AtomicIntegerArray states;
+        final CountDownLatch start;
+        final BundleScanner<String> scanner;
+        final BundleObserver<String> observer;
+
+        Harness()
+        {
+            bundles = new Bundle[BUNDLES];
+            added = new ConcurrentHashMap<Bundle, AtomicInteger>();
+            removed = new ConcurrentHashMap<Bundle, AtomicInteger>();
+            states = new AtomicIntegerArray( BUNDLES );
+            start = new CountDownLatch( 1 );
+            for( int i = 0; i < bundles.length; i++ )
+            {
+                final int index = i;
+                states.set( i, Bundle.ACTIVE );
+                bundles[i] = createMock( Bundle.class );
+                expect( bundles[i].getBundleId() ).andStubReturn( (long) i );
+                expect( bundles[i].getSymbolicName() ).andStubReturn( "org.foo" + i );
+                expect( bundles[i].getState() ).andStubAnswer( new IAnswer<Integer>()
+                {
+                    public Integer answer()
+                    {
+                        return states.get( index );
+                    }
+                }
+                );
+                replay( bundles[i] );
+                added.put( bundles[i], new AtomicInteger() );
+                removed.put( bundles[i], new AtomicInteger() );
+            }
+            listener = newCapture();
+            context = createMock( BundleContext.class );
+            context.addBundleListener( capture( listener ) );
+            // events are fired while the already active bundles are scanned
+            expect( context.getBundles() ).andAnswer( new IAnswer<Bundle[]>()
+            {
+                public Bundle[] answer()
+                {
+                    start.countDown();
+                    return bundles.clone();
+                }
+            }
+            );
+            context.removeBundleListener( anyObject( BundleListener.class ) );
+            replay( context );
+            scanner = new BundleScanner<String>()
+            {
+                public List<String> scan( final Bundle bundle )
+                {
+                    return Collections.singletonList( bundle.getSymbolicName() );
+                }
+            };
+            observer = new BundleObserver<String>()
+            {
+                public void addingEntries( final Bundle bundle, final List<String> entries )
+                {
+                    added.get( bundle ).incrementAndGet();
+                }
+
+                public void removingEntries( final Bundle bundle, final List<String> entries )
+                {
+                    removed.get( bundle ).incrementAndGet();
+                }
+            };
+        }
+
+        void run( final Lifecycle watcher )
+            throws InterruptedException
+        {
+            final CountDownLatch done = new CountDownLatch( THREADS );
+            for( int t = 0; t < THREADS; t++ )
+            {
+                final int thread = t;
+                final Random random = new Random( t );
+                new Thread( new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                            for( int i = 0; i < EVENTS_PER_THREAD; i++ )
+                            {
+                                // each thread fires the events of its own bundles
+                                final int index = thread + THREADS * random.nextInt( BUNDLES / THREADS );
+                                final boolean started = random.nextBoolean();
+                                states.set( index, started ? Bundle.ACTIVE : Bundle.RESOLVED );
+                                listener.getValue().bundleChanged( new BundleEvent(
+                                    started ? BundleEvent.STARTED : BundleEvent.STOPPED, bundles[index]
+                                ) );
+                            }
+                        }
+                        catch( InterruptedException e )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        finally
+                        {
+                            done.countDown();
+                        }
+                    }
+                }
+                ).start();
+            }
+            watcher.start();
+            assertThat( "Events fired", done.await( 60, TimeUnit.SECONDS ), is( true ) );
+        }
+
+        void assertRegisteredAsLastEvent()
+        {
+            for( int i = 0; i < bundles.length; i++ )
+            {
+                assertThat( "Registrations of " + bundles[i].getSymbolicName(),
+                            added.get( bundles[i] ).get() - removed.get( bundles[i] ).get(),
+                            is( equalTo( states.get( i ) == Bundle.ACTIVE ? 1 : 0 ) ) );
+            }
+        }
+
+        void assertBalanced()
+        {
+            int total = 0;
+            for( Bundle bundle : bundles )
+            {
+                assertThat( "Removals of " + bundle.getSymbolicName(), removed.get( bundle ).get(),
+                            is( equalTo( added.get( bundle ).get() ) ) );
+                total += added.get( bundle ).get();
+            }
+            assertThat( "Registrations", total > 0, is( true ) );
+            verify( context );
+        }
+
+    }
+
+}
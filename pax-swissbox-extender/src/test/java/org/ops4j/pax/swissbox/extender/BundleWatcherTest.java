@@ -0,0 +1,672 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * BundleWatcher Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class BundleWatcherTest
+{
+
+    /**
+     * Tests that scanning does not block the event thread and that the work of a bundle is done in event order.
+     */
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void scansOffEventThreadInOrder()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                try
+                {
+                    release.await( 10, TimeUnit.SECONDS );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                calls.add( "scan" );
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleObserver<String> observer = new BundleObserver<String>()
+        {
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                // not of interest
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                calls.add( "remove" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher<String>( context, scanner, observer );
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        assertThat( "Calls before scan finished", calls.size(), is( equalTo( 0 ) ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.MILLISECONDS ), is( false ) );
+
+        release.countDown();
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Calls", calls, is( equalTo( Arrays.asList( "scan", "remove" ) ) ) );
+        watcher.stop();
+        verify( context );
+    }
+
+
+    /**
+     * Tests that the observers see the removal of a bundle after its addition, even if the addition is slow.
+     */
+    @Test
+    public void observersNotifiedInOrder()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleObserver<String> observer = new BundleObserver<String>()
+        {
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                try
+                {
+                    Thread.sleep( 20 );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                calls.add( "add" );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                calls.add( "remove" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher<String>( context, scanner, observer );
+        watcher.start();
+        for( int i = 0; i < 3; i++ )
+        {
+            listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+            listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        }
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat(
+            "Calls", calls, is( equalTo( Arrays.asList( "add", "remove", "add", "remove", "add", "remove" ) ) )
+        );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that a resolved bundle is scanned ahead and the result is used on start, unless the bundle got
+     * unresolved in the meantime.
+     */
+    @Test
+    public void preScanOnResolved()
+        throws Exception
+    {
+        final Bundle bundle = resolvedBundle( "org.foo", 0 );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                calls.add( "scan" );
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleObserver<String> observer = new BundleObserver<String>()
+        {
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                calls.add( "add" );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                calls.add( "remove" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher.Builder<String>( context, scanner )
+            .observer( observer )
+            .preScan( true )
+            .build();
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Calls after resolve", calls, is( equalTo( Arrays.asList( "scan" ) ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNRESOLVED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat(
+            "Calls", calls, is( equalTo( Arrays.asList( "scan", "add", "remove", "scan", "scan", "add" ) ) )
+        );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that fragments are not scanned ahead and that no more than the maximum number of results is kept, while
+     * discarded results make room again.
+     */
+    @Test
+    public void preScanSkipsFragmentsAndIsBounded()
+        throws Exception
+    {
+        final Bundle fragment = resolvedBundle( "org.fragment", BundleRevision.TYPE_FRAGMENT );
+        final Bundle first = resolvedBundle( "org.first", 0 );
+        final Bundle second = resolvedBundle( "org.second", 0 );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, fragment, first, second );
+
+        final List<String> scanned = new CopyOnWriteArrayList<String>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle bundle )
+            {
+                scanned.add( bundle.getSymbolicName() );
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher.Builder<String>( context, scanner )
+            .preScan( true )
+            .maxPreScans( 1 )
+            .build();
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, fragment ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, first ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, second ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Scanned ahead", scanned, is( equalTo( Arrays.asList( "org.first" ) ) ) );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.UNRESOLVED, first ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.RESOLVED, second ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Scanned ahead", scanned, is( equalTo( Arrays.asList( "org.first", "org.second" ) ) ) );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that a delta observer gets only the changed entries when a bundle starts again within the grace period,
+     * and the removal once the grace period elapsed, while other observers see removal and addition.
+     */
+    @Test
+    public void deltaNotificationsOnRestart()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<List<String>> scans = new CopyOnWriteArrayList<List<String>>();
+        scans.add( Arrays.asList( "a", "b" ) );
+        scans.add( Arrays.asList( "b", "c" ) );
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                return scans.remove( 0 );
+            }
+        };
+        final List<String> deltaCalls = new CopyOnWriteArrayList<String>();
+        final List<String> plainCalls = new CopyOnWriteArrayList<String>();
+        final CountDownLatch released = new CountDownLatch( 1 );
+        final DeltaBundleObserver<String> delta = new DeltaBundleObserver<String>()
+        {
+            public void entriesChanged( final Bundle changed, final List<String> added, final List<String> removed )
+            {
+                deltaCalls.add( "change +" + added + " -" + removed );
+            }
+
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                deltaCalls.add( "add " + entries );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                deltaCalls.add( "remove " + entries );
+                released.countDown();
+            }
+        };
+        final BundleObserver<String> plain = new BundleObserver<String>()
+        {
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                plainCalls.add( "add " + entries );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                plainCalls.add( "remove " + entries );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher.Builder<String>( context, scanner )
+            .observer( delta )
+            .observer( plain )
+            .updateGracePeriod( 200, TimeUnit.MILLISECONDS )
+            .build();
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat(
+            "Delta calls after restart", deltaCalls,
+            is( equalTo( Arrays.asList( "add [a, b]", "change +[c] -[a]" ) ) )
+        );
+        assertThat(
+            "Plain calls after restart", plainCalls,
+            is( equalTo( Arrays.asList( "add [a, b]", "remove [a, b]", "add [b, c]" ) ) )
+        );
+
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Delta calls within grace period", deltaCalls.size(), is( equalTo( 2 ) ) );
+        assertThat( "Released", released.await( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( "Delta removal", deltaCalls.get( 2 ), is( equalTo( "remove [b, c]" ) ) );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that without a grace period, the default, a delta observer is notified about the removal of a stopped
+     * bundle right away.
+     */
+    @Test
+    public void deltaRemovalOnPlainStop()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                return Arrays.asList( "a", "b" );
+            }
+        };
+        final List<String> deltaCalls = new CopyOnWriteArrayList<String>();
+        final DeltaBundleObserver<String> delta = new DeltaBundleObserver<String>()
+        {
+            public void entriesChanged( final Bundle changed, final List<String> added, final List<String> removed )
+            {
+                deltaCalls.add( "change +" + added + " -" + removed );
+            }
+
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                deltaCalls.add( "add " + entries );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                deltaCalls.add( "remove " + entries );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher.Builder<String>( context, scanner )
+            .observer( delta )
+            .build();
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat(
+            "Delta calls after stop", deltaCalls, is( equalTo( Arrays.asList( "add [a, b]", "remove [a, b]" ) ) )
+        );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that URL entries whose host changed, as the host of Felix bundle entry URLs contains the bundle revision,
+     * are compared by path when a bundle starts again within the grace period.
+     */
+    @Test
+    public void deltaComparesURLsWithoutHost()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<List<URL>> scans = new CopyOnWriteArrayList<List<URL>>();
+        scans.add( Arrays.asList( bundleEntry( "5.0", "/a" ), bundleEntry( "5.0", "/b" ) ) );
+        scans.add( Arrays.asList( bundleEntry( "5.1", "/b" ), bundleEntry( "5.1", "/c" ) ) );
+        final BundleScanner<URL> scanner = new BundleScanner<URL>()
+        {
+            public List<URL> scan( final Bundle scanned )
+            {
+                return scans.remove( 0 );
+            }
+        };
+        final List<String> deltaCalls = new CopyOnWriteArrayList<String>();
+        final DeltaBundleObserver<URL> delta = new DeltaBundleObserver<URL>()
+        {
+            public void entriesChanged( final Bundle changed, final List<URL> added, final List<URL> removed )
+            {
+                deltaCalls.add( "change +" + added + " -" + removed );
+            }
+
+            public void addingEntries( final Bundle added, final List<URL> entries )
+            {
+                deltaCalls.add( "add " + entries );
+            }
+
+            public void removingEntries( final Bundle removed, final List<URL> entries )
+            {
+                deltaCalls.add( "remove " + entries );
+            }
+        };
+        final BundleWatcher<URL> watcher = new BundleWatcher.Builder<URL>( context, scanner )
+            .observer( delta )
+            .updateGracePeriod( 10, TimeUnit.SECONDS )
+            .build();
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, bundle ) );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat(
+            "Delta calls after update", deltaCalls,
+            is(
+                equalTo(
+                    Arrays.asList(
+                        "add [bundle://5.0:1/a, bundle://5.0:1/b]",
+                        "change +[bundle://5.1:1/c] -[bundle://5.0:1/a]"
+                    )
+                )
+            )
+        );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that the already active bundles are scanned in parallel and that start waits for the initial scan.
+     */
+    @Test
+    public void initialScanInParallel()
+        throws Exception
+    {
+        final Bundle[] bundles = new Bundle[6];
+        for( int i = 0; i < bundles.length; i++ )
+        {
+            bundles[i] = createMock( Bundle.class );
+            expect( bundles[i].getBundleId() ).andStubReturn( (long) bundles.length - i );
+            expect( bundles[i].getState() ).andStubReturn( Bundle.ACTIVE );
+            expect( bundles[i].getSymbolicName() ).andStubReturn( "org.foo" + i );
+        }
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( anyObject( BundleListener.class ) );
+        expect( context.getBundles() ).andReturn( bundles );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context );
+        replay( (Object[]) bundles );
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Bundle> scanned = new CopyOnWriteArrayList<Bundle>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle bundle )
+            {
+                final int now = running.incrementAndGet();
+                synchronized( maxRunning )
+                {
+                    maxRunning.set( Math.max( now, maxRunning.get() ) );
+                }
+                try
+                {
+                    Thread.sleep( 50 );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                scanned.add( bundle );
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher<String>( context, scanner );
+        watcher.setInitialScanParallelism( 3 );
+        watcher.start();
+        assertThat( "Scanned on start", scanned.size(), is( equalTo( bundles.length ) ) );
+        assertThat( "Parallel scans", maxRunning.get() > 1, is( true ) );
+        watcher.stop();
+        verify( context );
+    }
+
+    /**
+     * Tests that the pool created on start is shut down on stop and that the watcher can be started again.
+     */
+    @Test
+    public void createdPoolIsShutDownOnStop()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture( CaptureType.LAST );
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expectLastCall().times( 2 );
+        expect( context.getBundles() ).andReturn( new Bundle[0] ).times( 2 );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        expectLastCall().times( 2 );
+        replay( context, bundle );
+
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                threads.add( Thread.currentThread() );
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher.Builder<String>( context, scanner )
+            .poolSize( 1 )
+            .drainTimeout( 10, TimeUnit.SECONDS )
+            .build();
+        for( int i = 0; i < 2; i++ )
+        {
+            watcher.start();
+            listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+            assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+            watcher.stop();
+            threads.get( i ).join( 10000 );
+            assertThat( "Pool thread alive after stop", threads.get( i ).isAlive(), is( false ) );
+        }
+        assertThat( "Scans", threads.size(), is( equalTo( 2 ) ) );
+        verify( context );
+    }
+
+    /**
+     * Tests that a supplied executor service is used and not shut down on stop.
+     */
+    @Test
+    public void suppliedExecutorIsNotShutDown()
+        throws Exception
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[0] );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final Thread[] executorThread = new Thread[1];
+        executorService.submit( new Runnable()
+        {
+            public void run()
+            {
+                executorThread[0] = Thread.currentThread();
+            }
+        }
+        ).get();
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        final BundleScanner<String> scanner = new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                threads.add( Thread.currentThread() );
+                return Collections.singletonList( "entry" );
+            }
+        };
+        final BundleWatcher<String> watcher = new BundleWatcher<String>( context, scanner, executorService );
+        watcher.start();
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        assertThat( "Pending scans done", watcher.awaitPendingScans( 10, TimeUnit.SECONDS ), is( true ) );
+        watcher.stop();
+        assertThat( "Scanned on supplied executor", threads, is( equalTo( Arrays.asList( executorThread[0] ) ) ) );
+        assertThat( "Supplied executor shut down", executorService.isShutdown(), is( false ) );
+        executorService.shutdown();
+        verify( context );
+    }
+
+    /**
+     * Creates a resolved bundle, not replayed, whose revision has the given types.
+     */
+    private static Bundle resolvedBundle( final String symbolicName, final int types )
+    {
+        final BundleRevision revision = createMock( BundleRevision.class );
+        expect( revision.getTypes() ).andStubReturn( types );
+        replay( revision );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( symbolicName );
+        expect( bundle.getLastModified() ).andStubReturn( 1L );
+        expect( bundle.adapt( BundleRevision.class ) ).andStubReturn( revision );
+        return bundle;
+    }
+
+    /**
+     * Creates a bundle entry URL as Felix does, with the bundle revision in the host and the class path index as port.
+     */
+    private static URL bundleEntry( final String revision, final String path )
+        throws MalformedURLException
+    {
+        return new URL( "bundle", revision, 1, path, new URLStreamHandler()
+        {
+            @Override
+            protected URLConnection openConnection( final URL url )
+            {
+                throw new UnsupportedOperationException();
+            }
+        }
+        );
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * CachingBundleScanner Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class CachingBundleScannerTest
+{
+
+    private File m_directory;
+    private AtomicInteger m_scans;
+    private CachingBundleScanner<ManifestEntry> m_scanner;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        m_directory = Files.createTempDirectory( "scan-cache" ).toFile();
+        m_scans = new AtomicInteger();
+        m_scanner = new CachingBundleScanner<ManifestEntry>( m_directory, new BundleScanner<ManifestEntry>()
+        {
+            public List<ManifestEntry> scan( final Bundle bundle )
+            {
+                m_scans.incrementAndGet();
+                final List<ManifestEntry> entries = new ArrayList<ManifestEntry>();
+                entries.add( new ManifestEntry( "Web-ContextPath", "/app" ) );
+                entries.add( new ManifestEntry( "Web-Empty", null ) );
+                return entries;
+            }
+        }, new ManifestEntryCodec()
+        );
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_scanner.clear();
+        m_directory.delete();
+    }
+
+    /**
+     * Tests that an unchanged bundle is not scanned again and the stored entries are equal to the scanned ones.
+     */
+    @Test
+    public void unchangedBundleIsNotScannedAgain()
+    {
+        final Bundle bundle = bundle( 1L, 100L );
+        final List<ManifestEntry> scanned = m_scanner.scan( bundle );
+        final List<ManifestEntry> cached = m_scanner.scan( bundle );
+
+        assertThat( "Number of scans", m_scans.get(), is( equalTo( 1 ) ) );
+        assertThat( "Number of entries", cached.size(), is( equalTo( 2 ) ) );
+        assertThat( "Key", cached.get( 0 ).getKey(), is( equalTo( scanned.get( 0 ).getKey() ) ) );
+        assertThat( "Value", cached.get( 0 ).getValue(), is( equalTo( "/app" ) ) );
+        assertThat( "Null value", cached.get( 1 ).getValue(), is( nullValue() ) );
+    }
+
+    /**
+     * Tests that a bundle is scanned again once it got updated.
+     */
+    @Test
+    public void updatedBundleIsScannedAgain()
+    {
+        m_scanner.scan( bundle( 1L, 100L ) );
+        m_scanner.scan( bundle( 1L, 200L ) );
+        m_scanner.scan( bundle( 1L, 200L ) );
+
+        assertThat( "Number of scans", m_scans.get(), is( equalTo( 2 ) ) );
+    }
+
+    /**
+     * Tests that a purged bundle and a corrupted result file cause a new scan.
+     */
+    @Test
+    public void purgedOrCorruptedResultIsScannedAgain()
+        throws Exception
+    {
+        final Bundle bundle = bundle( 2L, 100L );
+        m_scanner.scan( bundle );
+        m_scanner.purge( bundle );
+        m_scanner.scan( bundle );
+        assertThat( "Number of scans after purge", m_scans.get(), is( equalTo( 2 ) ) );
+
+        Files.write( new File( m_directory, "2.scan" ).toPath(), new byte[]{ 0, 0, 0, 1, 0 } );
+        assertThat( "Entries", m_scanner.scan( bundle ).size(), is( equalTo( 2 ) ) );
+        assertThat( "Number of scans after corruption", m_scans.get(), is( equalTo( 3 ) ) );
+    }
+
+    /**
+     * Tests that a result file with a corrupted number of entries causes a new scan instead of a huge allocation.
+     */
+    @Test
+    public void corruptedSizeIsScannedAgain()
+        throws Exception
+    {
+        final Bundle bundle = bundle( 3L, 100L );
+        m_scanner.scan( bundle );
+        final File file = new File( m_directory, "3.scan" );
+        for( int size : new int[]{ Integer.MAX_VALUE, -1 } )
+        {
+            final DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+            final int format;
+            final String fingerprint;
+            final String revision;
+            try
+            {
+                format = in.readInt();
+                fingerprint = in.readUTF();
+                revision = in.readUTF();
+            }
+            finally
+            {
+                in.close();
+            }
+            final DataOutputStream out = new DataOutputStream( new FileOutputStream( file ) );
+            try
+            {
+                out.writeInt( format );
+                out.writeUTF( fingerprint );
+                out.writeUTF( revision );
+                out.writeInt( size );
+            }
+            finally
+            {
+                out.close();
+            }
+            assertThat( "Entries", m_scanner.scan( bundle ).size(), is( equalTo( 2 ) ) );
+        }
+        assertThat( "Number of scans", m_scans.get(), is( equalTo( 3 ) ) );
+    }
+
+    /**
+     * Tests that results stored by a scanner with another fingerprint are not used.
+     */
+    @Test
+    public void otherFingerprintIsScannedAgain()
+    {
+        final Bundle bundle = bundle( 3L, 100L );
+        m_scanner.scan( bundle );
+        final CachingBundleScanner<ManifestEntry> updated = new CachingBundleScanner<ManifestEntry>(
+            m_directory, "2", new BundleScanner<ManifestEntry>()
+        {
+            public List<ManifestEntry> scan( final Bundle bundle )
+            {
+                m_scans.incrementAndGet();
+                return Collections.singletonList( new ManifestEntry( "Web-ContextPath", "/updated" ) );
+            }
+        }, new ManifestEntryCodec()
+        );
+        final List<ManifestEntry> entries = updated.scan( bundle );
+        updated.scan( bundle );
+
+        assertThat( "Number of scans", m_scans.get(), is( equalTo( 2 ) ) );
+        assertThat( "Value", entries.get( 0 ).getValue(), is( equalTo( "/updated" ) ) );
+        assertThat( "Value", updated.scan( bundle ).get( 0 ).getValue(), is( equalTo( "/updated" ) ) );
+    }
+
+    /**
+     * Tests that an entry path found in the bundle and in an attached fragment is restored to both entries.
+     */
+    @Test
+    public void samePathInHostAndFragment()
+        throws Exception
+    {
+        final URL hostEntry = new URL( "http://4.0/META-INF/app.xml" );
+        final URL fragmentEntry = new URL( "http://5.0/META-INF/app.xml" );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andReturn( 4L ).anyTimes();
+        expect( bundle.getLocation() ).andReturn( "mvn:test/host" ).anyTimes();
+        expect( bundle.getLastModified() ).andReturn( 100L ).anyTimes();
+        expect( bundle.getSymbolicName() ).andReturn( "host" ).anyTimes();
+        expect( bundle.adapt( BundleWiring.class ) ).andReturn( null ).anyTimes();
+        expect( bundle.getEntry( "/META-INF/app.xml" ) ).andReturn( hostEntry ).anyTimes();
+        expect( bundle.findEntries( "/META-INF", "app.xml", false ) ).andAnswer( new IAnswer<Enumeration<URL>>()
+        {
+            public Enumeration<URL> answer()
+            {
+                return Collections.enumeration( Arrays.asList( hostEntry, fragmentEntry ) );
+            }
+        }
+        ).anyTimes();
+        replay( bundle );
+        final CachingBundleScanner<URL> scanner = new CachingBundleScanner<URL>(
+            m_directory, new BundleScanner<URL>()
+        {
+            public List<URL> scan( final Bundle bundle )
+            {
+                m_scans.incrementAndGet();
+                return Arrays.asList( hostEntry, fragmentEntry );
+            }
+        }, new BundleURLCodec()
+        );
+        scanner.scan( bundle );
+        final List<URL> cached = scanner.scan( bundle );
+
+        assertThat( "Number of scans", m_scans.get(), is( equalTo( 1 ) ) );
+        assertThat( "Number of entries", cached.size(), is( equalTo( 2 ) ) );
+        assertThat( "Host entry", cached.get( 0 ).toExternalForm(), is( equalTo( hostEntry.toExternalForm() ) ) );
+        assertThat(
+            "Fragment entry", cached.get( 1 ).toExternalForm(), is( equalTo( fragmentEntry.toExternalForm() ) )
+        );
+    }
+
+    private static Bundle bundle( final long id, final long lastModified )
+    {
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getBundleId() ).andReturn( id ).anyTimes();
+        expect( bundle.getLocation() ).andReturn( "mvn:test/bundle" ).anyTimes();
+        expect( bundle.getLastModified() ).andReturn( lastModified ).anyTimes();
+        expect( bundle.getSymbolicName() ).andReturn( "bundle" ).anyTimes();
+        expect( bundle.adapt( BundleWiring.class ) ).andReturn( null ).anyTimes();
+        replay( bundle );
+        return bundle;
+    }
+
+}
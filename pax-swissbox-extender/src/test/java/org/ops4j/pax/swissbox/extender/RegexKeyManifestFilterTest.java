@@ -100,6 +100,23 @@ public class RegexKeyManifestFilterTest
         assertThat( "Filtered manifest entries", filtered, is( equalTo( Collections.<String, String>emptyMap() ) ) );
     }
 
+    /**
+     * Tests that the map returned when nothing matches is a new modifiable map.
+     */
+    @Test
+    public void noMatchIsModifiable()
+    {
+        final Map<String, String> entries = new HashMap<String, String>();
+        entries.put( "k2", "v2" );
+        final RegexKeyManifestFilter filter = new RegexKeyManifestFilter( "k1" );
+
+        final Map<String, String> filtered = filter.match( entries );
+        filtered.put( "k3", "v3" );
+
+        assertThat( "Filtered manifest entries", filtered.size(), is( equalTo( 1 ) ) );
+        assertThat( "Next filtered manifest entries", filter.match( entries ).isEmpty(), is( true ) );
+    }
+
     @Test
     public void match01()
     {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.swissbox.extender;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.easymock.Capture;
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * SynchronousBundleWatcher Unit Tests.
+ *
+ * @since 1.9.1
+ */
+public class SynchronousBundleWatcherTest
+{
+
+    /**
+     * Tests that an active bundle stopped while it is scanned on start is not registered.
+     */
+    @Test
+    public void stoppedDuringInitialScanIsNotRegistered()
+    {
+        final AtomicInteger state = new AtomicInteger( Bundle.ACTIVE );
+        final AtomicBoolean stopping = new AtomicBoolean( true );
+        final Bundle bundle = createMock( Bundle.class );
+        expect( bundle.getSymbolicName() ).andStubReturn( "org.foo" );
+        expect( bundle.getState() ).andStubAnswer( new IAnswer<Integer>()
+        {
+            public Integer answer()
+            {
+                return state.get();
+            }
+        }
+        );
+        final Capture<BundleListener> listener = newCapture();
+        final BundleContext context = createMock( BundleContext.class );
+        context.addBundleListener( capture( listener ) );
+        expect( context.getBundles() ).andReturn( new Bundle[]{ bundle } );
+        context.removeBundleListener( anyObject( BundleListener.class ) );
+        replay( context, bundle );
+
+        final List<String> calls = new CopyOnWriteArrayList<String>();
+        final SynchronousBundleWatcher<String> watcher = new SynchronousBundleWatcher<String>(
+            context, new BundleScanner<String>()
+        {
+            public List<String> scan( final Bundle scanned )
+            {
+                if( stopping.compareAndSet( true, false ) )
+                {
+                    // bundle stops while it is scanned
+                    state.set( Bundle.RESOLVED );
+                    listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STOPPED, scanned ) );
+                }
+                return Collections.singletonList( "entry" );
+            }
+        }, new BundleObserver<String>()
+        {
+            public void addingEntries( final Bundle added, final List<String> entries )
+            {
+                calls.add( "add" );
+            }
+
+            public void removingEntries( final Bundle removed, final List<String> entries )
+            {
+                calls.add( "remove" );
+            }
+        }
+        );
+        watcher.start();
+        assertThat( "Calls after start", calls.size(), is( equalTo( 0 ) ) );
+
+        state.set( Bundle.ACTIVE );
+        listener.getValue().bundleChanged( new BundleEvent( BundleEvent.STARTED, bundle ) );
+        watcher.stop();
+        assertThat( "Calls after restart", calls, is( equalTo( Arrays.asList( "add", "remove" ) ) ) );
+        verify( context );
+    }
+
+}